@@ -0,0 +1,55 @@
+package com.distributed.systems.benchmarks;
+
+import com.distributed.systems.config.BrokerConfig;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+
+/**
+ * Shared setup for the storage benchmarks. Data goes under java.io.tmpdir, so point
+ * -Djava.io.tmpdir at the disk you want to measure (tmpfs numbers say nothing about fsync).
+ */
+final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    static Path createTempDir(String prefix) throws IOException {
+        return Files.createTempDirectory("kafka-lite-jmh-" + prefix);
+    }
+
+    static void deleteRecursively(Path dir) throws IOException {
+        if (dir == null || !Files.exists(dir)) return;
+        try (var stream = Files.walk(dir)) {
+            for (Path path : stream.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /*
+     * The storage layer logs to stdout on every index entry and rotation; that would dominate the numbers.
+     */
+    static void silenceLogging() {
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        System.setOut(discard);
+        System.setErr(discard);
+    }
+
+    static BrokerConfig config(long maxSegmentSize, long indexIntervalBytes) {
+        // Long retention and cleanup interval: the janitor must not run during a measurement
+        return new BrokerConfig(maxSegmentSize, Long.MAX_VALUE / 2, indexIntervalBytes, 3_600_000);
+    }
+
+    static byte[] payload(int size) {
+        byte[] value = new byte[size];
+        for (int i = 0; i < size; i++) {
+            value[i] = (byte) ('a' + (i % 26));
+        }
+        return value;
+    }
+}
@@ -0,0 +1,80 @@
+package com.distributed.systems.benchmarks;
+
+import com.distributed.systems.storage.IndexEntry;
+import com.distributed.systems.storage.IndexManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IndexManager.lookup (binary search over the on-disk sparse index) at several index sizes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexLookupBenchmark {
+
+    private static final int OFFSETS_PER_ENTRY = 10;
+    private static final int BYTES_PER_ENTRY = 4096;
+
+    @Param({"1000", "100000", "1000000"})
+    int entries;
+
+    private Path dir;
+    private IndexManager index;
+    private long[] targets;
+    private int cursor = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkSupport.silenceLogging();
+        dir = BenchmarkSupport.createTempDir("index");
+        Path indexPath = dir.resolve("0000000000.index");
+
+        // Written in bulk; addEntry fsyncs per entry, which would make large indexes take minutes
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(16 * 4096);
+            for (int i = 0; i < entries; i++) {
+                if (buffer.remaining() < 16) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) channel.write(buffer);
+                    buffer.clear();
+                }
+                buffer.putLong((long) i * OFFSETS_PER_ENTRY);
+                buffer.putLong((long) i * BYTES_PER_ENTRY);
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+            channel.force(true);
+        }
+        index = new IndexManager(indexPath);
+
+        SplittableRandom random = new SplittableRandom(42);
+        targets = new long[4096];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = random.nextLong((long) entries * OFFSETS_PER_ENTRY);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        index.close();
+        BenchmarkSupport.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public IndexEntry lookup() throws IOException {
+        IndexEntry entry = index.lookup(targets[cursor], 0);
+        cursor = (cursor + 1) % targets.length;
+        return entry;
+    }
+}
@@ -0,0 +1,78 @@
+package com.distributed.systems.benchmarks;
+
+import com.distributed.systems.storage.Log;
+import com.distributed.systems.storage.LogRecord;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Log.read over a pre-filled, multi-segment log: a consumer walking forward vs. random point reads.
+ * Random offsets come from a fixed seed so runs are comparable.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LogReadBenchmark {
+
+    @Param({"10000"})
+    int recordCount;
+
+    @Param({"256"})
+    int recordSize;
+
+    // Sparse index interval; larger means fewer bookmarks and longer scans per read
+    @Param({"4096", "65536"})
+    long indexIntervalBytes;
+
+    private Path dir;
+    private Log log;
+    private long[] randomOffsets;
+    private int randomCursor = 0;
+    private long sequentialCursor = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkSupport.silenceLogging();
+        dir = BenchmarkSupport.createTempDir("read");
+        log = new Log(dir, BenchmarkSupport.config(1024 * 1024, indexIntervalBytes));
+
+        byte[] key = "benchmark-key".getBytes();
+        byte[] value = BenchmarkSupport.payload(recordSize);
+        for (int i = 0; i < recordCount; i++) {
+            log.append(key, value);
+        }
+
+        SplittableRandom random = new SplittableRandom(42);
+        randomOffsets = new long[4096];
+        for (int i = 0; i < randomOffsets.length; i++) {
+            randomOffsets[i] = random.nextLong(recordCount);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        log.close();
+        BenchmarkSupport.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public LogRecord sequentialRead() throws IOException {
+        LogRecord record = log.read(sequentialCursor);
+        sequentialCursor = (sequentialCursor + 1) % recordCount;
+        return record;
+    }
+
+    @Benchmark
+    public LogRecord randomRead() throws IOException {
+        LogRecord record = log.read(randomOffsets[randomCursor]);
+        randomCursor = (randomCursor + 1) % randomOffsets.length;
+        return record;
+    }
+}
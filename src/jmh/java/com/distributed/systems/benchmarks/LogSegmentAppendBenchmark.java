@@ -0,0 +1,59 @@
+package com.distributed.systems.benchmarks;
+
+import com.distributed.systems.config.BrokerConfig;
+import com.distributed.systems.storage.LogSegment;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LogSegment.append across record sizes and write modes. Every append ends with an fsync,
+ * so the write mode (page cache vs O_DIRECT) is the flush-related setting worth comparing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LogSegmentAppendBenchmark {
+
+    @Param({"100", "1024", "16384"})
+    int recordSize;
+
+    @Param({"false", "true"})
+    boolean directIo;
+
+    private Path dir;
+    private LogSegment segment;
+    private final byte[] key = "benchmark-key".getBytes();
+    private byte[] value;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        BenchmarkSupport.silenceLogging();
+        value = BenchmarkSupport.payload(recordSize);
+    }
+
+    // A fresh segment per iteration keeps file size (and index depth) comparable between iterations
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        dir = BenchmarkSupport.createTempDir("append");
+        BrokerConfig config = BenchmarkSupport.config(Long.MAX_VALUE, 4096);
+        config.setProperty("storage.direct.io.enabled", String.valueOf(directIo));
+        segment = new LogSegment(dir.resolve("0000000000.data"), 0, config);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        segment.close();
+        BenchmarkSupport.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public long append() throws IOException {
+        return segment.append(key, value);
+    }
+}
@@ -0,0 +1,61 @@
+package com.distributed.systems.benchmarks;
+
+import com.distributed.systems.config.BrokerConfig;
+import com.distributed.systems.storage.Log;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of an append that rolls the log onto a new segment. Segments hold exactly one record,
+ * so every measured append rotates. Compare preopen=true (pointer swap) with preopen=false.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SegmentRotationBenchmark {
+
+    private static final int RECORD_SIZE = 1024;
+
+    @Param({"true", "false"})
+    boolean preopen;
+
+    private Path dir;
+    private Log log;
+    private final byte[] key = "benchmark-key".getBytes();
+    private byte[] value;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        BenchmarkSupport.silenceLogging();
+        value = BenchmarkSupport.payload(RECORD_SIZE);
+    }
+
+    // Each iteration creates thousands of segments; start from an empty directory every time
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        dir = BenchmarkSupport.createTempDir("rotation");
+        long recordBytes = 8 + 4 + key.length + 4 + RECORD_SIZE;
+        BrokerConfig config = BenchmarkSupport.config(recordBytes, 4096);
+        config.setProperty("storage.segment.preopen.enabled", String.valueOf(preopen));
+        // A full segment is past any threshold, so the next one is requested right after each rotation
+        config.setProperty("storage.segment.preopen.threshold", "0.5");
+        log = new Log(dir, config);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        log.close();
+        BenchmarkSupport.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public long appendWithRotation() throws IOException {
+        return log.append(key, value);
+    }
+}
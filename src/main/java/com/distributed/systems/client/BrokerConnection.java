@@ -0,0 +1,242 @@
+package com.distributed.systems.client;
+
+import com.distributed.systems.model.BrokerAddress;
+import com.distributed.systems.util.Protocol;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * One v1 connection to a broker, as handed out by ConnectionPool. Streams are buffered so a
+ * request leaves in one write on flush().
+ * <p>
+ * Hot requests can skip the streams: they are encoded into the connection's direct send buffer,
+ * which is reused for the life of the connection, and go out with a single channel write. The
+ * bytes are copied once, into memory the kernel can send from, and nothing is allocated per request.
+ */
+public class BrokerConnection implements AutoCloseable {
+    private static final int INITIAL_SEND_BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_UTF_LENGTH = 65535;
+
+    private final BrokerAddress broker;
+    private final SocketChannel channel;
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final int readTimeoutMs;
+    private ByteBuffer sendBuffer;
+    // Only touched by the borrower, so a request can read its own traffic as a difference
+    private long bytesSent;
+    private long bytesReceived;
+    private long lastUsedNanos = System.nanoTime();
+
+    BrokerConnection(BrokerAddress broker, int connectTimeoutMs, int readTimeoutMs) throws IOException {
+        this.broker = broker;
+        this.readTimeoutMs = readTimeoutMs;
+        // A blocking channel, so the streams and direct buffer writes can share the connection
+        this.channel = SocketChannel.open();
+        this.socket = channel.socket();
+        try {
+            socket.connect(new InetSocketAddress(broker.host(), broker.port()), connectTimeoutMs);
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(readTimeoutMs);
+            this.in = new DataInputStream(new BufferedInputStream(new CountingInputStream(socket.getInputStream())));
+            this.out = new DataOutputStream(new BufferedOutputStream(new CountingOutputStream(socket.getOutputStream())));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public BrokerAddress getBroker() {
+        return broker;
+    }
+
+    public DataInputStream in() {
+        return in;
+    }
+
+    public DataOutputStream out() {
+        return out;
+    }
+
+    /**
+     * Returns the connection's send buffer, cleared and able to hold at least minCapacity bytes.
+     * It is only grown, never shrunk, so a steady request size settles on one allocation.
+     */
+    public ByteBuffer sendBuffer(int minCapacity) {
+        if (sendBuffer == null || sendBuffer.capacity() < minCapacity) {
+            int capacity = Math.max(INITIAL_SEND_BUFFER_SIZE, Integer.highestOneBit(Math.max(1, minCapacity - 1)) << 1);
+            sendBuffer = ByteBuffer.allocateDirect(capacity);
+        }
+        return sendBuffer.clear();
+    }
+
+    /**
+     * Flips the buffer filled since sendBuffer() and writes all of it to the broker.
+     */
+    public void send(ByteBuffer buffer) throws IOException {
+        out.flush(); // nothing is pending between requests, but never let bytes overtake each other
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            bytesSent += channel.write(buffer);
+        }
+    }
+
+    /**
+     * Bytes written to the socket so far, through either the stream or send().
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * Bytes read from the socket so far, including any the input buffer has read ahead.
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * Upper bound of what putUTF() writes for the string.
+     */
+    public static int utfSize(String value) {
+        return 2 + 3 * value.length();
+    }
+
+    /**
+     * Same encoding as DataOutput.writeUTF (length-prefixed modified UTF-8), without the
+     * intermediate byte array.
+     */
+    public static void putUTF(ByteBuffer buffer, String value) throws UTFDataFormatException {
+        int lengthPosition = buffer.position();
+        buffer.putShort((short) 0);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                buffer.put((byte) c);
+            } else if (c <= 0x07FF) {
+                buffer.put((byte) (0xC0 | ((c >> 6) & 0x1F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else {
+                buffer.put((byte) (0xE0 | ((c >> 12) & 0x0F)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        int length = buffer.position() - lengthPosition - 2;
+        if (length > MAX_UTF_LENGTH) {
+            throw new UTFDataFormatException("Encoded string too long: " + length + " bytes");
+        }
+        buffer.putShort(lengthPosition, (short) length);
+    }
+
+    /**
+     * Appends the remaining bytes of src without moving its position.
+     */
+    public static void putRemaining(ByteBuffer buffer, ByteBuffer src) {
+        int length = src.remaining();
+        buffer.put(buffer.position(), src, src.position(), length);
+        buffer.position(buffer.position() + length);
+    }
+
+    long getIdleNanos() {
+        return System.nanoTime() - lastUsedNanos;
+    }
+
+    void touch() {
+        lastUsedNanos = System.nanoTime();
+    }
+
+    /*
+     * Between requests the broker never sends anything, so a healthy idle connection has nothing
+     * to read. Waiting a millisecond for a byte tells the cases apart without a round trip: a
+     * timeout means alive, end of stream means the broker closed it, and data means it is out of sync.
+     */
+    boolean isHealthy() {
+        if (socket.isClosed()) return false;
+        try {
+            if (in.available() > 0) return false;
+            socket.setSoTimeout(1);
+            try {
+                socket.getInputStream().read();
+                return false; // end of stream, or a byte nobody asked for
+            } catch (SocketTimeoutException e) {
+                return true;
+            } finally {
+                socket.setSoTimeout(readTimeoutMs);
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Ends the session with a QUIT (best effort) and closes the socket.
+     */
+    @Override
+    public void close() {
+        try {
+            if (!socket.isClosed()) {
+                out.writeUTF(Protocol.CMD_QUIT);
+                out.flush();
+            }
+        } catch (IOException ignored) {
+        }
+        closeQuietly();
+    }
+
+    void closeQuietly() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "connection to " + broker;
+    }
+
+    private class CountingInputStream extends FilterInputStream {
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) bytesReceived++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int off, int len) throws IOException {
+            int n = super.read(buffer, off, len);
+            if (n > 0) bytesReceived += n;
+            return n;
+        }
+    }
+
+    private class CountingOutputStream extends FilterOutputStream {
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            bytesSent++;
+        }
+
+        @Override
+        public void write(byte[] buffer, int off, int len) throws IOException {
+            out.write(buffer, off, len); // FilterOutputStream would write it byte by byte
+            bytesSent += len;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.distributed.systems.client;
+
+import com.distributed.systems.util.Histogram;
+import com.distributed.systems.util.LatencyHistogram;
+import com.distributed.systems.util.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What a client spent its time on, so a slow call can be pinned on the broker, the network or the
+ * client's own retries:
+ * <p>
+ * - latency of every attempt, per command and overall, measured from borrowing a connection to
+ *   reading the response;
+ * - failed attempts, retries and the time spent backing off between them;
+ * - bytes sent and received, and the size of produce requests;
+ * - requests currently in flight.
+ * <p>
+ * Read it through the getters, or over JMX once registered (type=ClientMetrics).
+ */
+public class ClientMetrics implements ClientMetricsMBean {
+    private static final String JMX_DOMAIN = "com.distributed.systems";
+
+    private final Map<String, LatencyHistogram> commandLatency = new ConcurrentHashMap<>();
+    private final LatencyHistogram requestLatency = new LatencyHistogram();
+    private final Histogram produceSizes = new Histogram(); // bytes
+
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder backoffMs = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private ObjectName registeredName;
+
+    void requestStarted() {
+        inFlight.incrementAndGet();
+    }
+
+    void requestFinished() {
+        inFlight.decrementAndGet();
+    }
+
+    void recordRequest(String command, long nanos, long sent, long received) {
+        requestLatency.record(nanos);
+        commandLatency.computeIfAbsent(command, c -> new LatencyHistogram()).record(nanos);
+        bytesSent.add(sent);
+        bytesReceived.add(received);
+    }
+
+    void recordError() {
+        errors.increment();
+    }
+
+    void recordRetry(long waitMs) {
+        retries.increment();
+        backoffMs.add(waitMs);
+    }
+
+    void recordProduceSize(int bytes) {
+        produceSizes.record(bytes);
+    }
+
+    /**
+     * Latency histogram of one command, or null if it was never sent.
+     */
+    public LatencyHistogram getLatency(String command) {
+        return commandLatency.get(command);
+    }
+
+    public LatencyHistogram getRequestLatency() {
+        return requestLatency;
+    }
+
+    public Histogram getProduceSizes() {
+        return produceSizes;
+    }
+
+    public Set<String> getCommands() {
+        return Set.copyOf(commandLatency.keySet());
+    }
+
+    @Override
+    public long getRequestCount() {
+        return requestLatency.getCount();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    @Override
+    public long getBackoffTimeMs() {
+        return backoffMs.sum();
+    }
+
+    @Override
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    @Override
+    public int getInFlightRequests() {
+        return inFlight.get();
+    }
+
+    @Override
+    public double getRequestLatencyP50Ms() {
+        return requestLatency.getPercentile(50) / 1e6;
+    }
+
+    @Override
+    public double getRequestLatencyP99Ms() {
+        return requestLatency.getPercentile(99) / 1e6;
+    }
+
+    @Override
+    public double getRequestLatencyMaxMs() {
+        return requestLatency.getMaxNanos() / 1e6;
+    }
+
+    @Override
+    public double getProduceSizeP99Bytes() {
+        return produceSizes.getPercentile(99);
+    }
+
+    @Override
+    public double getLatencyP99Ms(String command) {
+        LatencyHistogram histogram = commandLatency.get(command);
+        return (histogram == null) ? 0 : histogram.getPercentile(99) / 1e6;
+    }
+
+    @Override
+    public String getStatsReport() {
+        StringBuilder report = new StringBuilder(String.format(
+                "REQUESTS=%d, ERRORS=%d, RETRIES=%d, BACKOFF=%dms, BYTES_SENT=%d, BYTES_RECEIVED=%d, IN_FLIGHT=%d, PRODUCE_SIZE_P99=%dB",
+                getRequestCount(), errors.sum(), retries.sum(), backoffMs.sum(), bytesSent.sum(),
+                bytesReceived.sum(), inFlight.get(), produceSizes.getPercentile(99)));
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(commandLatency).entrySet()) {
+            report.append(", ").append(entry.getKey()).append("=[").append(entry.getValue().summary()).append(']');
+        }
+        return report.toString();
+    }
+
+    /**
+     * Publishes the metrics on the platform MBean server under type=ClientMetrics,client=id.
+     * A failure is logged and otherwise ignored: the client works the same without JMX.
+     */
+    public synchronized void register(String id) {
+        if (registeredName != null) return;
+        try {
+            ObjectName name = new ObjectName(JMX_DOMAIN + ":type=ClientMetrics,client=" + ObjectName.quote(id));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            registeredName = name;
+        } catch (JMException e) {
+            Logger.logWarning("Could not register client metrics over JMX: " + e.getMessage());
+        }
+    }
+
+    public synchronized void unregister() {
+        if (registeredName == null) return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(registeredName)) {
+                server.unregisterMBean(registeredName);
+            }
+        } catch (JMException e) {
+            Logger.logWarning("Could not unregister client metrics: " + e.getMessage());
+        }
+        registeredName = null;
+    }
+
+    public synchronized ObjectName getObjectName() {
+        return registeredName;
+    }
+}
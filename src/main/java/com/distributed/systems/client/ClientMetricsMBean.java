@@ -0,0 +1,36 @@
+package com.distributed.systems.client;
+
+/**
+ * JMX view of a client's ClientMetrics. Latencies are in milliseconds.
+ */
+public interface ClientMetricsMBean {
+
+    long getRequestCount();
+
+    long getErrorCount();
+
+    long getRetryCount();
+
+    long getBackoffTimeMs();
+
+    long getBytesSent();
+
+    long getBytesReceived();
+
+    int getInFlightRequests();
+
+    double getRequestLatencyP50Ms();
+
+    double getRequestLatencyP99Ms();
+
+    double getRequestLatencyMaxMs();
+
+    double getProduceSizeP99Bytes();
+
+    /**
+     * p99 latency of one command, e.g. "PRODUCE", or 0 if it was never sent.
+     */
+    double getLatencyP99Ms(String command);
+
+    String getStatsReport();
+}
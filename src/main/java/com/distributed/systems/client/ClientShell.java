@@ -1,36 +1,40 @@
 package com.distributed.systems.client;
 
+import com.distributed.systems.model.BrokerAddress;
+import com.distributed.systems.storage.LogRecord;
 import com.distributed.systems.util.Logger;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
 
 public class ClientShell {
     public static void main(String[] args) {
         Logger.logBanner();
 
-        String host = "localhost";
-        int currentPort = 9001;
-        if (args.length >= 1) {
-            host = args[0];
-        }
-        if (args.length >= 2) {
-            try {
-                currentPort = Integer.parseInt(args[1]);
-            } catch (NumberFormatException e) {
-                Logger.logError("Invalid port. Usage: ClientShell [host] [port]");
-                return;
-            }
+        List<BrokerAddress> bootstrap;
+        try {
+            bootstrap = parseBootstrap(args);
+        } catch (NumberFormatException e) {
+            Logger.logError("Invalid port. Usage: ClientShell [host] [port] | ClientShell host:port,host:port,...");
+            return;
         }
 
         Scanner scanner = new Scanner(System.in);
 
-        try (KafkaLiteClient client = new KafkaLiteClient(host, currentPort, "demo-group")) {
-            Logger.logBootstrap("Shell session started. Connected to: " + host + ":" + currentPort);
+        KafkaLiteClient client = null;
+        try {
+            client = new KafkaLiteClient(bootstrap, "demo-group", true);
+            Logger.logBootstrap("Shell session started. Connected to: " + client.getCurrentBroker());
             System.out.println("Commands:");
             System.out.println("  produce <topic> <key> <value>");
             System.out.println("    -> expects a numeric offset on success");
             System.out.println("  consume <topic> <offset>");
             System.out.println("    -> prints record payload if found");
+            System.out.println("  lookup <topic> <key>");
+            System.out.println("    -> prints the latest value written for the key");
+            System.out.println("  connect <host> <port>");
+            System.out.println("  leader");
             System.out.println("  stats");
             System.out.println("  help");
             System.out.println("  quit");
@@ -72,19 +76,54 @@ public class ClientShell {
                             client.consume(parts[1], consumeOffset);
                             break;
 
+                        case "lookup":
+                            // Usage: lookup <topic> <key>
+                            if (parts.length < 3) {
+                                Logger.logError("Usage: lookup <topic> <key>");
+                                break;
+                            }
+                            LogRecord record = client.lookupKey(parts[1], parts[2]);
+                            if (record == null) {
+                                Logger.logWarning("No record with key [" + parts[2] + "] in " + parts[1]);
+                            } else {
+                                System.out.printf("[Offset: %d] [TS: %d] | Key: %s | Val: %s%n",
+                                        record.offset(), record.timestamp(), new String(record.key()), new String(record.value()));
+                            }
+                            break;
+
                         case "connect":
-                            Logger.logWarning("Connect is not supported yet. Restart shell with host/port args.");
+                            // Usage: connect <host> <port>
+                            if (parts.length < 3) {
+                                Logger.logError("Usage: connect <host> <port>");
+                                break;
+                            }
+                            KafkaLiteClient next = new KafkaLiteClient(parts[1], Integer.parseInt(parts[2]), "demo-group", true);
+                            client.close();
+                            client = next;
+                            Logger.logBootstrap("Connected to: " + client.getCurrentBroker());
+                            break;
+
+                        case "leader":
+                            Logger.logInfo("Current leader: " + client.fetchLeader());
                             break;
 
                         case "stats":
                             Logger.logInfo("Broker stats: " + client.getStats());
                             break;
 
+                        case "metrics":
+                            Logger.logInfo("Client metrics: " + client.getMetrics().getStatsReport());
+                            break;
+
                         case "help":
                             System.out.println("Commands:");
                             System.out.println("  produce <topic> <key> <value>");
                             System.out.println("  consume <topic> <offset>");
+                            System.out.println("  lookup <topic> <key>");
+                            System.out.println("  connect <host> <port>");
+                            System.out.println("  leader");
                             System.out.println("  stats");
+                            System.out.println("  metrics");
                             System.out.println("  quit");
                             break;
 
@@ -97,6 +136,32 @@ public class ClientShell {
             }
         } catch (Exception e) {
             Logger.logError("Failed to initialize shell: " + e.getMessage());
+        } finally {
+            if (client != null) {
+                try {
+                    client.close();
+                } catch (Exception ignored) {
+                }
+            }
+        }
+    }
+
+    /*
+     * Either [host] [port] for a single broker, or one comma-separated host:port list.
+     */
+    private static List<BrokerAddress> parseBootstrap(String[] args) {
+        List<BrokerAddress> brokers = new ArrayList<>();
+        if (args.length >= 1 && args[0].contains(":")) {
+            for (String broker : args[0].split(",")) {
+                int colon = broker.lastIndexOf(':');
+                brokers.add(new BrokerAddress(broker.substring(0, colon), Integer.parseInt(broker.substring(colon + 1))));
+            }
+            return brokers;
         }
+
+        String host = (args.length >= 1) ? args[0] : "localhost";
+        int port = (args.length >= 2) ? Integer.parseInt(args[1]) : 9001;
+        brokers.add(new BrokerAddress(host, port));
+        return brokers;
     }
 }
@@ -0,0 +1,238 @@
+package com.distributed.systems.client;
+
+import com.distributed.systems.model.BrokerAddress;
+import com.distributed.systems.util.FatalClientException;
+import com.distributed.systems.util.Logger;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reusable v1 connections, keyed by broker. A request borrows a connection, runs, and hands it
+ * back, so a steady stream of requests to a broker costs one TCP handshake instead of one each.
+ * <p>
+ * - At most maxPerBroker connections per broker are open at once; borrowers wait for a free one.
+ * - A connection that sat idle is health-checked before it is handed out again.
+ * - Connections idle for longer than idleTimeoutMs are closed by a background sweep.
+ * - A connection that failed mid-request is discarded together with the broker's other idle
+ *   connections, which are most likely dead for the same reason. An error response from the
+ *   broker is not such a failure.
+ */
+public class ConnectionPool implements AutoCloseable {
+    private static final int DEFAULT_MAX_PER_BROKER = 8;
+    private static final long DEFAULT_IDLE_TIMEOUT_MS = 60000;
+    private static final int DEFAULT_CONNECT_TIMEOUT_MS = 2000;
+    private static final long VALIDATE_AFTER_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    /**
+     * A request/response exchange on a borrowed connection.
+     */
+    @FunctionalInterface
+    public interface Exchange<T> {
+        T run(DataInputStream in, DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * An exchange that needs the connection itself, e.g. to encode into its send buffer.
+     */
+    @FunctionalInterface
+    public interface ConnectionExchange<T> {
+        T run(BrokerConnection connection) throws IOException;
+    }
+
+    private final int maxPerBroker;
+    private final long idleTimeoutNanos;
+    private final int connectTimeoutMs;
+    private final int readTimeoutMs;
+    private final long borrowTimeoutMs;
+
+    private final Map<BrokerAddress, BrokerPool> pools = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed = false;
+
+    public ConnectionPool() {
+        this(DEFAULT_MAX_PER_BROKER, DEFAULT_IDLE_TIMEOUT_MS, DEFAULT_CONNECT_TIMEOUT_MS, 0);
+    }
+
+    /**
+     * @param readTimeoutMs how long a response may take before the request fails, 0 for no limit
+     */
+    public ConnectionPool(int maxPerBroker, long idleTimeoutMs, int connectTimeoutMs, int readTimeoutMs) {
+        this.maxPerBroker = Math.max(1, maxPerBroker);
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.readTimeoutMs = readTimeoutMs;
+        this.borrowTimeoutMs = Math.max(connectTimeoutMs, readTimeoutMs > 0 ? readTimeoutMs : 30000);
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "connection-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long sweepMs = Math.max(100, idleTimeoutMs / 2);
+        evictor.scheduleAtFixedRate(this::evictIdle, sweepMs, sweepMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection, runs the exchange and returns the connection to the pool. If the
+     * exchange fails with an IOException or an unexpected RuntimeException the connection is
+     * discarded, since the stream may be left mid-message. A FatalClientException is an error the
+     * broker answered with in full, so the connection goes back to the pool.
+     */
+    public <T> T execute(BrokerAddress broker, Exchange<T> exchange) throws IOException {
+        return execute(broker, (ConnectionExchange<T>) connection -> exchange.run(connection.in(), connection.out()));
+    }
+
+    /**
+     * Same as above, for exchanges that work on the connection itself.
+     */
+    public <T> T execute(BrokerAddress broker, ConnectionExchange<T> exchange) throws IOException {
+        BrokerConnection connection = borrow(broker);
+        try {
+            T result = exchange.run(connection);
+            release(connection);
+            return result;
+        } catch (FatalClientException e) {
+            release(connection);
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            invalidate(connection);
+            throw e;
+        }
+    }
+
+    /**
+     * Hands out an idle connection to the broker, or opens a new one if the broker is below its
+     * limit. Every borrow must be matched by release() or invalidate().
+     */
+    public BrokerConnection borrow(BrokerAddress broker) throws IOException {
+        if (closed) throw new IOException("Connection pool is closed");
+        BrokerPool pool = pools.computeIfAbsent(broker, b -> new BrokerPool());
+
+        try {
+            if (!pool.permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new IOException("Timed out waiting for a connection to " + broker);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a connection to " + broker, e);
+        }
+
+        try {
+            BrokerConnection idle;
+            while ((idle = pool.pollIdle()) != null) {
+                if (idle.getIdleNanos() < VALIDATE_AFTER_IDLE_NANOS || idle.isHealthy()) {
+                    return idle;
+                }
+                idle.closeQuietly(); // the broker went away while it sat in the pool
+            }
+            return new BrokerConnection(broker, connectTimeoutMs, readTimeoutMs);
+        } catch (IOException | RuntimeException e) {
+            pool.permits.release();
+            throw e;
+        }
+    }
+
+    public void release(BrokerConnection connection) {
+        BrokerPool pool = pools.get(connection.getBroker());
+        if (pool == null || closed) {
+            connection.close();
+            return;
+        }
+        connection.touch();
+        pool.offerIdle(connection);
+        pool.permits.release();
+    }
+
+    /**
+     * Discards a connection that failed, along with the broker's idle ones.
+     */
+    public void invalidate(BrokerConnection connection) {
+        connection.closeQuietly();
+        BrokerPool pool = pools.get(connection.getBroker());
+        if (pool == null) return;
+        for (BrokerConnection idle : pool.drainIdle()) {
+            idle.closeQuietly();
+        }
+        pool.permits.release();
+    }
+
+    public int getIdleCount(BrokerAddress broker) {
+        BrokerPool pool = pools.get(broker);
+        return (pool == null) ? 0 : pool.idleCount();
+    }
+
+    public int getActiveCount(BrokerAddress broker) {
+        BrokerPool pool = pools.get(broker);
+        return (pool == null) ? 0 : maxPerBroker - pool.permits.availablePermits();
+    }
+
+    private void evictIdle() {
+        for (Map.Entry<BrokerAddress, BrokerPool> entry : pools.entrySet()) {
+            for (BrokerConnection expired : entry.getValue().drainIdleOlderThan(idleTimeoutNanos)) {
+                Logger.logInfo("Closing idle " + expired);
+                expired.close();
+            }
+        }
+    }
+
+    /**
+     * Closes every idle connection. Borrowed ones are closed when they come back.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        for (BrokerPool pool : pools.values()) {
+            for (BrokerConnection idle : pool.drainIdle()) {
+                idle.close();
+            }
+        }
+    }
+
+    /*
+     * Idle connections are kept most-recently-used first, so a light load keeps reusing the same
+     * warm connection and lets the rest age out.
+     */
+    private class BrokerPool {
+        final Semaphore permits = new Semaphore(maxPerBroker);
+        private final Deque<BrokerConnection> idle = new ArrayDeque<>();
+
+        synchronized BrokerConnection pollIdle() {
+            return idle.pollFirst();
+        }
+
+        synchronized void offerIdle(BrokerConnection connection) {
+            idle.addFirst(connection);
+        }
+
+        synchronized int idleCount() {
+            return idle.size();
+        }
+
+        synchronized List<BrokerConnection> drainIdle() {
+            List<BrokerConnection> drained = new ArrayList<>(idle);
+            idle.clear();
+            return drained;
+        }
+
+        synchronized List<BrokerConnection> drainIdleOlderThan(long nanos) {
+            List<BrokerConnection> expired = new ArrayList<>();
+            while (!idle.isEmpty() && idle.peekLast().getIdleNanos() > nanos) {
+                expired.add(idle.pollLast());
+            }
+            return expired;
+        }
+    }
+}
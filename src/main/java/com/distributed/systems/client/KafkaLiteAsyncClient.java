@@ -0,0 +1,180 @@
+package com.distributed.systems.client;
+
+import com.distributed.systems.storage.LogRecord;
+import com.distributed.systems.util.ApiKey;
+import com.distributed.systems.util.Protocol;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking counterpart of KafkaLiteClient. An instance is thread-safe: any number of threads
+ * can share it, and their requests are multiplexed over one pipelined v2 connection whose reader
+ * thread completes the futures.
+ * <p>
+ * Calls only queue the request and return its CompletableFuture. A single sender thread does
+ * everything that can block, in call order: reconnecting (connect plus the v2 handshake), waiting
+ * for a free in-flight slot, waiting out a broker throttle and writing to the socket. Only the
+ * constructor blocks, to connect the first time.
+ * <p>
+ * Backpressure goes through the future: once maxPending requests are queued or in flight, further
+ * calls fail straight away with an IOException, which is safe to retry once earlier ones complete.
+ * <p>
+ * Failures are reported through the future, never thrown. There are no automatic retries (the
+ * caller knows whether a request is safe to resend), but a broken connection is replaced on the
+ * next call.
+ */
+public class KafkaLiteAsyncClient implements AutoCloseable {
+    private static final int DEFAULT_MAX_IN_FLIGHT = 256;
+    private static final int DEFAULT_MAX_PENDING = 4096;
+
+    private final String host;
+    private final int port;
+    private final String groupId;
+    private final int maxInFlight;
+    private final int maxPending;
+    private final ExecutorService sender;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private PipelinedConnection connection;
+    private boolean closed = false;
+
+    /**
+     * Sends one request on the connection; runs on the sender thread.
+     */
+    @FunctionalInterface
+    private interface Request<T> {
+        CompletableFuture<T> send(PipelinedConnection connection) throws IOException;
+    }
+
+    public KafkaLiteAsyncClient(String host, int port, String groupId) throws IOException {
+        this(host, port, groupId, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    public KafkaLiteAsyncClient(String host, int port, String groupId, int maxInFlight) throws IOException {
+        this(host, port, groupId, maxInFlight, Math.max(DEFAULT_MAX_PENDING, maxInFlight));
+    }
+
+    /**
+     * @param maxInFlight requests sent to the broker and not yet answered
+     * @param maxPending  requests queued or in flight before calls start failing
+     */
+    public KafkaLiteAsyncClient(String host, int port, String groupId, int maxInFlight, int maxPending) throws IOException {
+        this.host = host;
+        this.port = port;
+        this.groupId = groupId;
+        this.maxInFlight = maxInFlight;
+        this.maxPending = Math.max(1, maxPending);
+        connection(); // fail fast if the broker is unreachable
+        this.sender = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "async-client-sender-" + host + ":" + port);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private synchronized PipelinedConnection connection() throws IOException {
+        if (closed) throw new IOException("Client is closed");
+        if (connection == null || connection.isClosed()) {
+            connection = new PipelinedConnection(host, port, maxInFlight, Protocol.MODE_V2);
+        }
+        return connection;
+    }
+
+    /*
+     * Counts the request against maxPending and hands it to the sender thread. The returned future
+     * follows the connection's future, so a request is pending until its response has been read.
+     */
+    private <T> CompletableFuture<T> enqueue(Request<T> request) {
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            return CompletableFuture.failedFuture(
+                    new IOException(maxPending + " requests are already pending, retry later"));
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        result.whenComplete((value, error) -> pending.decrementAndGet());
+        try {
+            sender.execute(() -> {
+                try {
+                    request.send(connection()).whenComplete((value, error) -> {
+                        if (error == null) {
+                            result.complete(value);
+                        } else {
+                            result.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                                    ? error.getCause() : error);
+                        }
+                    });
+                } catch (IOException | RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(new IOException("Client is closed"));
+        }
+        return result;
+    }
+
+    /**
+     * Completes with the offset the record was stored at, or -1 if the broker is not the leader.
+     */
+    public CompletableFuture<Long> produceAsync(String topic, String key, String value) {
+        byte[] keyBytes = (key == null) ? new byte[0] : key.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+        return enqueue(connection -> connection.produce(topic, keyBytes, valueBytes));
+    }
+
+    /**
+     * Completes with the record at the offset, or null if it has not been written yet.
+     */
+    public CompletableFuture<LogRecord> fetchAsync(String topic, long offset) {
+        return enqueue(connection -> connection.fetch(topic, offset));
+    }
+
+    /**
+     * Completes once the broker has stored the group's offset for the topic.
+     */
+    public CompletableFuture<Void> commitAsync(String topic, long offset) {
+        return enqueue(connection -> connection.send(ApiKey.OFFSET_COMMIT, out -> {
+            out.writeUTF(groupId);
+            out.writeUTF(topic);
+            out.writeLong(offset);
+        }, in -> {
+            in.readBoolean();
+            return null;
+        }));
+    }
+
+    /**
+     * Completes with the group's committed offset for the topic, or -1 if it never committed.
+     */
+    public CompletableFuture<Long> fetchOffsetAsync(String topic) {
+        return enqueue(connection -> connection.send(ApiKey.OFFSET_FETCH, out -> {
+            out.writeUTF(groupId);
+            out.writeUTF(topic);
+        }, in -> in.readLong()));
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    /**
+     * Closes the connection. Requests still queued or in flight fail with an IOException.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            if (connection != null) {
+                connection.close();
+            }
+        }
+        sender.shutdown(); // queued requests still run, and fail on the closed client
+    }
+}
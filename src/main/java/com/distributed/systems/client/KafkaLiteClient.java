@@ -1,72 +1,251 @@
 package com.distributed.systems.client;
 
+import com.distributed.systems.model.BrokerAddress;
+import com.distributed.systems.storage.LogRecord;
 import com.distributed.systems.util.FatalClientException;
 import com.distributed.systems.util.Logger;
 import com.distributed.systems.util.Protocol;
 
 import java.io.*;
-import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class KafkaLiteClient implements AutoCloseable {
 
-    private final String host;
-    private final int port;
-    private Socket socket;
+    // A failover can take a hop through a follower that still points at the old leader
+    private static final int MAX_LEADER_REDIRECTS = 3;
+    private static final AtomicInteger CLIENT_SEQUENCE = new AtomicInteger();
+
+    private final List<BrokerAddress> bootstrapServers;
+    private volatile BrokerAddress current;
     private final String groupId;
-    private DataOutputStream out;
-    private DataInputStream in;
+
+    // Every call borrows a pooled connection, so one client can be shared by several threads
+    private final ConnectionPool pool;
+    private final boolean ownsPool;
+
+    // Idempotent produce: a random producer id plus a per-topic sequence lets the broker drop retried duplicates
+    private final boolean idempotent;
+    private final long producerId = new SecureRandom().nextLong() & Long.MAX_VALUE;
+    private final Map<String, Integer> sequences = new HashMap<>();
+
+    private final ClientMetrics metrics = new ClientMetrics();
 
     // Background scheduler for auto-committing
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
 
     public KafkaLiteClient(String host, int port, String groupId) throws IOException {
-        this.host = host;
-        this.port = port;
+        this(host, port, groupId, false);
+    }
+
+    public KafkaLiteClient(String host, int port, String groupId, boolean idempotent) throws IOException {
+        this(List.of(new BrokerAddress(host, port)), groupId, idempotent);
+    }
+
+    /**
+     * Connects to the first reachable broker of the list. Writes then follow the leader: a produce
+     * answered with ERR_NOT_LEADER asks the broker for the current leader and is resent there, and
+     * a lost connection falls back to the other bootstrap brokers.
+     */
+    public KafkaLiteClient(List<BrokerAddress> bootstrapServers, String groupId, boolean idempotent) throws IOException {
+        this(bootstrapServers, groupId, idempotent, null);
+    }
+
+    /**
+     * @param pool connections shared with other clients, or null for a pool of its own; a shared
+     *             pool is left open when this client is closed
+     */
+    public KafkaLiteClient(List<BrokerAddress> bootstrapServers, String groupId, boolean idempotent,
+                           ConnectionPool pool) throws IOException {
+        if (bootstrapServers.isEmpty()) {
+            throw new IllegalArgumentException("At least one bootstrap broker is required");
+        }
+        this.bootstrapServers = List.copyOf(bootstrapServers);
+        this.current = this.bootstrapServers.get(0);
         this.groupId = groupId;
-        connect();
+        this.idempotent = idempotent;
+        this.ownsPool = (pool == null);
+        this.pool = ownsPool ? new ConnectionPool() : pool;
+        try {
+            connect();
+        } catch (IOException e) {
+            if (ownsPool) this.pool.close();
+            throw e;
+        }
+        metrics.register(groupId + "-" + CLIENT_SEQUENCE.incrementAndGet());
     }
 
+    /*
+     * Picks the first reachable broker: the one we last talked to, then the rest of the bootstrap
+     * list. The connection it opens goes back to the pool for the next request.
+     */
     private void connect() throws IOException {
-        Logger.logNetwork("Connecting to broker at " + host + ":" + port + "...");
+        List<BrokerAddress> candidates = new ArrayList<>();
+        candidates.add(current);
+        for (BrokerAddress broker : bootstrapServers) {
+            if (!broker.equals(current)) candidates.add(broker);
+        }
 
-        this.socket = new Socket(host, port);
-        // Using Data streams for binary record support
-        this.out = new DataOutputStream(socket.getOutputStream());
-        this.in = new DataInputStream(socket.getInputStream());
+        IOException lastError = null;
+        for (BrokerAddress broker : candidates) {
+            Logger.logNetwork("Connecting to broker at " + broker + "...");
+            try {
+                pool.release(pool.borrow(broker));
+                this.current = broker;
+                return;
+            } catch (IOException e) {
+                Logger.logWarning("Broker " + broker + " unreachable: " + e.getMessage());
+                lastError = e;
+            }
+        }
+        throw lastError;
     }
 
     /**
-     * Sends a message to the broker with a key.
-     * Protocol: [String CMD][Int KeyLen][Bytes Key][Int ValLen][Bytes Val]
+     * Sends a message to the leader with a key, following a leader change if the broker we are
+     * connected to is no longer it. Returns -1 only if the leader could not be found.
+     * Strings are sent as UTF-8.
      */
     public long produce(String topic, String key, String value) throws IOException {
-        return executeWithRetry(() -> {
-            out.writeUTF(Protocol.CMD_PRODUCE); // "PRODUCE"
-            out.writeUTF(topic); //Tell the server which topic we are writing to
+        byte[] keyBytes = (key == null) ? null : key.getBytes(StandardCharsets.UTF_8);
+        return produce(topic, keyBytes, value.getBytes(StandardCharsets.UTF_8));
+    }
 
-            byte[] keyBytes = (key == null) ? new byte[0] : key.getBytes();
-            out.writeInt(keyBytes.length);
-            out.write(keyBytes);
+    /**
+     * Produce with pre-encoded bytes; the arrays are sent as they are, without a copy.
+     */
+    public long produce(String topic, byte[] key, byte[] value) throws IOException {
+        return produce(topic, (key == null) ? null : ByteBuffer.wrap(key), ByteBuffer.wrap(value));
+    }
 
-            byte[] valBytes = value.getBytes();
-            out.writeInt(valBytes.length);
-            out.write(valBytes);
+    /**
+     * Produce from buffers, heap or direct: the bytes between position and limit are sent and the
+     * buffers themselves are left untouched, so callers can reuse them. A null key is sent as an
+     * empty one.
+     */
+    public long produce(String topic, ByteBuffer key, ByteBuffer value) throws IOException {
+        // Assigned once, so a retry or a resend to the new leader carries the same sequence
+        int sequence = idempotent ? nextSequence(topic) : -1;
+
+        String command = idempotent ? Protocol.CMD_PRODUCE_IDEMPOTENT : Protocol.CMD_PRODUCE;
+
+        for (int redirects = 0; ; redirects++) {
+            long offset = executeWithRetry(command, connection -> sendProduce(connection, topic, sequence, key, value));
+            if (offset >= 0 || redirects >= MAX_LEADER_REDIRECTS || !redirectToLeader()) {
+                return offset;
+            }
+        }
+    }
+
+    /*
+     * Encodes the whole request into the connection's reusable direct buffer and sends it with one
+     * write. Idempotent producers send the same (producerId, sequence) on every retry, so the broker
+     * returns the original offset instead of appending a duplicate.
+     * Protocol: [String CMD][String Topic][Int KeyLen][Bytes Key][Int ValLen][Bytes Val]
+     * Idempotent: [String CMD][String Topic][Long ProducerId][Int Sequence][Int KeyLen][Bytes Key][Int ValLen][Bytes Val]
+     */
+    private long sendProduce(BrokerConnection connection, String topic, int sequence,
+                             ByteBuffer key, ByteBuffer value) throws IOException {
+        String command = idempotent ? Protocol.CMD_PRODUCE_IDEMPOTENT : Protocol.CMD_PRODUCE;
+        int keyLength = (key == null) ? 0 : key.remaining();
+        int maxSize = BrokerConnection.utfSize(command) + BrokerConnection.utfSize(topic)
+                + 8 + 4 + 4 + keyLength + 4 + value.remaining();
+
+        ByteBuffer buffer = connection.sendBuffer(maxSize);
+        BrokerConnection.putUTF(buffer, command);
+        BrokerConnection.putUTF(buffer, topic);
+        if (idempotent) {
+            buffer.putLong(producerId);
+            buffer.putInt(sequence);
+        }
+        buffer.putInt(keyLength);
+        if (key != null) {
+            BrokerConnection.putRemaining(buffer, key);
+        }
+        buffer.putInt(value.remaining());
+        BrokerConnection.putRemaining(buffer, value);
+        metrics.recordProduceSize(buffer.position());
+        connection.send(buffer);
+
+        return readProduceResponse(connection.in());
+    }
+
+    /*
+     * [Long Offset], followed by [String Error] when the offset is -1.
+     */
+    private long readProduceResponse(DataInputStream in) throws IOException {
+        long offset = in.readLong();
+        if (offset < 0) {
+            String error = in.readUTF();
+            if (error.equals(Protocol.ERR_NOT_LEADER)) {
+                return offset;
+            }
+            throw new FatalClientException("Server error: " + error);
+        }
+        return offset;
+    }
+
+    /**
+     * Asks the connected broker who the leader is. Returns the connected broker's own address if
+     * it leads.
+     * Protocol: [String CMD] -> [Boolean IsLeader][String LeaderHost][Int LeaderPort]
+     */
+    public BrokerAddress fetchLeader() throws IOException {
+        return executeWithRetry(Protocol.CMD_METADATA, (in, out) -> {
+            out.writeUTF(Protocol.CMD_METADATA);
             out.flush();
 
-            return in.readLong();
+            boolean isLeader = in.readBoolean();
+            BrokerAddress leader = new BrokerAddress(in.readUTF(), in.readInt());
+            return isLeader ? current : leader;
         });
     }
 
+    /*
+     * Moves the connection to the leader. Returns false if we are already on it, so the
+     * caller stops resending.
+     */
+    private boolean redirectToLeader() throws IOException {
+        BrokerAddress leader = fetchLeader();
+        if (leader.equals(current)) {
+            return false;
+        }
+        Logger.logInfo("Leader moved, redirecting from " + current + " to " + leader);
+        current = leader;
+        return true;
+    }
+
+    /**
+     * The broker this client is currently connected to (or will reconnect to first).
+     */
+    public BrokerAddress getCurrentBroker() {
+        return current;
+    }
+
+    private synchronized int nextSequence(String topic) {
+        return sequences.merge(topic, 1, Integer::sum) - 1;
+    }
+
+    public long getProducerId() {
+        return producerId;
+    }
+
     /**
      * Retrieves a message from the broker by offset.
      * Protocol: [String CMD][Long Offset]
      */
     public void consume(String topic, long offset) throws IOException {
-        executeWithRetry(() -> {
+        executeWithRetry(Protocol.CMD_CONSUME, (in, out) -> {
             out.writeUTF(Protocol.CMD_CONSUME);
             out.writeUTF(topic);
             out.writeLong(offset);
@@ -74,19 +253,9 @@ public class KafkaLiteClient implements AutoCloseable {
 
             boolean found = in.readBoolean();
             if (found) {
-                long resOffset = in.readLong();
-                long timestamp = in.readLong();
-
-                int keyLen = in.readInt();
-                byte[] key = new byte[keyLen];
-                in.readFully(key);
-
-                int valLen = in.readInt();
-                byte[] val = new byte[valLen];
-                in.readFully(val);
-
+                LogRecord record = readRecord(in);
                 System.out.printf("[Offset: %d] [TS: %d] | Key: %s | Val: %s%n",
-                        resOffset, timestamp, new String(key), new String(val));
+                        record.offset(), record.timestamp(), new String(record.key()), new String(record.value()));
             } else {
                 String error = in.readUTF();
 
@@ -100,11 +269,83 @@ public class KafkaLiteClient implements AutoCloseable {
         });
     }
 
+    /**
+     * Returns the latest record written with the given key, or null if the topic has no such key.
+     * Protocol: [String CMD][String Topic][Int KeyLen][Bytes Key]
+     */
+    public LogRecord lookupKey(String topic, String key) throws IOException {
+        return executeWithRetry(Protocol.CMD_LOOKUP_KEY, (in, out) -> {
+            out.writeUTF(Protocol.CMD_LOOKUP_KEY);
+            out.writeUTF(topic);
+
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(keyBytes.length);
+            out.write(keyBytes);
+            out.flush();
+
+            boolean found = in.readBoolean();
+            if (!found) {
+                String error = in.readUTF();
+                if (error.startsWith("Key not found")) {
+                    return null;
+                }
+                if (error.contains("does not exist")) {
+                    throw new FatalClientException("Server error: " + error);
+                }
+                throw new IOException("Retryable server error: " + error);
+            }
+
+            return readRecord(in);
+        });
+    }
+
+    /**
+     * Like consume, but returns the record instead of printing it, or null if the offset
+     * has not been written yet (so callers can poll the tail of the log).
+     */
+    public LogRecord fetch(String topic, long offset) throws IOException {
+        return executeWithRetry(Protocol.CMD_CONSUME, (in, out) -> {
+            out.writeUTF(Protocol.CMD_CONSUME);
+            out.writeUTF(topic);
+            out.writeLong(offset);
+            out.flush();
+
+            if (in.readBoolean()) {
+                return readRecord(in);
+            }
+
+            String error = in.readUTF();
+            if (error.endsWith("does not exist yet.")) {
+                return null;
+            }
+            if (error.contains("does not exist")) {
+                throw new FatalClientException("Server error: " + error);
+            }
+            throw new IOException("Retryable server error: " + error);
+        });
+    }
+
+    /*
+     * Reads the body of a found record: [Offset][Timestamp][KeyLen][Key][ValLen][Value]
+     */
+    private LogRecord readRecord(DataInputStream in) throws IOException {
+        long offset = in.readLong();
+        long timestamp = in.readLong();
+
+        byte[] key = new byte[in.readInt()];
+        in.readFully(key);
+
+        byte[] value = new byte[in.readInt()];
+        in.readFully(value);
+
+        return new LogRecord(offset, timestamp, key, value);
+    }
+
     /**
      * Helper to find where this client left off.
      */
     public long fetchOffset(String topic) throws IOException {
-        return executeWithRetry(() -> {
+        return executeWithRetry(Protocol.CMD_OFFSET_FETCH, (in, out) -> {
             out.writeUTF(Protocol.CMD_OFFSET_FETCH);
             out.writeUTF(this.groupId);
             out.writeUTF(topic);
@@ -114,7 +355,7 @@ public class KafkaLiteClient implements AutoCloseable {
     }
 
     public void commitOffset(String topic, long offset) throws IOException {
-        executeWithRetry(() -> {
+        executeWithRetry(Protocol.CMD_OFFSET_COMMIT, (in, out) -> {
             out.writeUTF(Protocol.CMD_OFFSET_COMMIT);
             out.writeUTF(this.groupId);
             out.writeUTF(topic);
@@ -128,55 +369,60 @@ public class KafkaLiteClient implements AutoCloseable {
      * Retrieves a health and performance report from the broker.
      */
     public String getStats() throws IOException {
-        return executeWithRetry(() -> {
+        return executeWithRetry(Protocol.CMD_STATS, (in, out) -> {
             out.writeUTF(Protocol.CMD_STATS);
             out.flush();
             return in.readUTF(); // Returns the report string
         });
     }
 
+    /**
+     * Latency, retry and traffic figures of this client, also published over JMX.
+     */
+    public ClientMetrics getMetrics() {
+        return metrics;
+    }
+
     @Override
     public void close() throws IOException {
-        if (socket != null && !socket.isClosed()) {
-            try {
-                out.writeUTF(Protocol.CMD_QUIT);
-                out.flush();
-            } catch (IOException ignored) {
-            }
-            socket.close();
+        scheduler.shutdownNow();
+        metrics.unregister();
+        if (ownsPool) {
+            pool.close(); // each connection says QUIT
         }
     }
 
-    @FunctionalInterface
-    private interface CommandAction<T> {
-        T execute() throws IOException;
+    /* Helper to execute network action and retry with backoff if the connection is lost. That
+     * includes a broker shedding load: v1 has no busy error, the broker closes the connection
+     * before running the request, so resending it is safe.
+     * */
+    private <T> T executeWithRetry(String command, ConnectionPool.Exchange<T> action) throws IOException {
+        return executeWithRetry(command, (ConnectionPool.ConnectionExchange<T>) connection -> action.run(connection.in(), connection.out()));
     }
 
-    /* Helper to execute network action and retry once if the connection is lost
-     * */
-    private <T> T executeWithRetry(CommandAction<T> action) throws IOException {
+    private <T> T executeWithRetry(String command, ConnectionPool.ConnectionExchange<T> action) throws IOException {
         int maxAttempts = 5;
         int attempt = 0;
         int backoffMs = 1000;
+        boolean reconnect = false;
 
         while (true) {
             try {
-                if (socket == null || socket.isClosed()) {
+                if (reconnect) {
                     connect();
                 }
-                return action.execute();
+                return timedExecute(command, action); // a failed connection is discarded by the pool
             } catch (IOException e) {
                 attempt++;
                 Logger.logError("Socket error (Attempt " + attempt + "/" + maxAttempts + "): " + e.getMessage());
-
-                //clean up dead socket
-                closeQuietly();
+                reconnect = true;
 
                 if (attempt >= maxAttempts) {
                     throw new IOException("Failed to execute command after " + maxAttempts + " attempts.", e);
                 }
 
                 Logger.logInfo("Retrying in " + backoffMs + "ms...");
+                metrics.recordRetry(backoffMs);
                 try {
                     Thread.sleep(backoffMs);
                 } catch (InterruptedException ie) {
@@ -190,12 +436,28 @@ public class KafkaLiteClient implements AutoCloseable {
         }
     }
 
-    private void closeQuietly() {
+    /*
+     * One attempt on a pooled connection. Its latency includes waiting for the connection, and its
+     * traffic is what the connection's counters moved by while this request held it.
+     */
+    private <T> T timedExecute(String command, ConnectionPool.ConnectionExchange<T> action) throws IOException {
+        long start = System.nanoTime();
+        metrics.requestStarted();
         try {
-            if (socket != null) socket.close();
-        } catch (IOException ignored) {
+            return pool.execute(current, connection -> {
+                long sent = connection.getBytesSent();
+                long received = connection.getBytesReceived();
+                T result = action.run(connection);
+                metrics.recordRequest(command, System.nanoTime() - start,
+                        connection.getBytesSent() - sent, connection.getBytesReceived() - received);
+                return result;
+            });
+        } catch (IOException | RuntimeException e) {
+            metrics.recordError();
+            throw e;
+        } finally {
+            metrics.requestFinished();
         }
-        socket = null; // Forces connect() to create a new one next time
     }
 
     /**
@@ -0,0 +1,205 @@
+package com.distributed.systems.client;
+
+import com.distributed.systems.storage.LogRecord;
+import com.distributed.systems.util.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A polling consumer for one group. A background prefetcher keeps a bounded buffer filled with
+ * the records after the current position, fetching a window of offsets per round trip over a
+ * pipelined connection, so the next batch is usually already local when poll() is called and
+ * processing overlaps with the network.
+ * <p>
+ * Positions follow the existing offset convention: the committed offset is the last record the
+ * group processed, and a subscription resumes right after it. Commits are explicit, through
+ * commitSync() or commitAsync().
+ * <p>
+ * poll() and the commit methods are meant to be called from one thread.
+ */
+public class KafkaLiteConsumer implements AutoCloseable {
+    private static final int DEFAULT_BUFFER_CAPACITY = 1000;
+    private static final int DEFAULT_FETCH_WINDOW = 100;
+    private static final long IDLE_BACKOFF_MS = 100;
+    private static final long ERROR_BACKOFF_MS = 1000;
+
+    /**
+     * A fetched record together with the topic it came from.
+     */
+    public record ConsumerRecord(String topic, LogRecord record) {
+    }
+
+    private final KafkaLiteAsyncClient client;
+    private final BlockingQueue<ConsumerRecord> buffer;
+    private final int fetchWindow;
+
+    private final Map<String, Long> fetchPositions = new ConcurrentHashMap<>(); // next offset to prefetch
+    private final Map<String, Long> positions = new ConcurrentHashMap<>();      // next offset to hand out
+
+    private Thread prefetcher;
+    private volatile boolean running = true;
+
+    public KafkaLiteConsumer(String host, int port, String groupId) throws IOException {
+        this(host, port, groupId, DEFAULT_BUFFER_CAPACITY, DEFAULT_FETCH_WINDOW);
+    }
+
+    /**
+     * @param bufferCapacity most records held locally ahead of poll()
+     * @param fetchWindow    most fetches in flight per round trip
+     */
+    public KafkaLiteConsumer(String host, int port, String groupId, int bufferCapacity, int fetchWindow) throws IOException {
+        this.client = new KafkaLiteAsyncClient(host, port, groupId, fetchWindow);
+        this.buffer = new ArrayBlockingQueue<>(Math.max(1, bufferCapacity));
+        this.fetchWindow = Math.max(1, fetchWindow);
+    }
+
+    /**
+     * Starts consuming the topic after the group's last committed offset, or from the beginning
+     * if the group never committed one.
+     */
+    public synchronized void subscribe(String topic) throws IOException {
+        if (positions.containsKey(topic)) return;
+
+        long committed = await(client.fetchOffsetAsync(topic));
+        long start = committed + 1; // -1 for a new group, so it starts at 0
+        positions.put(topic, start);
+        fetchPositions.put(topic, start);
+        Logger.logInfo("Subscribed to " + topic + " at offset " + start);
+
+        if (prefetcher == null) {
+            prefetcher = new Thread(this::prefetch, "consumer-prefetch-" + client.getGroupId());
+            prefetcher.setDaemon(true);
+            prefetcher.start();
+        }
+    }
+
+    /**
+     * Returns the buffered records, waiting up to timeoutMs for at least one. The batch is empty
+     * if nothing arrived in time.
+     */
+    public List<ConsumerRecord> poll(long timeoutMs) throws InterruptedException {
+        List<ConsumerRecord> batch = new ArrayList<>();
+        ConsumerRecord first = buffer.poll(timeoutMs, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return batch;
+        }
+        batch.add(first);
+        buffer.drainTo(batch);
+
+        for (ConsumerRecord record : batch) {
+            positions.put(record.topic(), record.record().offset() + 1);
+        }
+        return batch;
+    }
+
+    /**
+     * Offset of the next record poll() will return for the topic, or -1 if not subscribed.
+     */
+    public long position(String topic) {
+        return positions.getOrDefault(topic, -1L);
+    }
+
+    /**
+     * Commits the position of every subscribed topic that has made progress.
+     */
+    public CompletableFuture<Void> commitAsync() {
+        List<CompletableFuture<Void>> commits = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : positions.entrySet()) {
+            long lastProcessed = entry.getValue() - 1;
+            if (lastProcessed >= 0) {
+                commits.add(client.commitAsync(entry.getKey(), lastProcessed));
+            }
+        }
+        return CompletableFuture.allOf(commits.toArray(new CompletableFuture[0]));
+    }
+
+    public void commitSync() throws IOException {
+        await(commitAsync());
+    }
+
+    public int getBufferedCount() {
+        return buffer.size();
+    }
+
+    /*
+     * Each round fetches a window of offsets per topic in one go and buffers them in order. A
+     * full buffer blocks the put, which is what bounds how far ahead the prefetcher runs.
+     */
+    private void prefetch() {
+        while (running) {
+            boolean fetchedAny = false;
+            for (Map.Entry<String, Long> entry : fetchPositions.entrySet()) {
+                if (!running) return;
+                try {
+                    fetchedAny |= prefetch(entry.getKey(), entry.getValue());
+                } catch (InterruptedException e) {
+                    return;
+                } catch (IOException | RuntimeException e) {
+                    Logger.logError("Prefetch of " + entry.getKey() + " failed: " + e.getMessage());
+                    if (!sleep(ERROR_BACKOFF_MS)) return;
+                }
+            }
+            // Caught up with every topic: wait for new records instead of spinning on the tail
+            if (!fetchedAny && !sleep(IDLE_BACKOFF_MS)) return;
+        }
+    }
+
+    private boolean prefetch(String topic, long from) throws IOException, InterruptedException {
+        int window = Math.min(fetchWindow, Math.max(1, buffer.remainingCapacity()));
+        List<CompletableFuture<LogRecord>> fetches = new ArrayList<>(window);
+        for (int i = 0; i < window; i++) {
+            fetches.add(client.fetchAsync(topic, from + i));
+        }
+
+        long next = from;
+        for (CompletableFuture<LogRecord> fetch : fetches) {
+            LogRecord record = await(fetch);
+            if (record == null) break; // end of the log; the rest of the window is empty too
+            buffer.put(new ConsumerRecord(topic, record));
+            next = record.offset() + 1;
+        }
+        fetchPositions.put(topic, next);
+        return next > from;
+    }
+
+    private <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the broker", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            throw new IOException(cause);
+        }
+    }
+
+    private boolean sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+            return running;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (prefetcher != null) {
+            prefetcher.interrupt();
+        }
+        client.close();
+    }
+}
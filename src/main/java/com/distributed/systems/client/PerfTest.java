@@ -0,0 +1,363 @@
+package com.distributed.systems.client;
+
+import com.distributed.systems.config.BrokerConfig;
+import com.distributed.systems.server.BrokerServer;
+import com.distributed.systems.storage.LogRecord;
+import com.distributed.systems.util.LatencyHistogram;
+import com.distributed.systems.util.Logger;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load generator in the spirit of kafka-producer-perf-test / kafka-consumer-perf-test.
+ * Drives a broker through KafkaLiteClient from N producer and M consumer threads and reports
+ * throughput plus p50/p99/p999 latency.
+ * <p>
+ * Every consumer reads the whole topic from offset 0 (fan-out), so end-to-end latency is
+ * measured once per consumer per record. Values carry the producer's send time, which is only
+ * meaningful because producers and consumers share this JVM's monotonic clock.
+ * <p>
+ * Usage: PerfTest [--option=value ...]
+ * <pre>
+ *   --host=localhost --port=9001   broker to test (ignored with --embedded)
+ *   --embedded=false               start a throwaway BrokerServer in a temp dir
+ *   --topic=perf-&lt;timestamp&gt;       topic to write to (fresh by default)
+ *   --producers=1 --consumers=1    thread counts
+ *   --records=10000                records per producer
+ *   --record-size=100              value size in bytes
+ *   --keys=uniform                 none | sequential | uniform | zipf
+ *   --key-space=1000               number of distinct keys
+ *   --rate=0                       target records/sec across all producers (0 = as fast as possible)
+ *   --idempotent=false             use idempotent produce
+ * </pre>
+ */
+public class PerfTest {
+
+    private final String host;
+    private final int port;
+    private final String topic;
+    private final int producers;
+    private final int consumers;
+    private final long recordsPerProducer;
+    private final int recordSize;
+    private final KeyGenerator keyGenerator;
+    private final double targetRate;
+    private final boolean idempotent;
+
+    private final LatencyHistogram produceLatency = new LatencyHistogram();
+    private final LatencyHistogram fetchLatency = new LatencyHistogram();
+    private final LatencyHistogram endToEndLatency = new LatencyHistogram();
+    private final AtomicLong produceErrors = new AtomicLong();
+    private final AtomicLong consumedRecords = new AtomicLong();
+
+    // Send times are encoded relative to this so they fit a fixed-width, non-negative field
+    private final long clockBase = System.nanoTime();
+    private static final int TIMESTAMP_WIDTH = 19;
+
+    public PerfTest(String host, int port, String topic, int producers, int consumers, long recordsPerProducer,
+                    int recordSize, KeyGenerator keyGenerator, double targetRate, boolean idempotent) {
+        this.host = host;
+        this.port = port;
+        this.topic = topic;
+        this.producers = producers;
+        this.consumers = consumers;
+        this.recordsPerProducer = recordsPerProducer;
+        this.recordSize = Math.max(recordSize, TIMESTAMP_WIDTH);
+        this.keyGenerator = keyGenerator;
+        this.targetRate = targetRate;
+        this.idempotent = idempotent;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+
+        boolean embedded = Boolean.parseBoolean(options.getOrDefault("embedded", "false"));
+        String host = options.getOrDefault("host", "localhost");
+        int port = Integer.parseInt(options.getOrDefault("port", "9001"));
+
+        BrokerServer broker = null;
+        Path brokerDir = null;
+        if (embedded) {
+            port = freePort();
+            brokerDir = Files.createTempDirectory("kafka-lite-perf");
+            broker = startEmbeddedBroker(port, brokerDir);
+            host = "localhost";
+        }
+
+        int keySpace = Integer.parseInt(options.getOrDefault("key-space", "1000"));
+        PerfTest test = new PerfTest(
+                host,
+                port,
+                options.getOrDefault("topic", "perf-" + System.currentTimeMillis()),
+                Integer.parseInt(options.getOrDefault("producers", "1")),
+                Integer.parseInt(options.getOrDefault("consumers", "1")),
+                Long.parseLong(options.getOrDefault("records", "10000")),
+                Integer.parseInt(options.getOrDefault("record-size", "100")),
+                KeyGenerator.of(options.getOrDefault("keys", "uniform"), keySpace),
+                Double.parseDouble(options.getOrDefault("rate", "0")),
+                Boolean.parseBoolean(options.getOrDefault("idempotent", "false")));
+
+        String report;
+        try {
+            report = test.run();
+        } finally {
+            if (broker != null) {
+                broker.stop();
+                deleteRecursively(brokerDir);
+            }
+        }
+        // Printed last so the embedded broker's shutdown logging doesn't bury it
+        System.out.println(report);
+    }
+
+    /**
+     * Runs the load and returns the report.
+     */
+    public String run() throws InterruptedException {
+        CountDownLatch topicCreated = new CountDownLatch(1);
+        long totalRecords = recordsPerProducer * producers;
+        double perProducerRate = targetRate > 0 ? targetRate / producers : 0;
+
+        List<Thread> producerThreads = new ArrayList<>();
+        for (int i = 0; i < producers; i++) {
+            int id = i;
+            producerThreads.add(new Thread(() -> produceLoop(id, perProducerRate, topicCreated), "perf-producer-" + i));
+        }
+        List<Thread> consumerThreads = new ArrayList<>();
+        for (int i = 0; i < consumers; i++) {
+            consumerThreads.add(new Thread(() -> consumeLoop(totalRecords, topicCreated), "perf-consumer-" + i));
+        }
+
+        long start = System.nanoTime();
+        producerThreads.forEach(Thread::start);
+        consumerThreads.forEach(Thread::start);
+
+        for (Thread thread : producerThreads) thread.join();
+        long produceEnd = System.nanoTime();
+        // Nothing to wait for if every produce failed
+        topicCreated.countDown();
+        for (Thread thread : consumerThreads) thread.join();
+        long consumeEnd = System.nanoTime();
+
+        return report(totalRecords, produceEnd - start, consumeEnd - start);
+    }
+
+    private void produceLoop(int producerId, double rate, CountDownLatch topicCreated) {
+        SplittableRandom random = new SplittableRandom(producerId);
+        long intervalNanos = rate > 0 ? (long) (1_000_000_000L / rate) : 0;
+        char[] padding = new char[recordSize - TIMESTAMP_WIDTH];
+        Arrays.fill(padding, 'x');
+        String pad = new String(padding);
+
+        try (KafkaLiteClient client = new KafkaLiteClient(host, port, "perf-producer", idempotent)) {
+            long start = System.nanoTime();
+            for (long i = 0; i < recordsPerProducer; i++) {
+                // Latency is measured from when the record was due, not when it was sent, so a
+                // stalled broker shows up in the percentiles instead of just slowing the loop down
+                long due = intervalNanos > 0 ? start + i * intervalNanos : System.nanoTime();
+                long wait = due - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(wait);
+
+                String value = String.format("%0" + TIMESTAMP_WIDTH + "d", System.nanoTime() - clockBase) + pad;
+                long offset = client.produce(topic, keyGenerator.next(random, i), value);
+                produceLatency.record(System.nanoTime() - due);
+
+                if (offset < 0) {
+                    produceErrors.incrementAndGet();
+                } else {
+                    topicCreated.countDown();
+                }
+            }
+        } catch (Exception e) {
+            Logger.logError("Producer " + producerId + " stopped: " + e.getMessage());
+        }
+    }
+
+    private void consumeLoop(long totalRecords, CountDownLatch topicCreated) {
+        try {
+            topicCreated.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        try (KafkaLiteClient client = new KafkaLiteClient(host, port, "perf-consumer")) {
+            long offset = 0;
+            long idleSince = -1;
+            while (offset < totalRecords) {
+                long sent = System.nanoTime();
+                LogRecord record = client.fetch(topic, offset);
+                long now = System.nanoTime();
+
+                if (record == null) {
+                    // Caught up with the producers; give up if they've stopped producing
+                    if (idleSince < 0) idleSince = now;
+                    if (now - idleSince > TimeUnit.SECONDS.toNanos(10)) {
+                        Logger.logWarning("Consumer timed out at offset " + offset + " of " + totalRecords);
+                        return;
+                    }
+                    LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(200));
+                    continue;
+                }
+
+                idleSince = -1;
+                fetchLatency.record(now - sent);
+                long producedAt = Long.parseLong(new String(record.value(), 0, TIMESTAMP_WIDTH)) + clockBase;
+                endToEndLatency.record(now - producedAt);
+                consumedRecords.incrementAndGet();
+                offset++;
+            }
+        } catch (Exception e) {
+            Logger.logError("Consumer stopped: " + e.getMessage());
+        }
+    }
+
+    private String report(long totalRecords, long produceNanos, long consumeNanos) {
+        double produceSeconds = produceNanos / 1_000_000_000.0;
+        double consumeSeconds = consumeNanos / 1_000_000_000.0;
+        long produced = produceLatency.getCount() - produceErrors.get();
+
+        StringBuilder report = new StringBuilder();
+        report.append("\n===== kafka-lite perf test =====\n");
+        report.append(String.format("topic=%s, producers=%d, consumers=%d, records=%d, record.size=%dB, keys=%s, rate=%s%n",
+                topic, producers, consumers, totalRecords, recordSize, keyGenerator.name(),
+                targetRate > 0 ? String.format("%.0f/s", targetRate) : "unlimited"));
+        report.append(String.format("produce : %d records in %.2fs = %.1f rec/s, %.2f MB/s, errors=%d%n",
+                produced, produceSeconds, produced / produceSeconds,
+                produced * (double) recordSize / (1024 * 1024) / produceSeconds, produceErrors.get()));
+        report.append("          latency ").append(produceLatency.summary()).append('\n');
+        if (consumers > 0) {
+            long consumed = consumedRecords.get();
+            report.append(String.format("consume : %d records in %.2fs = %.1f rec/s, %.2f MB/s%n",
+                    consumed, consumeSeconds, consumed / consumeSeconds,
+                    consumed * (double) recordSize / (1024 * 1024) / consumeSeconds));
+            report.append("          fetch latency ").append(fetchLatency.summary()).append('\n');
+            report.append("          end-to-end    ").append(endToEndLatency.summary()).append('\n');
+        }
+        return report.toString();
+    }
+
+    public LatencyHistogram getProduceLatency() {
+        return produceLatency;
+    }
+
+    public LatencyHistogram getEndToEndLatency() {
+        return endToEndLatency;
+    }
+
+    public long getConsumedRecords() {
+        return consumedRecords.get();
+    }
+
+    /**
+     * Picks the key of each record.
+     */
+    public interface KeyGenerator {
+        String next(SplittableRandom random, long sequence);
+
+        String name();
+
+        static KeyGenerator of(String distribution, int keySpace) {
+            return switch (distribution.toLowerCase()) {
+                case "none" -> named("none", (random, sequence) -> null);
+                case "sequential" -> named("sequential", (random, sequence) -> "key-" + (sequence % keySpace));
+                case "uniform" -> named("uniform", (random, sequence) -> "key-" + random.nextInt(keySpace));
+                case "zipf" -> zipf(keySpace);
+                default -> throw new IllegalArgumentException("Unknown key distribution: " + distribution);
+            };
+        }
+
+        private static KeyGenerator named(String name, java.util.function.BiFunction<SplittableRandom, Long, String> generator) {
+            return new KeyGenerator() {
+                @Override
+                public String next(SplittableRandom random, long sequence) {
+                    return generator.apply(random, sequence);
+                }
+
+                @Override
+                public String name() {
+                    return name;
+                }
+            };
+        }
+
+        /*
+         * Zipf(s=1): key k is picked with probability proportional to 1/k, i.e. a few hot keys.
+         */
+        private static KeyGenerator zipf(int keySpace) {
+            double[] cumulative = new double[keySpace];
+            double sum = 0;
+            for (int k = 0; k < keySpace; k++) {
+                sum += 1.0 / (k + 1);
+                cumulative[k] = sum;
+            }
+            double total = sum;
+            return named("zipf", (random, sequence) -> {
+                int index = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+                return "key-" + (index >= 0 ? index : Math.min(-index - 1, keySpace - 1));
+            });
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Expected --option=value, got: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                options.put(arg.substring(2), "true");
+            } else {
+                options.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+        return options;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static BrokerServer startEmbeddedBroker(int port, Path dataDir) throws IOException, InterruptedException {
+        BrokerServer broker = new BrokerServer(port, dataDir.toString(), new BrokerConfig());
+        Thread brokerThread = new Thread(broker::start, "perf-embedded-broker");
+        brokerThread.setDaemon(true);
+        brokerThread.start();
+
+        // Wait until the broker accepts connections
+        for (int attempt = 0; attempt < 100; attempt++) {
+            try (Socket ignored = new Socket("localhost", port)) {
+                return broker;
+            } catch (IOException e) {
+                Thread.sleep(50);
+            }
+        }
+        throw new IOException("Embedded broker did not start on port " + port);
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (var stream = Files.walk(dir)) {
+            for (Path path : stream.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
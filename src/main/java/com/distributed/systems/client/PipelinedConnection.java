@@ -0,0 +1,312 @@
+package com.distributed.systems.client;
+
+import com.distributed.systems.storage.LogRecord;
+import com.distributed.systems.util.ApiKey;
+import com.distributed.systems.util.FatalClientException;
+import com.distributed.systems.util.Logger;
+import com.distributed.systems.util.Protocol;
+
+import java.io.*;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A broker connection that keeps many requests in flight. After a SWITCH_PROTOCOL handshake every
+ * request is tagged with a correlation id and written immediately; a reader thread matches the
+ * responses (which the broker sends in request order) back to their futures. Over a link with a
+ * round trip of R, throughput is no longer capped at 1/R requests per second but at maxInFlight/R.
+ * <p>
+ * Speaks the v2 format (numeric api keys, error code in the header) by default, or v1 commands in
+ * pipelined frames for brokers that predate it.
+ * <p>
+ * In v2 the broker reports quota throttling in each response header; the connection then holds
+ * back further requests until the throttle time has passed, as the broker expects.
+ * <p>
+ * There is no retry or reconnect here: when the connection breaks, every outstanding request fails
+ * and the caller decides what to resend.
+ */
+public class PipelinedConnection implements AutoCloseable {
+    private static final int DEFAULT_MAX_IN_FLIGHT = 256;
+
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final DataInputStream in;
+    private final Thread reader;
+    private final int mode;
+
+    private final Map<Integer, CompletableFuture<DataInputStream>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicInteger nextCorrelationId = new AtomicInteger();
+    private final Semaphore window; // bounds in-flight requests so a fast caller cannot run the broker out of buffer
+
+    private volatile boolean closed = false;
+    private volatile long throttledUntilNanos = 0;
+
+    /**
+     * Writes the request fields, i.e. everything after the command or api key.
+     */
+    @FunctionalInterface
+    public interface RequestWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Parses the body of a response.
+     */
+    @FunctionalInterface
+    public interface ResponseReader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    public PipelinedConnection(String host, int port) throws IOException {
+        this(host, port, DEFAULT_MAX_IN_FLIGHT, Protocol.MODE_V2);
+    }
+
+    public PipelinedConnection(String host, int port, int maxInFlight, int mode) throws IOException {
+        this(host, port, maxInFlight, mode, null);
+    }
+
+    /**
+     * @param mode     Protocol.MODE_V2 or Protocol.MODE_PIPELINED
+     * @param clientId name the broker's quotas are tracked under, or null for the client's address
+     */
+    public PipelinedConnection(String host, int port, int maxInFlight, int mode, String clientId) throws IOException {
+        Logger.logNetwork("Opening pipelined connection to " + host + ":" + port + "...");
+        this.socket = new Socket(host, port);
+        this.socket.setTcpNoDelay(true);
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.window = new Semaphore(Math.max(1, maxInFlight));
+        this.mode = mode;
+
+        if (clientId != null) {
+            out.writeUTF(Protocol.CMD_CLIENT_ID);
+            out.writeUTF(clientId);
+            out.flush();
+            in.readBoolean();
+        }
+
+        out.writeUTF(Protocol.CMD_SWITCH_PROTOCOL);
+        out.writeInt(mode);
+        out.flush();
+        if (!in.readBoolean()) {
+            socket.close();
+            throw new FatalClientException("Broker at " + host + ":" + port + " does not support protocol mode " + mode);
+        }
+
+        this.reader = new Thread(this::readResponses, "pipeline-reader-" + host + ":" + port);
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    /**
+     * Sends a request without waiting for earlier ones. Blocks while maxInFlight requests are
+     * already outstanding, and while the broker throttles this connection.
+     */
+    public <T> CompletableFuture<T> send(ApiKey api, RequestWriter request, ResponseReader<T> response) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream bodyOut = new DataOutputStream(body);
+        if (mode == Protocol.MODE_PIPELINED) {
+            bodyOut.writeUTF(api.command());
+        }
+        request.write(bodyOut);
+
+        try {
+            window.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for an in-flight slot", e);
+        }
+        try {
+            awaitThrottle();
+        } catch (InterruptedException e) {
+            window.release(); // nothing was sent on this slot
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while the broker throttles this connection", e);
+        }
+
+        int correlationId = nextCorrelationId.getAndIncrement();
+        CompletableFuture<DataInputStream> future = new CompletableFuture<>();
+        inFlight.put(correlationId, future);
+
+        try {
+            synchronized (out) {
+                if (closed) throw new IOException("Connection is closed");
+                if (mode == Protocol.MODE_V2) {
+                    out.writeInt(6 + body.size());
+                    out.writeShort(api.id());
+                } else {
+                    out.writeInt(4 + body.size());
+                }
+                out.writeInt(correlationId);
+                body.writeTo(out);
+                out.flush();
+            }
+        } catch (IOException e) {
+            if (inFlight.remove(correlationId) != null) {
+                window.release();
+            }
+            failAll(e);
+            throw e;
+        }
+
+        return future.thenApply(data -> {
+            try {
+                return response.read(data);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Produce: completes with the offset, or -1 if the broker is not the leader.
+     */
+    public CompletableFuture<Long> produce(String topic, byte[] key, byte[] value) throws IOException {
+        return send(ApiKey.PRODUCE, out -> {
+            out.writeUTF(topic);
+            out.writeInt(key.length);
+            out.write(key);
+            out.writeInt(value.length);
+            out.write(value);
+        }, in -> {
+            long offset = in.readLong();
+            if (offset < 0 && in.available() > 0) {
+                String error = in.readUTF();
+                if (!error.equals(Protocol.ERR_NOT_LEADER)) {
+                    throw new FatalClientException("Server error: " + error);
+                }
+            }
+            return offset;
+        });
+    }
+
+    /**
+     * Fetch: completes with the record, or null if the offset has not been written yet.
+     */
+    public CompletableFuture<LogRecord> fetch(String topic, long offset) throws IOException {
+        return send(ApiKey.CONSUME, out -> {
+            out.writeUTF(topic);
+            out.writeLong(offset);
+        }, in -> {
+            if (in.readBoolean()) {
+                long recordOffset = in.readLong();
+                long timestamp = in.readLong();
+                byte[] key = new byte[in.readInt()];
+                in.readFully(key);
+                byte[] value = new byte[in.readInt()];
+                in.readFully(value);
+                return new LogRecord(recordOffset, timestamp, key, value);
+            }
+
+            String error = in.readUTF();
+            if (error.endsWith("does not exist yet.")) {
+                return null;
+            }
+            if (error.contains("does not exist")) {
+                throw new FatalClientException("Server error: " + error);
+            }
+            throw new IOException("Retryable server error: " + error);
+        });
+    }
+
+    private void awaitThrottle() throws InterruptedException {
+        long remainingNanos = throttledUntilNanos - System.nanoTime();
+        if (remainingNanos > 0) {
+            Thread.sleep(remainingNanos / 1_000_000, (int) (remainingNanos % 1_000_000));
+        }
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private void readResponses() {
+        try {
+            while (!closed) {
+                int length = in.readInt();
+                int correlationId = in.readInt();
+                byte[] body = new byte[length - 4];
+                in.readFully(body);
+
+                CompletableFuture<DataInputStream> future = inFlight.remove(correlationId);
+                if (future == null) {
+                    throw new IOException("Response for unknown correlation id " + correlationId);
+                }
+                window.release();
+
+                DataInputStream response = new DataInputStream(new ByteArrayInputStream(body));
+                short errorCode = Protocol.ERROR_NONE;
+                if (mode == Protocol.MODE_V2) {
+                    errorCode = response.readShort();
+                    int throttleMs = response.readInt();
+                    if (throttleMs > 0) {
+                        throttledUntilNanos = System.nanoTime() + throttleMs * 1_000_000L;
+                    }
+                }
+                if (errorCode == Protocol.ERROR_BUSY) {
+                    future.completeExceptionally(new IOException("Broker is busy, retry later"));
+                } else if (errorCode != Protocol.ERROR_NONE) {
+                    future.completeExceptionally(new IOException("Broker returned error code " + errorCode));
+                } else {
+                    future.complete(response);
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                Logger.logError("Pipelined connection lost: " + e.getMessage());
+            }
+            failAll(e);
+        }
+    }
+
+    private void failAll(IOException cause) {
+        closeQuietly();
+        for (Integer correlationId : inFlight.keySet()) {
+            CompletableFuture<DataInputStream> future = inFlight.remove(correlationId);
+            if (future != null) {
+                window.release();
+                future.completeExceptionally(cause);
+            }
+        }
+    }
+
+    private void closeQuietly() {
+        closed = true;
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Closes the connection. Requests still in flight fail with an IOException.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        // v2 has no QUIT: closing the socket ends the session
+        if (mode == Protocol.MODE_PIPELINED) {
+            try {
+                synchronized (out) {
+                    ByteArrayOutputStream quit = new ByteArrayOutputStream();
+                    new DataOutputStream(quit).writeUTF(Protocol.CMD_QUIT);
+                    out.writeInt(4 + quit.size());
+                    out.writeInt(nextCorrelationId.getAndIncrement());
+                    quit.writeTo(out);
+                    out.flush();
+                }
+            } catch (IOException ignored) {
+            }
+        }
+        failAll(new IOException("Connection closed"));
+    }
+}
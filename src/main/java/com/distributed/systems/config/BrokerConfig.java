@@ -37,6 +37,22 @@ public class BrokerConfig {
         return Integer.parseInt(properties.getProperty("replication.leader.port", "9092"));
     }
 
+    public int getReplicaFetchMaxRecords() {
+        return Integer.parseInt(properties.getProperty("replication.fetch.max.records", "100"));
+    }
+
+    public int getReplicaFetchMaxInFlight() {
+        return Integer.parseInt(properties.getProperty("replication.fetch.max.in.flight", "4"));
+    }
+
+    public int getReplicaFetcherThreads() {
+        return Integer.parseInt(properties.getProperty("replication.fetcher.threads", "2"));
+    }
+
+    public String getAdvertisedHost() {
+        return properties.getProperty("server.advertised.host", "localhost");
+    }
+
     public long getMaxSegmentSize() {
         return Long.parseLong(properties.getProperty("storage.max.segment.size", "2048"));
     }
@@ -53,6 +69,110 @@ public class BrokerConfig {
         return Long.parseLong(properties.getProperty("storage.cleanup.interval.ms", "60000"));
     }
 
+    public boolean isDirectIoEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("storage.direct.io.enabled", "false"));
+    }
+
+    public int getDirectIoTailBytes() {
+        return Integer.parseInt(properties.getProperty("storage.direct.io.tail.bytes", "65536"));
+    }
+
+    public boolean isSegmentPreopenEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("storage.segment.preopen.enabled", "true"));
+    }
+
+    public double getSegmentPreopenThreshold() {
+        return Double.parseDouble(properties.getProperty("storage.segment.preopen.threshold", "0.75"));
+    }
+
+    public boolean isKeyIndexEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("storage.key.index.enabled", "false"));
+    }
+
+    public boolean isBloomFilterEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("storage.bloom.filter.enabled", "true"));
+    }
+
+    public double getBloomFilterFpp() {
+        return Double.parseDouble(properties.getProperty("storage.bloom.filter.fpp", "0.01"));
+    }
+
+    public int getProducerDedupWindow() {
+        return Integer.parseInt(properties.getProperty("producer.dedup.window", "32"));
+    }
+
+    public int getProducerMaxIds() {
+        return Integer.parseInt(properties.getProperty("producer.max.ids", "1024"));
+    }
+
+    public boolean isRemoteStorageEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("storage.remote.enabled", "false"));
+    }
+
+    public String getRemoteStorageDir() {
+        return properties.getProperty("storage.remote.dir", "remote-storage");
+    }
+
+    public int getRemoteLocalSegments() {
+        return Integer.parseInt(properties.getProperty("storage.remote.local.segments", "2"));
+    }
+
+    public int getRemoteCacheSegments() {
+        return Integer.parseInt(properties.getProperty("storage.remote.cache.segments", "4"));
+    }
+
+    public long getRemoteOffloadIntervalMs() {
+        return Long.parseLong(properties.getProperty("storage.remote.offload.interval.ms", "30000"));
+    }
+
+    public int getMaintenanceThreads() {
+        return Integer.parseInt(properties.getProperty("maintenance.threads", "2"));
+    }
+
+    public int getMaintenanceMaxTasksPerSec() {
+        return Integer.parseInt(properties.getProperty("maintenance.max.tasks.per.sec", "100"));
+    }
+
+    public String getNetworkMode() {
+        return properties.getProperty("server.network.mode", "nio");
+    }
+
+    public int getNetworkIoThreads() {
+        return Integer.parseInt(properties.getProperty("server.network.io.threads", "2"));
+    }
+
+    public int getRequestHandlerThreads() {
+        return Integer.parseInt(properties.getProperty("server.request.handler.threads", "8"));
+    }
+
+    public int getMaxRequestBytes() {
+        return Integer.parseInt(properties.getProperty("server.max.request.bytes", "104857600"));
+    }
+
+    public int getRequestQueueDepth() {
+        return Integer.parseInt(properties.getProperty("server.request.queue.depth", "500"));
+    }
+
+    public long getRequestQueueMaxMs() {
+        return Long.parseLong(properties.getProperty("server.request.queue.max.ms", "5000"));
+    }
+
+    public long getQuotaClientBytesPerSec() {
+        return Long.parseLong(properties.getProperty("quota.client.bytes.per.sec", "0"));
+    }
+
+    public long getQuotaClientRequestsPerSec() {
+        return Long.parseLong(properties.getProperty("quota.client.requests.per.sec", "0"));
+    }
+
+    public long getQuotaTopicBytesPerSec() {
+        return Long.parseLong(properties.getProperty("quota.topic.bytes.per.sec", "0"));
+    }
+
+    public long getQuotaTopicRequestsPerSec() {
+        return Long.parseLong(properties.getProperty("quota.topic.requests.per.sec", "0"));
+    }
+
     public void setProperty(String key, String value) {
         properties.setProperty(key, value);
     }
@@ -1,14 +1,11 @@
 package com.distributed.systems.replication;
 
+import com.distributed.systems.client.ConnectionPool;
 import com.distributed.systems.model.BrokerAddress;
 import com.distributed.systems.util.Logger;
 import com.distributed.systems.util.Protocol;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.net.InetSocketAddress;
-import java.net.Socket;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -20,6 +17,10 @@ public class ClusterController implements Runnable {
     private int consecutiveFailures = 0;
     private BrokerAddress activeLeader;
 
+    // One connection per broker for heartbeats and commands; 2s to connect or answer. It is closed
+    // after 1s idle, i.e. between heartbeats, so it does not pin a blocking-mode broker's thread
+    private final ConnectionPool pool = new ConnectionPool(1, 1000, 2000, 2000);
+
     public ClusterController(BrokerAddress leader, List<BrokerAddress> followers) {
         this.leaderAddress = leader;
         this.activeLeader = leader;
@@ -59,19 +60,18 @@ public class ClusterController implements Runnable {
                 Logger.logInfo("ClusterController shutting down due to interruption.");
             }
         }
+        pool.close();
     }
 
     private long fetchOffsetFromBroker(BrokerAddress candidate, String topic) {
-        try (Socket socket = new Socket(candidate.host(), candidate.port());
-             DataOutputStream out = new DataOutputStream(socket.getOutputStream());
-             DataInputStream in = new DataInputStream(socket.getInputStream())) {
-
-            out.writeUTF(Protocol.CMD_GET_OFFSET);
-            out.writeUTF(topic);
-            out.flush();
-
-            return in.readLong();
+        try {
+            return pool.execute(candidate, (in, out) -> {
+                out.writeUTF(Protocol.CMD_GET_OFFSET);
+                out.writeUTF(topic);
+                out.flush();
 
+                return in.readLong();
+            });
         } catch (IOException e) {
             Logger.logError("Failed to fetch offset from candidate" + candidate + ": " + e.getMessage());
         }
@@ -118,17 +118,16 @@ public class ClusterController implements Runnable {
     }
 
     private void sendUpdateLeaderCommand(BrokerAddress targetFollower, BrokerAddress newLeader) {
-        try (Socket socket = new Socket()) {
-            socket.connect(new InetSocketAddress(targetFollower.host(), targetFollower.port()), 2000);
-
-            try (DataOutputStream out = new DataOutputStream(socket.getOutputStream())) {
+        try {
+            // No response: the follower just starts fetching from the new leader
+            pool.execute(targetFollower, (in, out) -> {
                 out.writeUTF(Protocol.CMD_UPDATE_LEADER);
                 out.writeUTF(newLeader.host());
                 out.writeInt(newLeader.port());
                 out.flush();
-
-                Logger.logInfo("Redirected follower " + targetFollower + " to new leader " + newLeader);
-            }
+                return null;
+            });
+            Logger.logInfo("Redirected follower " + targetFollower + " to new leader " + newLeader);
         } catch (IOException e) {
             Logger.logWarning("Could not notify follower " + targetFollower + " of leader change: " + e.getMessage());
         }
@@ -137,19 +136,14 @@ public class ClusterController implements Runnable {
     private void sendPromoteCommand(BrokerAddress winner) {
         Logger.logBootstrap("Promoting broker " + winner + " to LEADER...");
 
-        try (Socket socket = new Socket()) {
-            socket.connect(new java.net.InetSocketAddress(winner.host(), winner.port()), 2000);
-
-            try (DataOutputStream out = new DataOutputStream(socket.getOutputStream());
-                 DataInputStream in = new DataInputStream(socket.getInputStream())) {
-
+        try {
+            String response = pool.execute(winner, (in, out) -> {
                 out.writeUTF(Protocol.CMD_PROMOTE);
                 out.flush();
-
-                String response = in.readUTF();
-                if ("PROMOTED_SUCCESSFULLY".equals(response)) {
-                    Logger.logNetwork("Broker " + winner + " confirmed promotion.");
-                }
+                return in.readUTF();
+            });
+            if ("PROMOTED_SUCCESSFULLY".equals(response)) {
+                Logger.logNetwork("Broker " + winner + " confirmed promotion.");
             }
         } catch (IOException e) {
             Logger.logError("CRITICAL: Failed to promote winner " + winner + ": " + e.getMessage());
@@ -161,27 +155,23 @@ public class ClusterController implements Runnable {
         if (isAlive(leaderAddress.host(), leaderAddress.port())) {
             Logger.logWarning("ZOMBIE DETECTED: Old leader " + leaderAddress + " is back online. Issuing demotion.");
 
-            try (Socket socket = new Socket()) {
-                socket.connect(new InetSocketAddress(leaderAddress.host(), leaderAddress.port()), 2000);
-
-                try (DataOutputStream out = new DataOutputStream(socket.getOutputStream());
-                     DataInputStream in = new DataInputStream(socket.getInputStream())) {
-
+            try {
+                String response = pool.execute(leaderAddress, (in, out) -> {
                     out.writeUTF(Protocol.CMD_DEMOTE);
                     out.writeUTF(activeLeader.host());
                     out.writeInt(activeLeader.port());
                     out.flush();
+                    return in.readUTF();
+                });
 
-                    //confirmation before adding back to rotation
-                    String response = in.readUTF();
-                    if ("DEMOTED_SUCCESSFULLY".equals(response)) {
-                        Logger.logInfo("Zombie " + leaderAddress + " successfully demoted and reintegrated.");
+                //confirmation before adding back to rotation
+                if ("DEMOTED_SUCCESSFULLY".equals(response)) {
+                    Logger.logInfo("Zombie " + leaderAddress + " successfully demoted and reintegrated.");
 
-                        // Reintegration
-                        if (!followers.contains(leaderAddress)) {
-                            followers.add(leaderAddress);
-                            Logger.logInfo("Added " + leaderAddress + " back to the active followers list.");
-                        }
+                    // Reintegration
+                    if (!followers.contains(leaderAddress)) {
+                        followers.add(leaderAddress);
+                        Logger.logInfo("Added " + leaderAddress + " back to the active followers list.");
                     }
                 }
             } catch (IOException e) {
@@ -190,11 +180,20 @@ public class ClusterController implements Runnable {
         }
     }
 
+    /*
+     * Heartbeat over the pooled connection: a METADATA round trip within 2 seconds. Unlike a bare
+     * TCP connect this also catches a broker that accepts connections but no longer serves them.
+     */
     private boolean isAlive(String host, int port) {
-        try (Socket s = new Socket()) {
-            // attempt to connect with a 2-second timeout
-            s.connect(new java.net.InetSocketAddress(host, port), 2000);
-            return true;
+        try {
+            return pool.execute(new BrokerAddress(host, port), (in, out) -> {
+                out.writeUTF(Protocol.CMD_METADATA);
+                out.flush();
+                in.readBoolean();
+                in.readUTF();
+                in.readInt();
+                return true;
+            });
         } catch (IOException e) {
             return false;
         }
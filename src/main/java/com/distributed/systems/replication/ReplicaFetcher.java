@@ -1,92 +1,254 @@
 package com.distributed.systems.replication;
 
+import com.distributed.systems.client.PipelinedConnection;
+import com.distributed.systems.model.BrokerAddress;
 import com.distributed.systems.storage.Log;
+import com.distributed.systems.storage.ProducerStateManager;
+import com.distributed.systems.storage.RecordBatch;
+import com.distributed.systems.util.ApiKey;
 import com.distributed.systems.util.Logger;
 import com.distributed.systems.util.Protocol;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.net.Socket;
-
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Keeps a set of a follower's topics in sync with the leader over one fetch session: a v2
+ * connection that stays open for the life of the fetcher. Each FOLLOWER_FETCH covers every topic
+ * the fetcher owns, so a handful of fetchers replicate any number of topics with a handful of
+ * threads and sockets.
+ * <p>
+ * While topics are behind, a window of fetches for consecutive offset ranges is kept in flight, so
+ * catching up is limited by bandwidth instead of one round trip per batch. Every response carries
+ * each topic's log-end offset on the leader, which is used both to detect divergence and to leave
+ * caught-up topics out of the extra fetches.
+ * <p>
+ * Records arrive as the leader's segments store them and are appended verbatim with
+ * Log.appendAsFollower, so they keep the leader's offsets and timestamps and are never re-encoded.
+ * The idempotent producer sequences among them come along and go into the local producer state,
+ * so a producer retrying against this broker after a failover is not duplicated.
+ * <p>
+ * The session holds its connection open for good. A leader in blocking mode serves each connection
+ * on one of its few pooled threads, so every fetcher takes a thread away from clients there; run
+ * the leader in nio or virtual mode.
+ * The session is reopened after any error.
+ */
 public class ReplicaFetcher implements Runnable {
-    private final String topic;
-    private final Log localLog;
-    private final String leaderHost;
-    private final int leaderPort;
+    private static final long IDLE_BACKOFF_MS = 1000;
+    private static final long ERROR_BACKOFF_MS = 2000;
+    private static final long RESPONSE_TIMEOUT_MS = 10000;
+
+    /*
+     * One topic's part of a response: the leader's log-end offset (-1 if it has no such topic), the
+     * records and the producer sequences among them.
+     */
+    private record TopicResponse(String topic, long logEndOffset, RecordBatch batch,
+                                 List<ProducerStateManager.Sequence> sequences) {
+    }
+
+    private final String name;
+    private final BrokerAddress leader;
+    private final int maxRecords;
+    private final int maxInFlight;
+
+    private final Map<String, Log> topics = new ConcurrentHashMap<>();
+    // Last log-end offset the leader reported per topic; only touched by the fetcher thread
+    private final Map<String, Long> leaderLogEndOffsets = new HashMap<>();
+
+    private PipelinedConnection session;
     private volatile boolean running = true;
 
-    public ReplicaFetcher(String topic, Log localLog, String leaderHost, int leaderPort) {
-        this.topic = topic;
-        this.localLog = localLog;
-        this.leaderHost = leaderHost;
-        this.leaderPort = leaderPort;
+    public ReplicaFetcher(String name, BrokerAddress leader, int maxRecords, int maxInFlight) {
+        this.name = name;
+        this.leader = leader;
+        this.maxRecords = Math.max(1, maxRecords);
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /**
+     * Starts replicating the topic into the local log with the next fetch.
+     */
+    public void addTopic(String topic, Log localLog) {
+        topics.put(topic, localLog);
+    }
+
+    public int getTopicCount() {
+        return topics.size();
     }
 
     @Override
     public void run() {
-        Logger.logBootstrap("Starting replication for topic: " + topic);
+        Logger.logBootstrap("Starting replica fetcher " + name + " for leader " + leader);
         while (running) {
-            try (Socket socket = new Socket(leaderHost, leaderPort);
-                 DataOutputStream out = new DataOutputStream(socket.getOutputStream());
-                 DataInputStream in = new DataInputStream(socket.getInputStream())) {
+            try {
+                int count = topics.isEmpty() ? 0 : fetchRound();
 
-                // Ensure our local log isn't ahead of the leader
-                long localNextOffset = localLog.getNextOffset();
+                // If we got 0 records, the leader has no new data.
+                if (count == 0) {
+                    Thread.sleep(IDLE_BACKOFF_MS);
+                    continue;
+                }
 
-                out.writeUTF(Protocol.CMD_GET_OFFSET);
-                out.writeUTF(topic);
-                out.flush();
+                Logger.logNetwork("Replicated " + count + " records on " + name);
 
-                long leaderLastOffset = in.readLong();
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                if (!running) break;
+                Logger.logError("Replication failed on " + name + ": " + e.getMessage());
+                closeSession();
+                leaderLogEndOffsets.clear();
+                try {
+                    Thread.sleep(ERROR_BACKOFF_MS);
+                } catch (InterruptedException ignored) {
+                    break;
+                }
+            }
+        }
+        closeSession();
+    }
 
-                if (localNextOffset > (leaderLastOffset + 1)) {
-                    Logger.logWarning("DIVERGENCE: Local log is at " + localNextOffset +
-                            " but Leader is at " + leaderLastOffset + ". Truncating...");
+    /*
+     * Sends a window of fetches, the i-th asking every topic for the range i batches past its local
+     * end, then applies the responses in order. A topic only goes into the later fetches if the
+     * leader is known to have that range. Returns how many records were appended.
+     * A short batch (the end of the leader's log, or its byte limit) leaves the topic's later
+     * ranges out of step, so they are skipped and the next round starts from the new local end.
+     */
+    private int fetchRound() throws IOException, InterruptedException {
+        PipelinedConnection connection = session();
+
+        Map<String, Long> from = new HashMap<>();
+        for (Map.Entry<String, Log> entry : topics.entrySet()) {
+            from.put(entry.getKey(), entry.getValue().getNextOffset());
+        }
 
-                    // Rewind to exactly where the leader is
-                    localLog.truncate(leaderLastOffset + 1);
-                    continue; // Restart the loop with the corrected offset
+        List<CompletableFuture<List<TopicResponse>>> fetches = new ArrayList<>(maxInFlight);
+        for (int i = 0; i < maxInFlight; i++) {
+            Map<String, Long> ranges = new HashMap<>();
+            for (Map.Entry<String, Long> entry : from.entrySet()) {
+                long offset = entry.getValue() + (long) i * maxRecords;
+                if (i == 0 || offset < leaderLogEndOffsets.getOrDefault(entry.getKey(), -1L)) {
+                    ranges.put(entry.getKey(), offset);
                 }
+            }
+            if (ranges.isEmpty()) break;
+            fetches.add(fetch(connection, ranges));
+        }
 
-                // Ask the leader for a batch
-                out.writeUTF(Protocol.CMD_REPLICA_FETCH);
-                out.writeUTF(topic);
-                out.writeLong(localLog.getNextOffset());
-                out.flush();
+        int appended = 0;
+        Set<String> outOfStep = new HashSet<>();
+        for (CompletableFuture<List<TopicResponse>> fetch : fetches) {
+            for (TopicResponse response : await(fetch)) {
+                Log localLog = topics.get(response.topic());
+                if (localLog == null || outOfStep.contains(response.topic())) continue;
+                leaderLogEndOffsets.put(response.topic(), response.logEndOffset());
 
-                int count = in.readInt();
+                long localNextOffset = localLog.getNextOffset();
+                if (response.logEndOffset() >= 0 && localNextOffset > response.logEndOffset()) {
+                    Logger.logWarning("DIVERGENCE: Local log of " + response.topic() + " is at " + localNextOffset +
+                            " but Leader ends at " + response.logEndOffset() + ". Truncating...");
 
-                // If we got 0 records, the leader has no new data.
-                if (count == 0) {
-                    Thread.sleep(1000); // Wait for new data on leader
+                    // Rewind to exactly where the leader is
+                    localLog.truncate(response.logEndOffset());
+                    outOfStep.add(response.topic());
                     continue;
                 }
 
-                // append records to local log
-                for (int i = 0; i < count; i++) {
-                    long offset = in.readLong(); // read, but we use localLog.append to keep it simple
-                    long ts = in.readLong();
-                    byte[] key = new byte[in.readInt()];
-                    in.readFully(key);
-                    byte[] val = new byte[in.readInt()];
-                    in.readFully(val);
+                RecordBatch batch = response.batch();
+                if (batch.baseOffset() != localNextOffset) {
+                    outOfStep.add(response.topic());
+                    continue;
+                }
+                localLog.appendAsFollower(batch, response.sequences());
+                appended += batch.recordCount();
+                if (batch.recordCount() < maxRecords) {
+                    outOfStep.add(response.topic());
+                }
+            }
+        }
+        return appended;
+    }
 
-                    localLog.append(key, val);
+    /*
+     * Protocol: [Int TopicCount] TopicCount x ([String Topic][Long Offset][Int MaxRecords])
+     * -> [Int TopicCount] TopicCount x ([String Topic][Long LogEndOffset][Long BaseOffset][Int Count][Int Size][Bytes Records]
+     *                                    [Int N] N x ([Long ProducerId][Int Sequence][Long Offset]))
+     */
+    private CompletableFuture<List<TopicResponse>> fetch(PipelinedConnection connection, Map<String, Long> ranges)
+            throws IOException {
+        return connection.send(ApiKey.FOLLOWER_FETCH, out -> {
+            out.writeInt(ranges.size());
+            for (Map.Entry<String, Long> range : ranges.entrySet()) {
+                out.writeUTF(range.getKey());
+                out.writeLong(range.getValue());
+                out.writeInt(maxRecords);
+            }
+        }, in -> {
+            int topicCount = in.readInt();
+            List<TopicResponse> responses = new ArrayList<>(topicCount);
+            for (int i = 0; i < topicCount; i++) {
+                String topic = in.readUTF();
+                long logEndOffset = in.readLong();
+                long baseOffset = in.readLong();
+                int count = in.readInt();
+                byte[] records = new byte[in.readInt()];
+                in.readFully(records);
+                int sequenceCount = in.readInt();
+                List<ProducerStateManager.Sequence> sequences = new ArrayList<>(sequenceCount);
+                for (int j = 0; j < sequenceCount; j++) {
+                    sequences.add(new ProducerStateManager.Sequence(in.readLong(), in.readInt(), in.readLong()));
                 }
+                responses.add(new TopicResponse(topic, logEndOffset,
+                        new RecordBatch(baseOffset, count, ByteBuffer.wrap(records)), sequences));
+            }
+            return responses;
+        });
+    }
 
-                Logger.logNetwork("Replicated " + count + " records for " + topic);
+    private <T> T await(CompletableFuture<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get(RESPONSE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IOException("No fetch response from " + leader + " within " + RESPONSE_TIMEOUT_MS + "ms");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
 
-            } catch (Exception e) {
-                Logger.logError("Replication failed for " + topic + ": " + e.getMessage());
-                try {
-                    Thread.sleep(2000);
-                } catch (InterruptedException ignored) {
-                }
+    private synchronized PipelinedConnection session() throws IOException {
+        if (!running) throw new IOException("Fetcher is stopped");
+        if (session == null || session.isClosed()) {
+            session = new PipelinedConnection(leader.host(), leader.port(), maxInFlight, Protocol.MODE_V2);
+        }
+        return session;
+    }
+
+    private synchronized void closeSession() {
+        if (session != null) {
+            try {
+                session.close();
+            } catch (IOException ignored) {
             }
+            session = null;
         }
     }
 
     public void stop() {
         running = false;
+        closeSession(); // fails any fetch in flight, so the loop notices straight away
     }
 }
@@ -1,37 +1,45 @@
 package com.distributed.systems.replication;
 
 
+import com.distributed.systems.client.ConnectionPool;
 import com.distributed.systems.config.BrokerConfig;
+import com.distributed.systems.model.BrokerAddress;
 import com.distributed.systems.storage.Log;
 import com.distributed.systems.storage.TopicManager;
 import com.distributed.systems.util.Logger;
 import com.distributed.systems.util.Protocol;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.net.Socket;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
-/*This class will manage one topic per Replica Fetcher (thread). This creates simplicity for state management as each thread only needs
- * to worry about keeping up to date with one topic. */
+/*This class spreads the leader's topics over a fixed set of Replica Fetchers (threads), by hash of the topic name. Each fetcher
+ * asks for all of its topics in one request, so threads and connections to the leader stay the same however many topics there are. */
 
 public class ReplicationManager {
 
     private final TopicManager topicManager;
     private final BrokerConfig config;
     private final ExecutorService fetcherPool;
+    private final List<ReplicaFetcher> fetchers = new ArrayList<>();
+    private ScheduledExecutorService refreshScheduler;
+    // Topic discovery runs every 5s; its connection to the leader closes after 2s idle so it does not
+    // hold a blocking-mode thread in between. Each fetcher has a fetch session of its own
+    private final ConnectionPool connectionPool = new ConnectionPool(1, 2000, 2000, 10000);
 
-    // Keep track of which topics already have a running fetcher
-    private final Map<String, ReplicaFetcher> activeFetchers = new ConcurrentHashMap<>();
+    // Keep track of which topics are already handed to a fetcher
+    private final Set<String> replicatedTopics = ConcurrentHashMap.newKeySet();
 
     public ReplicationManager(TopicManager topicManager, BrokerConfig config) {
         this.topicManager = topicManager;
         this.config = config;
-        this.fetcherPool = Executors.newCachedThreadPool();
+        this.fetcherPool = Executors.newFixedThreadPool(Math.max(1, config.getReplicaFetcherThreads()));
     }
 
     public void start() {
@@ -40,56 +48,59 @@ public class ReplicationManager {
             return;
         }
 
+        BrokerAddress leader = new BrokerAddress(config.getLeaderHost(), config.getLeaderPort());
+        int threads = Math.max(1, config.getReplicaFetcherThreads());
+        for (int i = 0; i < threads; i++) {
+            ReplicaFetcher fetcher = new ReplicaFetcher("fetcher-" + i, leader,
+                    config.getReplicaFetchMaxRecords(), config.getReplicaFetchMaxInFlight());
+            fetchers.add(fetcher);
+            fetcherPool.submit(fetcher);
+        }
+
         // Periodically check for new topics to replicate
-        Executors.newSingleThreadScheduledExecutor().scheduleAtFixedRate(
-                this::refreshFetchers, 0, 5, java.util.concurrent.TimeUnit.SECONDS
-        );
+        refreshScheduler = Executors.newSingleThreadScheduledExecutor();
+        refreshScheduler.scheduleAtFixedRate(this::refreshFetchers, 0, 5, TimeUnit.SECONDS);
     }
 
 
     /* Checks all topics of leader to check if those exist yet in follower server. If not, create before we catch up to speed*/
     private void refreshFetchers() {
-        try (Socket socket = new Socket(config.getLeaderHost(), config.getLeaderPort());
-             DataOutputStream out = new DataOutputStream(socket.getOutputStream());
-             DataInputStream in = new DataInputStream(socket.getInputStream())) {
-
-            out.writeUTF(Protocol.CMD_LIST_TOPICS);
-            out.flush();
-
-            int topicCount = in.readInt();
-
-            for (int i = 0; i < topicCount; i++) {
-
-                String topic = in.readUTF();
+        BrokerAddress leader = new BrokerAddress(config.getLeaderHost(), config.getLeaderPort());
+        try {
+            List<String> topics = connectionPool.execute(leader, (in, out) -> {
+                out.writeUTF(Protocol.CMD_LIST_TOPICS);
+                out.flush();
+
+                int topicCount = in.readInt();
+                List<String> names = new ArrayList<>(topicCount);
+                for (int i = 0; i < topicCount; i++) {
+                    names.add(in.readUTF());
+                }
+                return names;
+            });
 
-                if (!activeFetchers.containsKey(topic)) {
+            for (String topic : topics) {
+                if (!replicatedTopics.contains(topic)) {
                     Logger.logBootstrap("Discovered new topic on leader: " + topic);
 
                     Log localLog = topicManager.getOrCreateLog(topic);
 
-                    ReplicaFetcher fetcher = new ReplicaFetcher(
-                            topic,
-                            localLog,
-                            config.getLeaderHost(),
-                            config.getLeaderPort()
-                    );
-
-                    activeFetchers.put(topic, fetcher);
-                    fetcherPool.submit(fetcher);
+                    fetchers.get(Math.floorMod(topic.hashCode(), fetchers.size())).addTopic(topic, localLog);
+                    replicatedTopics.add(topic);
                 }
             }
-
-            out.writeUTF(Protocol.CMD_QUIT);
-            out.flush();
-
         } catch (IOException e) {
             Logger.logError("Failed to discover topics from leader: " + e.getMessage());
         }
     }
 
     public void shutdown() {
-        activeFetchers.values().forEach(ReplicaFetcher::stop);
+        if (refreshScheduler != null) {
+            refreshScheduler.shutdownNow();
+        }
+        fetchers.forEach(ReplicaFetcher::stop);
         fetcherPool.shutdownNow();
+        connectionPool.close();
     }
 
     public boolean isShutdown() {
@@ -6,7 +6,11 @@ import com.distributed.systems.replication.ReplicationManager;
 import com.distributed.systems.storage.Log;
 import com.distributed.systems.storage.LogRecord;
 import com.distributed.systems.storage.OffsetManager;
+import com.distributed.systems.storage.OutOfOrderSequenceException;
+import com.distributed.systems.storage.ProducerStateManager;
+import com.distributed.systems.storage.RecordBatch;
 import com.distributed.systems.storage.TopicManager;
+import com.distributed.systems.util.ApiKey;
 import com.distributed.systems.util.Logger;
 import com.distributed.systems.util.MetricsCollector;
 import com.distributed.systems.util.Protocol;
@@ -14,28 +18,46 @@ import com.distributed.systems.util.Protocol;
 import java.io.*;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class BrokerServer {
-    private final ExecutorService threadPool;
+    private final ExecutorService virtualThreads; // virtual mode only
+    private final RequestQueue requestQueue;      // blocking and nio modes
     private ServerSocket serverSocket;
+    private NioServer nioServer;
 
-    private static final int MAX_THREADS = 10; // Only 10 clients at a time
+    private static final int MAX_THREADS = 10; // Only 10 clients at a time in blocking mode
+    // Caps on what one follower fetch holds in memory, per topic and for the whole response
+    private static final int MAX_FOLLOWER_FETCH_RECORDS = 1000;
+    private static final int MAX_FOLLOWER_FETCH_BYTES = 1024 * 1024;
 
     private final TopicManager topicManager;
     private final OffsetManager offsetManager;
     private final int port;
+    // Completed with the bound port (the real one if port is 0) once connections are accepted
+    private final CompletableFuture<Integer> listening = new CompletableFuture<>();
     private final BrokerConfig config;
     private ReplicationManager replicationManager;
     private BrokerRole currentRole;
 
     private volatile boolean running = true;
+    // Open client sockets in blocking and virtual mode, closed on stop so pooled clients notice
+    private final Set<Socket> clientSockets = ConcurrentHashMap.newKeySet();
 
     private final MetricsCollector metrics = new MetricsCollector();
+    private final QuotaManager quotas;
+    private final RequestDispatcher dispatcher;
 
 
     public BrokerServer(int port, String dataDir, BrokerConfig config) throws IOException {
@@ -43,32 +65,126 @@ public class BrokerServer {
         this.config = config;
         this.topicManager = new TopicManager(Paths.get(dataDir), config);
         this.offsetManager = new OffsetManager(this.topicManager);
-        this.threadPool = Executors.newFixedThreadPool(MAX_THREADS);
+        this.virtualThreads = isVirtualMode() ? Executors.newVirtualThreadPerTaskExecutor() : null;
+        this.requestQueue = isVirtualMode() ? null : createRequestQueue();
         this.replicationManager = new ReplicationManager(this.topicManager, config);
         this.currentRole = config.isLeader() ? BrokerRole.LEADER : BrokerRole.FOLLOWER;
+        this.quotas = new QuotaManager(config);
+        this.dispatcher = new RequestDispatcher(quotas);
+        registerHandlers();
+    }
+
+    /*
+     * One entry per ApiKey; v1 commands and v2 api keys resolve to the same handlers.
+     */
+    private void registerHandlers() {
+        dispatcher.register(ApiKey.PRODUCE, this::handleProduce);
+        dispatcher.register(ApiKey.PRODUCE_IDEMPOTENT, this::handleIdempotentProduce);
+        dispatcher.register(ApiKey.CONSUME, this::handleConsume);
+        dispatcher.register(ApiKey.LOOKUP_KEY, this::handleLookupKey);
+        dispatcher.register(ApiKey.REPLICA_FETCH, this::handleReplicaFetch);
+        dispatcher.register(ApiKey.FOLLOWER_FETCH, this::handleFollowerFetch);
+        dispatcher.register(ApiKey.OFFSET_COMMIT, this::handleOffsetCommit);
+        dispatcher.register(ApiKey.OFFSET_FETCH, this::handleOffsetFetch);
+        dispatcher.register(ApiKey.GET_OFFSET, this::handleGetOffset);
+        dispatcher.register(ApiKey.LIST_TOPICS, (in, out) -> handleListTopics(out));
+        dispatcher.register(ApiKey.STATS, (in, out) -> handleStats(out));
+        dispatcher.register(ApiKey.PROMOTE, (in, out) -> handlePromote(out));
+        dispatcher.register(ApiKey.DEMOTE, this::handleDemote);
+        dispatcher.register(ApiKey.UPDATE_LEADER, (in, out) -> handleUpdateLeader(in));
+        dispatcher.register(ApiKey.METADATA, (in, out) -> handleMetadata(out));
     }
 
     public void start() {
         replicationManager.start();
         printBanner();
 
+        if (isNioMode()) {
+            startNio();
+            return;
+        }
+
         try (ServerSocket ss = new ServerSocket(port)) {
             this.serverSocket = ss;
+            listening.complete(ss.getLocalPort());
             while (running) {
                 Socket clientSocket = serverSocket.accept();
-                threadPool.submit(() -> handleClient(clientSocket));
+                if (virtualThreads != null) {
+                    virtualThreads.submit(() -> handleClient(clientSocket));
+                } else {
+                    requestQueue.submit(() -> handleClient(clientSocket), () -> shedConnection(clientSocket));
+                }
             }
         } catch (IOException e) {
+            listening.completeExceptionally(e);
             if (running) Logger.logError("Server failed: " + e.getMessage());
         } finally {
-            threadPool.shutdownNow(); // Kill active client handlers
+            // Kill active client handlers
+            if (virtualThreads != null) virtualThreads.shutdownNow();
+            if (requestQueue != null) requestQueue.shutdownNow();
         }
     }
 
+    /*
+     * No request has been read yet, so there is nothing to answer: closing straight away is the
+     * quickest retriable signal a v1 client can get, and clients already reconnect on it.
+     */
+    private void shedConnection(Socket socket) {
+        Logger.logWarning("Overloaded, shedding connection from " + socket.getRemoteSocketAddress());
+        try {
+            socket.close();
+        } catch (IOException e) { /* Ignore */ }
+    }
+
+    /*
+     * Selector-based I/O threads own the sockets and the thread pool only runs requests,
+     * so the number of connections is no longer capped by the number of threads.
+     */
+    private void startNio() {
+        nioServer = new NioServer(port, config.getNetworkIoThreads(), requestQueue, dispatcher,
+                config.getMaxRequestBytes(), listening::complete);
+        try {
+            nioServer.run();
+        } catch (IOException e) {
+            listening.completeExceptionally(e);
+            if (running) Logger.logError("Server failed: " + e.getMessage());
+        } finally {
+            requestQueue.shutdownNow();
+        }
+    }
+
+    private boolean isNioMode() {
+        return "nio".equalsIgnoreCase(config.getNetworkMode());
+    }
+
+    private boolean isVirtualMode() {
+        return "virtual".equalsIgnoreCase(config.getNetworkMode());
+    }
+
+    /*
+     * nio:      queued requests; selector threads own the sockets (the default)
+     * virtual:  one virtual thread per connection, so idle connections cost next to nothing
+     * blocking: queued connections, each served by one pooled platform thread (MAX_THREADS at a time)
+     *           for its whole life, so the queue budget only covers the wait for a thread
+     */
+    private RequestQueue createRequestQueue() {
+        if (isNioMode()) {
+            return new RequestQueue("request-handler", config.getRequestHandlerThreads(),
+                    config.getRequestQueueDepth(), config.getRequestQueueMaxMs());
+        }
+        return new RequestQueue("client-handler", MAX_THREADS,
+                config.getRequestQueueDepth(), config.getRequestQueueMaxMs());
+    }
+
     public void stop() {
         running = false;
         try {
-            threadPool.shutdown(); // Stop accepting new tasks
+            if (nioServer != null) {
+                nioServer.shutdown();
+            }
+            // Stop accepting new tasks
+            if (virtualThreads != null) virtualThreads.shutdown();
+            if (requestQueue != null) requestQueue.shutdown();
             topicManager.shutdown(); // Flush and close all files
             if (serverSocket != null) {
                 serverSocket.close();
@@ -76,6 +192,9 @@ public class BrokerServer {
             if (replicationManager != null) {
                 replicationManager.shutdown();
             }
+            for (Socket socket : clientSockets) {
+                socket.close();
+            }
         } catch (IOException e) {
             Logger.logError("Error during server shutdown: " + e.getMessage());
         }
@@ -85,7 +204,6 @@ public class BrokerServer {
         long startNano = System.nanoTime();
 
         String topic = in.readUTF(); //identify the log
-        Log log = topicManager.getOrCreateLog(topic);
 
         // Protocol: [KeyLen] [Key] [ValLen] [Value]
         int keyLen = in.readInt();
@@ -96,7 +214,17 @@ public class BrokerServer {
         byte[] value = new byte[valLen];
         in.readFully(value);
 
+        // Only leaders accept writes. The whole request is consumed first so a rejection leaves the stream in sync
+        if (currentRole != BrokerRole.LEADER) {
+            Logger.logWarning("Rejected PRODUCE: I am currently a FOLLOWER.");
+            out.writeLong(-1); // Signal error offset
+            out.writeUTF(Protocol.ERR_NOT_LEADER);
+            out.flush();
+            return;
+        }
+
         // Store in Log
+        Log log = topicManager.getOrCreateLog(topic);
         long offset = log.append(key, value);
         metrics.recordMessage(startNano);
 
@@ -105,6 +233,45 @@ public class BrokerServer {
         out.flush();
     }
 
+    private void handleIdempotentProduce(DataInputStream in, DataOutputStream out) throws IOException {
+        long startNano = System.nanoTime();
+
+        // Protocol: [Topic] [ProducerId] [Sequence] [KeyLen] [Key] [ValLen] [Value]
+        String topic = in.readUTF();
+        long producerId = in.readLong();
+        int sequence = in.readInt();
+
+        int keyLen = in.readInt();
+        byte[] key = new byte[keyLen];
+        in.readFully(key);
+
+        int valLen = in.readInt();
+        byte[] value = new byte[valLen];
+        in.readFully(value);
+
+        // The whole request is consumed first so a rejection leaves the stream in sync
+        if (currentRole != BrokerRole.LEADER) {
+            Logger.logWarning("Rejected PRODUCE_IDEMPOTENT: I am currently a FOLLOWER.");
+            out.writeLong(-1);
+            out.writeUTF(Protocol.ERR_NOT_LEADER);
+            out.flush();
+            return;
+        }
+
+        Log log = topicManager.getOrCreateLog(topic);
+        try {
+            long offset = log.appendIdempotent(producerId, sequence, key, value);
+            metrics.recordMessage(startNano);
+
+            // Response: [Offset] (the original offset for a duplicate)
+            out.writeLong(offset);
+        } catch (OutOfOrderSequenceException e) {
+            out.writeLong(-1);
+            out.writeUTF(Protocol.ERR_OUT_OF_ORDER_SEQUENCE + ": " + e.getMessage());
+        }
+        out.flush();
+    }
+
     private void handleConsume(DataInputStream in, DataOutputStream out) throws IOException {
 
         String topic = in.readUTF();
@@ -151,11 +318,58 @@ public class BrokerServer {
         out.flush();
     }
 
+    private void handleLookupKey(DataInputStream in, DataOutputStream out) throws IOException {
+        // Protocol: [Topic] [KeyLen] [Key]
+        String topic = in.readUTF();
+        int keyLen = in.readInt();
+        byte[] key = new byte[keyLen];
+        in.readFully(key);
+
+        Log log = topicManager.getLogIfExits(topic);
+
+        if (log == null) {
+            out.writeBoolean(false);
+            out.writeUTF("Topic [" + topic + "] does not exist.");
+            out.flush();
+            return;
+        }
+
+        try {
+            LogRecord record = log.lookupKey(key);
+
+            if (record == null) {
+                out.writeBoolean(false);
+                out.writeUTF("Key not found.");
+                out.flush();
+                return;
+            }
+
+            // Response mirrors CONSUME: [Found=True] [Offset] [Timestamp] [KeyLen] [Key] [ValLen] [Value]
+            out.writeBoolean(true);
+            out.writeLong(record.offset());
+            out.writeLong(record.timestamp());
+
+            out.writeInt(record.key().length);
+            out.write(record.key());
+
+            out.writeInt(record.value().length);
+            out.write(record.value());
+
+        } catch (IOException e) {
+            out.writeBoolean(false);
+            out.writeUTF(e.getMessage());
+        }
+        out.flush();
+    }
+
     private void handleStats(DataOutputStream out) throws IOException {
         // Instead of one log, ask the manager for the sum of all logs
         long totalDiskUsage = topicManager.getTotalDiskUsage();
 
-        String report = metrics.getStatsReport(totalDiskUsage);
+        String report = metrics.getStatsReport(totalDiskUsage)
+                + ", " + topicManager.getMaintenanceScheduler().getStatsReport()
+                + ", " + quotas.getStatsReport()
+                + (requestQueue != null ? ", " + requestQueue.getStatsReport() : "");
 
         out.writeUTF(report);
         out.flush();
@@ -179,11 +393,15 @@ public class BrokerServer {
     }
 
     private void handleClient(Socket socket) {
+        clientSockets.add(socket);
+        // Buffered both ways: a request is decoded from one read and a response leaves in one write
         try (
-                DataInputStream in = new DataInputStream(socket.getInputStream());
-                DataOutputStream out = new DataOutputStream(socket.getOutputStream())
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))
         ) {
+            if (!running) return; // queued before stop() closed the others
 
+            ConnectionContext ctx = new ConnectionContext(socket.getInetAddress().getHostAddress());
             boolean loggedConnect = false;
             while (true) {
                 String command;
@@ -197,53 +415,84 @@ public class BrokerServer {
                     loggedConnect = true;
                 }
 
-                if (command.equalsIgnoreCase(Protocol.CMD_PRODUCE)) {
-                    // Only leaders accept writes
-                    if (currentRole != BrokerRole.LEADER) {
-                        Logger.logWarning("Rejected PRODUCE: I am currently a FOLLOWER.");
-                        out.writeLong(-1); // Signal error offset
-                        out.writeUTF("ERR_NOT_LEADER");
-                        out.flush();
-                        continue;
+                if (command.equalsIgnoreCase(Protocol.CMD_SWITCH_PROTOCOL)) {
+                    int mode = dispatcher.switchProtocol(in, out);
+                    if (mode != 0) {
+                        serveFramed(ctx, mode, in, out);
+                        break;
                     }
-                    handleProduce(in, out);
-                } else if (command.equalsIgnoreCase(Protocol.CMD_CONSUME)) {
-                    handleConsume(in, out);
-                } else if (command.equalsIgnoreCase(Protocol.CMD_REPLICA_FETCH)) {
-                    handleReplicaFetch(in, out);
-                } else if (command.equalsIgnoreCase(Protocol.CMD_STATS)) {
-                    handleStats(out);
-                } else if (command.equalsIgnoreCase(Protocol.CMD_OFFSET_COMMIT)) {
-                    handleOffsetCommit(in, out);
-                } else if (command.equalsIgnoreCase(Protocol.CMD_OFFSET_FETCH)) {
-                    handleOffsetFetch(in, out);
-                } else if (command.equalsIgnoreCase(Protocol.CMD_LIST_TOPICS)) {
-                    handleListTopics(out);
-                } else if (command.equalsIgnoreCase(Protocol.CMD_PROMOTE)) {
-                    handlePromote(out);
-                } else if (command.equals(Protocol.CMD_GET_OFFSET)) {
-                    handleGetOffset(in, out);
-                } else if (command.equals(Protocol.CMD_DEMOTE)) {
-                    handleDemote(in, out);
-                } else if (command.equalsIgnoreCase(Protocol.CMD_UPDATE_LEADER)) {
-                    handleUpdateLeader(in);
-                } else if (command.equalsIgnoreCase(Protocol.CMD_QUIT)) {
-                    break;
-                } else {
-                    out.writeUTF("ERROR: Unknown Command");
+                    continue;
                 }
 
+                byte[] response = dispatcher.dispatchCommand(ctx, command, in);
+                if (response == null) {
+                    break;
+                }
+                // v1 has no field for a throttle time, so the response itself is held back
+                throttle(ctx);
+                out.write(response);
+                out.flush();
             }
 
         } catch (IOException e) {
             Logger.logError("Connection lost with " + socket.getRemoteSocketAddress() + ": " + e.getMessage());
         } finally {
+            clientSockets.remove(socket);
             try {
                 socket.close(); // Ensure socket is closed
             } catch (IOException e) { /* Ignore */ }
         }
     }
 
+    /*
+     * Pipelined and v2 modes: the client streams length-prefixed frames without waiting for
+     * replies, and they are answered one by one in arrival order, each with a single flush.
+     */
+    private void serveFramed(ConnectionContext ctx, int mode, DataInputStream in, DataOutputStream out) throws IOException {
+        while (true) {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException e) {
+                return; // disconnect gracefully
+            }
+            if (length < 4 || length > config.getMaxRequestBytes() - 4) {
+                throw new IOException("Invalid frame length " + length);
+            }
+
+            byte[] frame = new byte[length];
+            in.readFully(frame);
+
+            if (mode == Protocol.MODE_V2) {
+                // The throttle time travels in the header; the connection is muted after the response
+                for (ByteBuffer part : dispatcher.dispatchV2(ctx, ByteBuffer.wrap(frame))) {
+                    out.write(part.array(), part.arrayOffset() + part.position(), part.remaining());
+                }
+                out.flush();
+                throttle(ctx);
+            } else {
+                byte[] response = dispatcher.dispatchPipelined(ctx, frame);
+                if (response == null) {
+                    return;
+                }
+                throttle(ctx);
+                out.write(response);
+                out.flush();
+            }
+        }
+    }
+
+    private static void throttle(ConnectionContext ctx) throws IOException {
+        long throttleMs = ctx.getThrottleMs();
+        if (throttleMs <= 0) return;
+        try {
+            Thread.sleep(throttleMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while throttling");
+        }
+    }
+
     protected void handleGetOffset(DataInputStream in, DataOutputStream out) throws IOException {
         String topic = in.readUTF();
         Log log = topicManager.getLogIfExits(topic);
@@ -270,6 +519,17 @@ public class BrokerServer {
         out.flush();
     }
 
+    /**
+     * Tells a client where writes go: this broker if it leads, otherwise the leader it replicates from.
+     */
+    private void handleMetadata(DataOutputStream out) throws IOException {
+        boolean isLeader = currentRole == BrokerRole.LEADER;
+        out.writeBoolean(isLeader);
+        out.writeUTF(isLeader ? config.getAdvertisedHost() : config.getLeaderHost());
+        out.writeInt(isLeader ? getPort() : config.getLeaderPort());
+        out.flush();
+    }
+
     private void handleUpdateLeader(DataInputStream in) throws IOException {
         String newLeaderHost = in.readUTF();
         int newLeaderPort = in.readInt();
@@ -325,17 +585,94 @@ public class BrokerServer {
             return;
         }
 
-        List<LogRecord> batch = new ArrayList<LogRecord>();
-        for (int i = 0; i < maxBatchSize; i++) {
+        List<LogRecord> batch = readBatch(log, startOffset, maxBatchSize);
+        writeRecords(out, batch);
+        out.flush();
+        Logger.logNetwork("Sent " + batch.size() + " records to replica starting at " + startOffset);
+    }
+
+    /**
+     * Serves one fetch of a follower, for every topic it lists. Each topic's part leads with this
+     * log's end offset, so the follower can detect divergence from the same round trip instead of
+     * asking GET_OFFSET. Records are sent as the segments store them, for the follower to append
+     * without re-encoding, followed by the idempotent producer sequences among them so the
+     * follower can deduplicate retries once it leads. The response as a whole is capped in size;
+     * topics past the cap get an empty batch and are served on the follower's next fetch.
+     */
+    protected void handleFollowerFetch(DataInputStream in, DataOutputStream out) throws IOException {
+        int topicCount = in.readInt();
+        out.writeInt(topicCount);
+
+        int bytesLeft = MAX_FOLLOWER_FETCH_BYTES;
+        for (int i = 0; i < topicCount; i++) {
+            String topic = in.readUTF();
+            long startOffset = in.readLong();
+            int maxRecords = Math.max(0, Math.min(in.readInt(), MAX_FOLLOWER_FETCH_RECORDS));
+
+            out.writeUTF(topic);
+            Log log = topicManager.getLogIfExits(topic);
+            if (log == null) {
+                out.writeLong(-1L);
+                writeBatch(out, RecordBatch.empty(startOffset));
+                writeSequences(out, List.of());
+                continue;
+            }
+
+            // Read the end offset first and stop there, so every record in the batch is below it
+            long logEndOffset = log.getNextOffset();
+            int limit = (int) Math.max(0, Math.min(maxRecords, logEndOffset - startOffset));
+            RecordBatch batch = (limit > 0 && bytesLeft > 0)
+                    ? log.readRaw(startOffset, limit, bytesLeft)
+                    : RecordBatch.empty(startOffset);
+            bytesLeft -= batch.sizeInBytes();
+
+            out.writeLong(logEndOffset);
+            writeBatch(out, batch);
+            // Taken after the records, so every idempotent append in the batch has been recorded
+            writeSequences(out, log.producerSequences(batch.baseOffset(), batch.nextOffset()));
+        }
+        out.flush();
+    }
+
+    /*
+     * [Long BaseOffset][Int Count][Int Size][Bytes Records]
+     */
+    private static void writeBatch(DataOutputStream out, RecordBatch batch) throws IOException {
+        ByteBuffer payload = batch.payload();
+        out.writeLong(batch.baseOffset());
+        out.writeInt(batch.recordCount());
+        out.writeInt(payload.remaining());
+        out.write(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining());
+    }
+
+    /*
+     * [Int N] N x ([Long ProducerId][Int Sequence][Long Offset])
+     */
+    private static void writeSequences(DataOutputStream out, List<ProducerStateManager.Sequence> sequences)
+            throws IOException {
+        out.writeInt(sequences.size());
+        for (ProducerStateManager.Sequence sequence : sequences) {
+            out.writeLong(sequence.producerId());
+            out.writeInt(sequence.sequence());
+            out.writeLong(sequence.offset());
+        }
+    }
+
+    private static List<LogRecord> readBatch(Log log, long startOffset, int maxRecords) throws IOException {
+        List<LogRecord> batch = new ArrayList<>();
+        for (int i = 0; i < maxRecords; i++) {
             LogRecord record = log.read(startOffset + i);
             if (record == null) break;
             batch.add(record);
         }
+        return batch;
+    }
 
-        // send count
+    /*
+     * [Int Count] followed by each record as [Offset][Timestamp][KeyLen][Key][ValLen][Value]
+     */
+    private static void writeRecords(DataOutputStream out, List<LogRecord> batch) throws IOException {
         out.writeInt(batch.size());
-
-        // stream records in binary format
         for (LogRecord record : batch) {
             out.writeLong(record.offset());
             out.writeLong(record.timestamp());
@@ -344,9 +681,6 @@ public class BrokerServer {
             out.writeInt(record.value().length);
             out.write(record.value());
         }
-
-        out.flush();
-        Logger.logNetwork("Sent " + batch.size() + " records to replica starting at " + startOffset);
     }
 
     private void handleListTopics(DataOutputStream out) throws IOException {
@@ -393,6 +727,28 @@ public class BrokerServer {
         return this.config;
     }
 
+    /**
+     * The port the broker listens on: the bound one once start() has bound it, which is the only
+     * way to learn it for a broker created with port 0.
+     */
+    public int getPort() {
+        return listening.isDone() && !listening.isCompletedExceptionally() ? listening.join() : port;
+    }
+
+    /**
+     * Blocks until start() accepts connections and returns the bound port. Throws if binding
+     * failed or did not happen within timeoutMs.
+     */
+    public int awaitListening(long timeoutMs) throws IOException, InterruptedException {
+        try {
+            return listening.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IOException("Broker did not start listening within " + timeoutMs + "ms");
+        } catch (ExecutionException e) {
+            throw new IOException("Broker failed to listen on port " + port + ": " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
     public BrokerRole getCurrentRole() {
         return this.currentRole;
     }
@@ -0,0 +1,33 @@
+package com.distributed.systems.server;
+
+/**
+ * Per-connection state carried across requests: who the client is (for quotas) and how long its
+ * last request asked it to be held off.
+ */
+public class ConnectionContext {
+    private volatile String clientId;
+    private volatile long throttleMs = 0;
+
+    public ConnectionContext(String clientId) {
+        this.clientId = clientId;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public void setClientId(String clientId) {
+        this.clientId = clientId;
+    }
+
+    /**
+     * Throttle time of the most recent request on this connection, 0 if it was within quota.
+     */
+    public long getThrottleMs() {
+        return throttleMs;
+    }
+
+    void setThrottleMs(long throttleMs) {
+        this.throttleMs = throttleMs;
+    }
+}
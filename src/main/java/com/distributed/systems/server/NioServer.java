@@ -0,0 +1,466 @@
+package com.distributed.systems.server;
+
+import com.distributed.systems.util.Logger;
+import com.distributed.systems.util.Protocol;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * Non-blocking network layer: one acceptor, a few selector-driven I/O threads that own the sockets,
+ * and a separate handler pool that runs the requests. Thread count is fixed no matter how many
+ * clients are connected, so idle connections cost a buffer rather than a thread.
+ * <p>
+ * Each connection has at most one request in flight. While it is being handled the connection
+ * stops reading, which keeps responses in request order and pushes back on clients that send
+ * faster than the broker can serve them. Pipelined clients still get their throughput: their
+ * next requests are already buffered when a response goes out, so no round trip is spent idle.
+ * <p>
+ * Requests wait for a handler in a bounded RequestQueue. One that is shed there gets a BUSY error
+ * in v2; v1 has no way to express it, so the connection is closed and the client reconnects.
+ * <p>
+ * Quota throttling never blocks a thread: a v1 response is handed back late by a timer, and a v2
+ * connection simply stays unread for the throttle time after its response is written.
+ */
+public class NioServer {
+
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+    private static final long ACCEPT_BACKOFF_MS = 100;
+
+    private final int port;
+    private final RequestQueue requestQueue;
+    private final RequestDispatcher dispatcher;
+    private final int maxRequestBytes;
+    private final IntConsumer onListening; // told the bound port once accepting
+    private final Processor[] processors;
+    private final ScheduledExecutorService throttleTimer;
+
+    private volatile boolean running = true;
+    private volatile ServerSocketChannel serverChannel;
+
+    public NioServer(int port, int ioThreads, RequestQueue requestQueue, RequestDispatcher dispatcher,
+                     int maxRequestBytes, IntConsumer onListening) {
+        this.port = port;
+        this.requestQueue = requestQueue;
+        this.dispatcher = dispatcher;
+        this.maxRequestBytes = maxRequestBytes;
+        this.onListening = onListening;
+        this.processors = new Processor[Math.max(1, ioThreads)];
+        this.throttleTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "nio-throttle");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Binds the port and accepts connections until shutdown() is called. Blocks the calling thread.
+     */
+    public void run() throws IOException {
+        for (int i = 0; i < processors.length; i++) {
+            processors[i] = new Processor(Selector.open());
+            Thread thread = new Thread(processors[i], "nio-io-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        try (ServerSocketChannel channel = ServerSocketChannel.open()) {
+            channel.bind(new InetSocketAddress(port));
+            this.serverChannel = channel;
+            int boundPort = ((InetSocketAddress) channel.getLocalAddress()).getPort();
+            Logger.logNetwork("NIO network layer listening on port " + boundPort + " with "
+                    + processors.length + " I/O threads");
+            onListening.accept(boundPort);
+
+            int next = 0;
+            while (running) {
+                SocketChannel client;
+                try {
+                    client = channel.accept();
+                } catch (ClosedChannelException e) {
+                    throw e; // shutdown() closed the listener
+                } catch (IOException e) {
+                    // Typically out of file descriptors: wait for some to free up rather than spin
+                    Logger.logError("Failed to accept a connection: " + e.getMessage());
+                    try {
+                        Thread.sleep(ACCEPT_BACKOFF_MS);
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                    continue;
+                }
+
+                try {
+                    client.configureBlocking(false);
+                    client.socket().setTcpNoDelay(true);
+                } catch (IOException e) {
+                    // Only this client is lost, e.g. one that reset before we set it up
+                    Logger.logWarning("Dropping a connection that failed setup: " + e.getMessage());
+                    try {
+                        client.close();
+                    } catch (IOException ignored) { /* Ignore */ }
+                    continue;
+                }
+                processors[next].assign(client);
+                next = (next + 1) % processors.length;
+            }
+        } catch (IOException e) {
+            if (running) throw e;
+        } finally {
+            shutdown();
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        try {
+            ServerSocketChannel channel = serverChannel;
+            if (channel != null) channel.close();
+        } catch (IOException e) { /* Ignore */ }
+
+        throttleTimer.shutdownNow();
+        for (Processor processor : processors) {
+            if (processor != null) processor.close();
+        }
+    }
+
+    /**
+     * Per-connection state. Buffers are only touched by the owning I/O thread; the handler
+     * thread only sees the copied request bytes.
+     */
+    private static class Connection {
+        final SocketChannel channel;
+        final SocketAddress remote;
+        final ConnectionContext context;
+        ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        ByteBuffer[] writeBuffers;
+        boolean inFlight;
+        boolean closeAfterWrite;
+        int mode; // 0 for bare v1 commands, else the Protocol.MODE_* it switched to
+        long muteMs; // v2 throttle time to wait out after the current response is written
+
+        Connection(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            this.remote = channel.getRemoteAddress();
+            this.context = new ConnectionContext(channel.socket().getInetAddress().getHostAddress());
+        }
+    }
+
+    private record Response(Connection connection, ByteBuffer[] payload, boolean keepOpen, int switchToMode,
+                            long muteMs) {
+        Response(Connection connection, ByteBuffer[] payload, boolean keepOpen, int switchToMode) {
+            this(connection, payload, keepOpen, switchToMode, 0);
+        }
+    }
+
+    /**
+     * One I/O thread and its selector. New connections and finished responses are handed over
+     * through queues, and the selector is woken to pick them up.
+     */
+    private class Processor implements Runnable {
+        private final Selector selector;
+        private final Queue<SocketChannel> newConnections = new ConcurrentLinkedQueue<>();
+        private final Queue<Response> responses = new ConcurrentLinkedQueue<>();
+        private final Queue<Connection> unmuted = new ConcurrentLinkedQueue<>();
+
+        Processor(Selector selector) {
+            this.selector = selector;
+        }
+
+        void assign(SocketChannel channel) {
+            newConnections.add(channel);
+            selector.wakeup();
+        }
+
+        void complete(Response response) {
+            responses.add(response);
+            selector.wakeup();
+        }
+
+        /*
+         * Hands a response back after the throttle time the quota manager asked for, or right away.
+         */
+        void completeAfter(Response response, long delayMs) {
+            if (delayMs <= 0) {
+                complete(response);
+                return;
+            }
+            try {
+                throttleTimer.schedule(() -> complete(response), delayMs, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                complete(response); // shutting down
+            }
+        }
+
+        void unmute(Connection conn) {
+            unmuted.add(conn);
+            selector.wakeup();
+        }
+
+        /*
+         * The selector is torn down by its own thread once it notices running is false.
+         */
+        void close() {
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select(500);
+                    registerNewConnections();
+                    sendResponses();
+                    resumeUnmuted();
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (!key.isValid()) continue;
+                        try {
+                            if (key.isReadable()) onReadable(key);
+                            if (key.isValid() && key.isWritable()) onWritable(key);
+                        } catch (IOException e) {
+                            Connection conn = (Connection) key.attachment();
+                            Logger.logError("Connection lost with " + conn.remote + ": " + e.getMessage());
+                            closeQuietly(key);
+                        }
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                if (running) Logger.logError("I/O thread failed: " + e.getMessage());
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    closeQuietly(key);
+                }
+                SocketChannel pending;
+                while ((pending = newConnections.poll()) != null) {
+                    try {
+                        pending.close();
+                    } catch (IOException e) { /* Ignore */ }
+                }
+                try {
+                    selector.close();
+                } catch (IOException e) { /* Ignore */ }
+            }
+        }
+
+        private void registerNewConnections() {
+            SocketChannel channel;
+            while ((channel = newConnections.poll()) != null) {
+                try {
+                    Connection conn = new Connection(channel);
+                    channel.register(selector, SelectionKey.OP_READ, conn);
+                    Logger.logNetwork("Client connected: " + conn.remote);
+                } catch (IOException e) {
+                    try {
+                        channel.close(); // client went away before we got to it
+                    } catch (IOException ignored) { /* Ignore */ }
+                }
+            }
+        }
+
+        private void sendResponses() {
+            Response response;
+            while ((response = responses.poll()) != null) {
+                Connection conn = response.connection();
+                SelectionKey key = conn.channel.keyFor(selector);
+                if (key == null || !key.isValid()) continue;
+
+                conn.writeBuffers = response.payload();
+                conn.closeAfterWrite = !response.keepOpen();
+                conn.muteMs = response.muteMs();
+                if (response.switchToMode() != 0) {
+                    conn.mode = response.switchToMode();
+                }
+                try {
+                    onWritable(key);
+                } catch (IOException e) {
+                    Logger.logError("Connection lost with " + conn.remote + ": " + e.getMessage());
+                    closeQuietly(key);
+                }
+            }
+        }
+
+        private void resumeUnmuted() {
+            Connection conn;
+            while ((conn = unmuted.poll()) != null) {
+                SelectionKey key = conn.channel.keyFor(selector);
+                if (key == null || !key.isValid()) continue;
+                try {
+                    conn.inFlight = false;
+                    dispatchNext(key, conn);
+                } catch (IOException e) {
+                    Logger.logError("Connection lost with " + conn.remote + ": " + e.getMessage());
+                    closeQuietly(key);
+                }
+            }
+        }
+
+        private void onReadable(SelectionKey key) throws IOException {
+            Connection conn = (Connection) key.attachment();
+            if (!conn.readBuffer.hasRemaining()) {
+                grow(conn);
+            }
+
+            int read = conn.channel.read(conn.readBuffer);
+            if (read < 0) {
+                closeQuietly(key); // disconnect gracefully
+                return;
+            }
+            dispatchNext(key, conn);
+        }
+
+        /**
+         * Hands the next fully buffered request to the handler pool, if nothing is in flight.
+         */
+        private void dispatchNext(SelectionKey key, Connection conn) throws IOException {
+            if (conn.inFlight) return;
+
+            conn.readBuffer.flip();
+            int frameLength = (conn.mode != 0)
+                    ? RequestFramer.prefixedFrameLength(conn.readBuffer, maxRequestBytes)
+                    : RequestFramer.frameLength(conn.readBuffer);
+            if (frameLength < 0) {
+                conn.readBuffer.compact();
+                if (!conn.readBuffer.hasRemaining()) grow(conn);
+                key.interestOps(SelectionKey.OP_READ);
+                return;
+            }
+
+            byte[] request = new byte[frameLength];
+            conn.readBuffer.get(request);
+            conn.readBuffer.compact();
+
+            conn.inFlight = true;
+            key.interestOps(0);
+            int mode = conn.mode;
+            try {
+                requestQueue.submit(() -> {
+                    Response response = handle(conn, request, mode);
+                    // v2 carries the throttle time in its header and is muted afterwards instead
+                    completeAfter(response, (mode == Protocol.MODE_V2) ? 0 : conn.context.getThrottleMs());
+                }, () -> complete(busy(conn, request, mode)));
+            } catch (RejectedExecutionException e) {
+                closeQuietly(key); // shutting down
+            }
+        }
+
+        private Response handle(Connection conn, byte[] request, int mode) {
+            try {
+                if (mode == Protocol.MODE_V2) {
+                    ByteBuffer frame = ByteBuffer.wrap(request, 4, request.length - 4);
+                    ByteBuffer[] response = dispatcher.dispatchV2(conn.context, frame.slice());
+                    return new Response(conn, response, true, 0, conn.context.getThrottleMs());
+                }
+                if (mode == Protocol.MODE_PIPELINED) {
+                    byte[] response = dispatcher.dispatchPipelined(conn.context, Arrays.copyOfRange(request, 4, request.length));
+                    return (response == null)
+                            ? new Response(conn, new ByteBuffer[0], false, 0)
+                            : new Response(conn, new ByteBuffer[]{ByteBuffer.wrap(response)}, true, 0);
+                }
+
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(request));
+                String command = in.readUTF();
+                if (command.equalsIgnoreCase(Protocol.CMD_SWITCH_PROTOCOL)) {
+                    conn.context.setThrottleMs(0);
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    int switchToMode = dispatcher.switchProtocol(in, new DataOutputStream(bytes));
+                    return new Response(conn, new ByteBuffer[]{ByteBuffer.wrap(bytes.toByteArray())}, true, switchToMode);
+                }
+                byte[] response = dispatcher.dispatchCommand(conn.context, command, in);
+                return (response == null)
+                        ? new Response(conn, new ByteBuffer[0], false, 0)
+                        : new Response(conn, new ByteBuffer[]{ByteBuffer.wrap(response)}, true, 0);
+            } catch (Exception e) {
+                Logger.logError("Request from " + conn.remote + " failed: " + e.getMessage());
+                return new Response(conn, new ByteBuffer[0], false, 0);
+            }
+        }
+
+        private Response busy(Connection conn, byte[] request, int mode) {
+            if (mode == Protocol.MODE_V2) {
+                try {
+                    ByteBuffer frame = ByteBuffer.wrap(request, 4, request.length - 4);
+                    return new Response(conn, dispatcher.busyV2(frame.slice()), true, 0);
+                } catch (IOException e) {
+                    Logger.logError("Request from " + conn.remote + " failed: " + e.getMessage());
+                }
+            }
+            return new Response(conn, new ByteBuffer[0], false, 0);
+        }
+
+        private void onWritable(SelectionKey key) throws IOException {
+            Connection conn = (Connection) key.attachment();
+            if (conn.writeBuffers != null) {
+                conn.channel.write(conn.writeBuffers); // gathering write: header and body in one call
+                for (ByteBuffer buffer : conn.writeBuffers) {
+                    if (buffer.hasRemaining()) {
+                        key.interestOps(SelectionKey.OP_WRITE);
+                        return;
+                    }
+                }
+                conn.writeBuffers = null;
+            }
+
+            if (conn.closeAfterWrite) {
+                closeQuietly(key);
+                return;
+            }
+            if (conn.muteMs > 0) {
+                long muteMs = conn.muteMs;
+                conn.muteMs = 0;
+                key.interestOps(0);
+                try {
+                    throttleTimer.schedule(() -> unmute(conn), muteMs, TimeUnit.MILLISECONDS);
+                    return;
+                } catch (RejectedExecutionException e) {
+                    // shutting down, carry on unthrottled
+                }
+            }
+            conn.inFlight = false;
+            dispatchNext(key, conn); // pipelined requests may already be buffered
+        }
+
+        private void grow(Connection conn) throws IOException {
+            int capacity = conn.readBuffer.capacity();
+            if (capacity >= maxRequestBytes) {
+                throw new IOException("Request larger than " + maxRequestBytes + " bytes");
+            }
+            ByteBuffer larger = ByteBuffer.allocate((int) Math.min((long) capacity * 2, maxRequestBytes));
+            conn.readBuffer.flip();
+            larger.put(conn.readBuffer);
+            conn.readBuffer = larger;
+        }
+
+        private void closeQuietly(SelectionKey key) {
+            key.cancel();
+            try {
+                key.channel().close();
+            } catch (IOException e) { /* Ignore */ }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.distributed.systems.server;
+
+import com.distributed.systems.config.BrokerConfig;
+import com.distributed.systems.util.ApiKey;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Byte-rate and request-rate quotas per client id and per topic, enforced with token buckets.
+ * A request is never rejected: it is served, its cost is charged (a bucket may go into debt), and
+ * the caller gets back how long the client must be held off until the debt is repaid. That keeps
+ * a runaway producer from starving everyone else without breaking its connection.
+ * <p>
+ * Buckets are created on first use per client id and topic. A bucket that has refilled and sat
+ * untouched for idleEvictMs is no different from a new one, so it is dropped; the maps stay as
+ * large as the set of recently active clients and topics rather than every name ever seen.
+ */
+public class QuotaManager {
+
+    // Inter-broker traffic is not throttled; replication has to keep up for the cluster to stay healthy
+    private static final Set<ApiKey> EXEMPT = EnumSet.of(ApiKey.REPLICA_FETCH, ApiKey.FOLLOWER_FETCH, ApiKey.GET_OFFSET,
+            ApiKey.PROMOTE, ApiKey.DEMOTE, ApiKey.UPDATE_LEADER, ApiKey.CLIENT_ID);
+    private static final long DEFAULT_IDLE_EVICT_MS = 10_000; // ten one-second burst windows
+
+    private final long clientBytesPerSec;
+    private final long clientRequestsPerSec;
+    private final long topicBytesPerSec;
+    private final long topicRequestsPerSec;
+    private final long idleEvictNanos;
+    private final AtomicLong nextEvictionNanos;
+
+    private final Map<String, TokenBucket> clientBytes = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> clientRequests = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> topicBytes = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> topicRequests = new ConcurrentHashMap<>();
+
+    private final LongAdder throttledRequests = new LongAdder();
+    private final LongAdder totalThrottleMs = new LongAdder();
+
+    /**
+     * Rates of 0 mean unlimited.
+     */
+    public QuotaManager(long clientBytesPerSec, long clientRequestsPerSec, long topicBytesPerSec, long topicRequestsPerSec) {
+        this(clientBytesPerSec, clientRequestsPerSec, topicBytesPerSec, topicRequestsPerSec, DEFAULT_IDLE_EVICT_MS);
+    }
+
+    QuotaManager(long clientBytesPerSec, long clientRequestsPerSec, long topicBytesPerSec, long topicRequestsPerSec,
+                 long idleEvictMs) {
+        this.clientBytesPerSec = clientBytesPerSec;
+        this.clientRequestsPerSec = clientRequestsPerSec;
+        this.topicBytesPerSec = topicBytesPerSec;
+        this.topicRequestsPerSec = topicRequestsPerSec;
+        this.idleEvictNanos = TimeUnit.MILLISECONDS.toNanos(idleEvictMs);
+        this.nextEvictionNanos = new AtomicLong(System.nanoTime() + idleEvictNanos);
+    }
+
+    public QuotaManager(BrokerConfig config) {
+        this(config.getQuotaClientBytesPerSec(), config.getQuotaClientRequestsPerSec(),
+                config.getQuotaTopicBytesPerSec(), config.getQuotaTopicRequestsPerSec());
+    }
+
+    /**
+     * Charges one request of the given size (request plus response bytes) and returns how many
+     * milliseconds the client should be throttled, 0 if it is within all of its quotas.
+     *
+     * @param topic the topic the request targets, or null if it is not topic-scoped
+     */
+    public long record(String clientId, ApiKey api, String topic, long bytes) {
+        if (EXEMPT.contains(api)) return 0;
+        evictIdleBuckets();
+
+        long throttleMs = 0;
+        throttleMs = Math.max(throttleMs, charge(clientBytes, clientId, clientBytesPerSec, bytes));
+        throttleMs = Math.max(throttleMs, charge(clientRequests, clientId, clientRequestsPerSec, 1));
+        if (topic != null) {
+            throttleMs = Math.max(throttleMs, charge(topicBytes, topic, topicBytesPerSec, bytes));
+            throttleMs = Math.max(throttleMs, charge(topicRequests, topic, topicRequestsPerSec, 1));
+        }
+
+        if (throttleMs > 0) {
+            throttledRequests.increment();
+            totalThrottleMs.add(throttleMs);
+        }
+        return throttleMs;
+    }
+
+    private static long charge(Map<String, TokenBucket> buckets, String name, long ratePerSec, long amount) {
+        if (ratePerSec <= 0) return 0;
+        while (true) {
+            long throttleMs = buckets.computeIfAbsent(name, k -> new TokenBucket(ratePerSec)).consume(amount);
+            if (throttleMs != TokenBucket.EVICTED) return throttleMs;
+            // lost a race with eviction; the next lookup creates a fresh bucket
+        }
+    }
+
+    /*
+     * At most once per idleEvictMs, one caller sweeps every map for idle full buckets.
+     */
+    private void evictIdleBuckets() {
+        long now = System.nanoTime();
+        long next = nextEvictionNanos.get();
+        if (now - next < 0 || !nextEvictionNanos.compareAndSet(next, now + idleEvictNanos)) return;
+
+        for (Map<String, TokenBucket> buckets : List.of(clientBytes, clientRequests, topicBytes, topicRequests)) {
+            buckets.entrySet().removeIf(entry -> entry.getValue().evictIfIdle(now, idleEvictNanos));
+        }
+    }
+
+    public long getThrottledRequests() {
+        return throttledRequests.sum();
+    }
+
+    public String getStatsReport() {
+        return String.format("QUOTA_THROTTLED=%d, QUOTA_THROTTLE_MS=%d, QUOTA_CLIENTS=%d, QUOTA_TOPICS=%d",
+                throttledRequests.sum(), totalThrottleMs.sum(),
+                Math.max(clientBytes.size(), clientRequests.size()), Math.max(topicBytes.size(), topicRequests.size()));
+    }
+
+    /*
+     * Refills at ratePerSec up to one second of burst. Consuming past zero leaves a debt, and the
+     * throttle time is how long the refill takes to pay it back.
+     */
+    private static class TokenBucket {
+        static final long EVICTED = -1;
+
+        private final double ratePerNano;
+        private final double capacity;
+        private double tokens;
+        private long lastRefillNanos;
+        private boolean evicted = false;
+
+        TokenBucket(long ratePerSec) {
+            this.ratePerNano = ratePerSec / 1e9;
+            this.capacity = ratePerSec;
+            this.tokens = capacity;
+            this.lastRefillNanos = System.nanoTime();
+        }
+
+        synchronized long consume(long amount) {
+            if (evicted) return EVICTED;
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * ratePerNano);
+            lastRefillNanos = now;
+
+            tokens -= amount;
+            return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / ratePerNano / 1_000_000);
+        }
+
+        /*
+         * Marks the bucket evicted if it was untouched for idleNanos and has refilled, so a client
+         * that is still paying off a debt keeps it.
+         */
+        synchronized boolean evictIfIdle(long now, long idleNanos) {
+            long idle = now - lastRefillNanos;
+            if (idle >= idleNanos && tokens + idle * ratePerNano >= capacity) {
+                evicted = true;
+            }
+            return evicted;
+        }
+    }
+}
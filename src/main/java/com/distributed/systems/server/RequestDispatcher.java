@@ -0,0 +1,224 @@
+package com.distributed.systems.server;
+
+import com.distributed.systems.util.ApiKey;
+import com.distributed.systems.util.Logger;
+import com.distributed.systems.util.Protocol;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
+
+/**
+ * Routes requests to their handlers through a table indexed by ApiKey, and implements the three
+ * ways a connection can frame them: bare v1 commands, pipelined v1 frames and v2 frames. Both the
+ * blocking and the NIO network layers go through here, so they speak exactly the same protocol.
+ * <p>
+ * Every request is charged against the quotas of its client and topic. The resulting throttle time
+ * is left in the ConnectionContext for the network layer to apply: v1 responses are held back for
+ * that long, v2 responses carry it in the header and the connection is muted afterwards.
+ */
+public class RequestDispatcher {
+
+    /**
+     * Reads the request fields (everything after the command or header) and writes the response body.
+     */
+    @FunctionalInterface
+    public interface ApiHandler {
+        void handle(DataInputStream in, DataOutputStream out) throws IOException;
+    }
+
+    // length (4) + correlation id (4) + error code (2) + throttle time (4)
+    private static final int V2_RESPONSE_HEADER_SIZE = 14;
+    private static final int V2_REQUEST_HEADER_SIZE = 6; // api key (2) + correlation id (4)
+    private static final int MAX_UTF_BYTES = 2 + 65535;
+
+    private final EnumMap<ApiKey, ApiHandler> handlers = new EnumMap<>(ApiKey.class);
+    private final QuotaManager quotas;
+
+    public RequestDispatcher(QuotaManager quotas) {
+        this.quotas = quotas;
+    }
+
+    public void register(ApiKey key, ApiHandler handler) {
+        handlers.put(key, handler);
+    }
+
+    /**
+     * Answers SWITCH_PROTOCOL (command already read). Returns the mode the connection is now in,
+     * or 0 if the requested mode is not supported and it stays on v1 commands.
+     */
+    public int switchProtocol(DataInputStream in, DataOutputStream out) throws IOException {
+        int mode = in.readInt();
+        boolean accepted = mode == Protocol.MODE_PIPELINED || mode == Protocol.MODE_V2;
+        out.writeBoolean(accepted);
+        out.flush();
+        return accepted ? mode : 0;
+    }
+
+    /**
+     * Runs one v1 request whose command has already been read. Returns the response bytes, or
+     * null if the client asked to close the connection.
+     */
+    public byte[] dispatchCommand(ConnectionContext ctx, String command, DataInputStream in) throws IOException {
+        ctx.setThrottleMs(0);
+        if (command.equalsIgnoreCase(Protocol.CMD_QUIT)) {
+            return null;
+        }
+
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        ApiKey key = ApiKey.forCommand(command);
+        if (key == null || (key != ApiKey.CLIENT_ID && !handlers.containsKey(key))) {
+            new DataOutputStream(response).writeUTF("ERROR: Unknown Command");
+        } else {
+            invoke(ctx, key, in, response, 2 + command.length());
+        }
+        return response.toByteArray();
+    }
+
+    /**
+     * Runs one pipelined v1 frame, length prefix already stripped: [CorrelationId][Command][Fields].
+     * Returns the whole response frame, or null if the client asked to close the connection.
+     */
+    public byte[] dispatchPipelined(ConnectionContext ctx, byte[] frame) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame));
+        int correlationId = in.readInt();
+
+        byte[] body = dispatchCommand(ctx, in.readUTF(), in);
+        if (body == null) {
+            return null;
+        }
+
+        return ByteBuffer.allocate(8 + body.length)
+                .putInt(4 + body.length)
+                .putInt(correlationId)
+                .put(body)
+                .array();
+    }
+
+    /**
+     * Runs one v2 frame, length prefix already stripped: [ApiKey][CorrelationId][Fields]. Every
+     * frame is answered; failures are reported in the header's error code and, since the frame
+     * boundary is known, never desynchronise the connection. Returns the response header and body
+     * as separate buffers for a gathering write.
+     */
+    public ByteBuffer[] dispatchV2(ConnectionContext ctx, ByteBuffer frame) throws IOException {
+        ctx.setThrottleMs(0);
+        if (frame.remaining() < V2_REQUEST_HEADER_SIZE) {
+            throw new IOException("Truncated v2 request header");
+        }
+        short apiId = frame.getShort();
+        int correlationId = frame.getInt();
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        short errorCode = Protocol.ERROR_NONE;
+
+        ApiKey key = ApiKey.forId(apiId);
+        if (key == null || (key != ApiKey.CLIENT_ID && !handlers.containsKey(key))) {
+            errorCode = Protocol.ERROR_UNKNOWN_API_KEY;
+        } else {
+            DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining()));
+            try {
+                invoke(ctx, key, in, body, V2_REQUEST_HEADER_SIZE);
+            } catch (EOFException e) {
+                errorCode = Protocol.ERROR_CORRUPT_REQUEST;
+                body.reset();
+            } catch (IOException e) {
+                Logger.logError("Request " + key + " failed: " + e.getMessage());
+                errorCode = Protocol.ERROR_SERVER;
+                body.reset();
+            }
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(V2_RESPONSE_HEADER_SIZE)
+                .putInt(V2_RESPONSE_HEADER_SIZE - 4 + body.size())
+                .putInt(correlationId)
+                .putShort(errorCode)
+                .putInt((int) Math.min(Integer.MAX_VALUE, ctx.getThrottleMs()))
+                .flip();
+        return new ByteBuffer[]{header, ByteBuffer.wrap(body.toByteArray())};
+    }
+
+    /**
+     * Answers a v2 frame that was shed before it ran with a bodiless ERROR_BUSY response.
+     */
+    public ByteBuffer[] busyV2(ByteBuffer frame) throws IOException {
+        if (frame.remaining() < V2_REQUEST_HEADER_SIZE) {
+            throw new IOException("Truncated v2 request header");
+        }
+        int correlationId = frame.getInt(frame.position() + 2);
+        ByteBuffer header = ByteBuffer.allocate(V2_RESPONSE_HEADER_SIZE)
+                .putInt(V2_RESPONSE_HEADER_SIZE - 4)
+                .putInt(correlationId)
+                .putShort(Protocol.ERROR_BUSY)
+                .putInt(0)
+                .flip();
+        return new ByteBuffer[]{header};
+    }
+
+    /*
+     * Runs the handler and charges the request (header, fields read and response written) to the
+     * client's and topic's quotas.
+     */
+    private void invoke(ConnectionContext ctx, ApiKey key, DataInputStream in, ByteArrayOutputStream response,
+                        int headerBytes) throws IOException {
+        if (key == ApiKey.CLIENT_ID) {
+            ctx.setClientId(in.readUTF());
+            new DataOutputStream(response).writeBoolean(true);
+            return;
+        }
+
+        String topic = key.isTopicScoped() ? peekTopic(in) : null;
+        CountingInputStream counted = new CountingInputStream(in);
+        handlers.get(key).handle(new DataInputStream(counted), new DataOutputStream(response));
+
+        long bytes = headerBytes + counted.getCount() + response.size();
+        ctx.setThrottleMs(quotas.record(ctx.getClientId(), key, topic, bytes));
+    }
+
+    /*
+     * Reads the leading topic name without consuming it, so the handler still sees the full request.
+     */
+    private static String peekTopic(DataInputStream in) throws IOException {
+        if (!in.markSupported()) return null;
+        in.mark(MAX_UTF_BYTES);
+        try {
+            return in.readUTF();
+        } finally {
+            in.reset();
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int off, int len) throws IOException {
+            int n = super.read(buffer, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.distributed.systems.server;
+
+import com.distributed.systems.util.Protocol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Finds request boundaries on the wire. The v1 format has no length prefix: a request is a UTF
+ * command followed by that command's fields, so the framer has to know every layout. The
+ * non-blocking server uses this to wait until a whole request is buffered before handing it to a
+ * handler thread, so handlers never block on a half-received request.
+ */
+public final class RequestFramer {
+
+    // FETCH_TOPICS: [Int Count] followed by Count x ([String Topic][Long Offset][Int MaxRecords])
+    private enum Field { UTF, INT, LONG, BYTES, FETCH_TOPICS }
+
+    private static final Field[] NO_FIELDS = new Field[0];
+
+    // Field layouts mirror what the handlers in BrokerServer read after the command
+    private static final Map<String, Field[]> LAYOUTS = Map.ofEntries(
+            Map.entry(Protocol.CMD_PRODUCE, new Field[]{Field.UTF, Field.BYTES, Field.BYTES}),
+            Map.entry(Protocol.CMD_PRODUCE_IDEMPOTENT,
+                    new Field[]{Field.UTF, Field.LONG, Field.INT, Field.BYTES, Field.BYTES}),
+            Map.entry(Protocol.CMD_CONSUME, new Field[]{Field.UTF, Field.LONG}),
+            Map.entry(Protocol.CMD_LOOKUP_KEY, new Field[]{Field.UTF, Field.BYTES}),
+            Map.entry(Protocol.CMD_REPLICA_FETCH, new Field[]{Field.UTF, Field.LONG}),
+            Map.entry(Protocol.CMD_STATS, NO_FIELDS),
+            Map.entry(Protocol.CMD_OFFSET_COMMIT, new Field[]{Field.UTF, Field.UTF, Field.LONG}),
+            Map.entry(Protocol.CMD_OFFSET_FETCH, new Field[]{Field.UTF, Field.UTF}),
+            Map.entry(Protocol.CMD_LIST_TOPICS, NO_FIELDS),
+            Map.entry(Protocol.CMD_PROMOTE, NO_FIELDS),
+            Map.entry(Protocol.CMD_GET_OFFSET, new Field[]{Field.UTF}),
+            Map.entry(Protocol.CMD_DEMOTE, new Field[]{Field.UTF, Field.INT}),
+            Map.entry(Protocol.CMD_UPDATE_LEADER, new Field[]{Field.UTF, Field.INT}),
+            Map.entry(Protocol.CMD_CLIENT_ID, new Field[]{Field.UTF}),
+            Map.entry(Protocol.CMD_METADATA, NO_FIELDS),
+            Map.entry(Protocol.CMD_FOLLOWER_FETCH, new Field[]{Field.FETCH_TOPICS}),
+            Map.entry(Protocol.CMD_SWITCH_PROTOCOL, new Field[]{Field.INT}),
+            Map.entry(Protocol.CMD_QUIT, NO_FIELDS)
+    );
+
+    private RequestFramer() {
+    }
+
+    /**
+     * Length in bytes of the first complete request between the buffer's position and limit, or -1
+     * if more bytes are needed. The buffer itself is not modified. Unknown commands frame as just
+     * the command, matching the blocking server which answers them and reads on.
+     *
+     * @throws IOException if a length field is negative, so the stream can never resynchronise
+     */
+    public static int frameLength(ByteBuffer buffer) throws IOException {
+        int start = buffer.position();
+        int limit = buffer.limit();
+
+        if (limit - start < 2) return -1;
+        int commandLen = Short.toUnsignedInt(buffer.getShort(start));
+        int pos = start + 2;
+        if (limit - pos < commandLen) return -1;
+
+        String command = new String(bytesAt(buffer, pos, commandLen), StandardCharsets.UTF_8);
+        pos += commandLen;
+
+        Field[] layout = LAYOUTS.getOrDefault(command.toUpperCase(Locale.ROOT), NO_FIELDS);
+        for (Field field : layout) {
+            int size = switch (field) {
+                case UTF -> limit - pos < 2 ? -1 : 2 + Short.toUnsignedInt(buffer.getShort(pos));
+                case INT -> 4;
+                case LONG -> 8;
+                case BYTES -> {
+                    if (limit - pos < 4) yield -1;
+                    int len = buffer.getInt(pos);
+                    if (len < 0) throw new IOException("Negative field length " + len + " in " + command);
+                    yield 4 + len;
+                }
+                case FETCH_TOPICS -> fetchTopicsSize(buffer, pos, command);
+            };
+            if (size < 0 || (long) limit - pos < size) return -1;
+            pos += size;
+        }
+        return pos - start;
+    }
+
+    /**
+     * Length of the first complete length-prefixed frame ([Int Length][Payload]), as used by the
+     * pipelined and v2 modes, or -1 if more bytes are needed. maxFrameBytes bounds the whole frame.
+     */
+    public static int prefixedFrameLength(ByteBuffer buffer, int maxFrameBytes) throws IOException {
+        if (buffer.remaining() < 4) return -1;
+        int length = buffer.getInt(buffer.position());
+        if (length < 4 || length > maxFrameBytes - 4) {
+            throw new IOException("Invalid frame length " + length);
+        }
+        return buffer.remaining() - 4 < length ? -1 : 4 + length;
+    }
+
+    private static int fetchTopicsSize(ByteBuffer buffer, int start, String command) throws IOException {
+        int limit = buffer.limit();
+        if (limit - start < 4) return -1;
+        int count = buffer.getInt(start);
+        if (count < 0) throw new IOException("Negative topic count " + count + " in " + command);
+
+        int pos = start + 4;
+        for (int i = 0; i < count; i++) {
+            if (limit - pos < 2) return -1;
+            pos += 2 + Short.toUnsignedInt(buffer.getShort(pos)) + 8 + 4;
+            if (pos > limit) return -1;
+        }
+        return pos - start;
+    }
+
+    private static byte[] bytesAt(ByteBuffer buffer, int index, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(index, bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,95 @@
+package com.distributed.systems.server;
+
+import com.distributed.systems.util.LatencyHistogram;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The queue between the network layer and the request handlers, with admission control. Work is
+ * refused straight away when the queue is full, and dropped when it is dequeued if it waited
+ * longer than the queue-time budget: by then the client has most likely given up, and running it
+ * anyway only delays everything queued behind it. Either way the submitter's shed callback runs
+ * so the client gets a quick, retriable answer instead of a timeout.
+ * <p>
+ * A depth or budget of 0 means unbounded.
+ */
+public class RequestQueue {
+
+    private final ThreadPoolExecutor executor;
+    private final long maxQueueNanos;
+
+    private final LatencyHistogram queueTime = new LatencyHistogram();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    public RequestQueue(String name, int workers, int maxDepth, long maxQueueTimeMs) {
+        int threads = Math.max(1, workers);
+        this.maxQueueNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxQueueTimeMs));
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                maxDepth > 0 ? new ArrayBlockingQueue<>(maxDepth) : new LinkedBlockingQueue<>(),
+                namedThreads(name), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private static ThreadFactory namedThreads(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> new Thread(r, name + "-" + counter.getAndIncrement());
+    }
+
+    /**
+     * Queues the work, or runs shed on the calling thread if the queue is full. If the work then
+     * sits in the queue past the budget, shed runs on the worker instead of the work.
+     *
+     * @throws RejectedExecutionException if the queue has been shut down
+     */
+    public void submit(Runnable work, Runnable shed) {
+        long enqueuedNanos = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                long waited = System.nanoTime() - enqueuedNanos;
+                queueTime.record(waited);
+                if (maxQueueNanos > 0 && waited > maxQueueNanos) {
+                    expired.increment();
+                    shed.run();
+                } else {
+                    work.run();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if (executor.isShutdown()) throw e;
+            rejected.increment();
+            shed.run();
+        }
+    }
+
+    public int getDepth() {
+        return executor.getQueue().size();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getExpiredCount() {
+        return expired.sum();
+    }
+
+    public String getStatsReport() {
+        return String.format("QUEUE_DEPTH=%d, QUEUE_REJECTED=%d, QUEUE_EXPIRED=%d, QUEUE_TIME_P99=%.2fms",
+                getDepth(), rejected.sum(), expired.sum(), queueTime.getPercentile(99) / 1e6);
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public void shutdownNow() {
+        executor.shutdownNow();
+    }
+}
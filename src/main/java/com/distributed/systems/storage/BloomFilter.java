@@ -0,0 +1,112 @@
+package com.distributed.systems.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Bloom filter over the record keys of a sealed segment. A negative answer means the segment
+ * definitely has no record with that key, so key lookups can skip it without touching its files.
+ * Probes are derived from the key's 64-bit hash by double hashing (Kirsch-Mitzenmacher).
+ */
+public class BloomFilter {
+    private static final int HEADER_SIZE = 8; // hash count (4) + word count (4)
+
+    private final long[] words;
+    private final int numHashes;
+    private final long numBits;
+
+    private BloomFilter(long[] words, int numHashes) {
+        this.words = words;
+        this.numHashes = numHashes;
+        this.numBits = (long) words.length * Long.SIZE;
+    }
+
+    /**
+     * Sizes the filter for the expected number of keys and target false positive rate.
+     */
+    public static BloomFilter create(long expectedKeys, double falsePositiveRate) {
+        long n = Math.max(1, expectedKeys);
+        double p = Math.min(Math.max(falsePositiveRate, 1e-9), 0.5);
+
+        long bits = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        int numWords = (int) Math.max(1, (bits + Long.SIZE - 1) / Long.SIZE);
+        int numHashes = (int) Math.max(1, Math.round((double) numWords * Long.SIZE / n * Math.log(2)));
+
+        return new BloomFilter(new long[numWords], numHashes);
+    }
+
+    public void add(byte[] key) {
+        long hash = KeyIndex.hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % numBits;
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    public boolean mightContain(byte[] key) {
+        long hash = KeyIndex.hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % numBits;
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the filter atomically so a crash never leaves a truncated (and wrongly negative) file behind.
+     */
+    public void writeTo(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + words.length * 8);
+        buffer.putInt(numHashes);
+        buffer.putInt(words.length);
+        for (long word : words) {
+            buffer.putLong(word);
+        }
+        buffer.flip();
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a persisted filter, or returns null if the file is missing or malformed.
+     */
+    public static BloomFilter readFrom(Path path) throws IOException {
+        if (!Files.exists(path)) return null;
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (buffer.remaining() < HEADER_SIZE) return null;
+
+        int numHashes = buffer.getInt();
+        int numWords = buffer.getInt();
+        if (numHashes <= 0 || numWords <= 0 || buffer.remaining() != (long) numWords * 8) return null;
+
+        long[] words = new long[numWords];
+        for (int i = 0; i < numWords; i++) {
+            words[i] = buffer.getLong();
+        }
+        return new BloomFilter(words, numHashes);
+    }
+
+    public int getSizeInBytes() {
+        return words.length * 8;
+    }
+}
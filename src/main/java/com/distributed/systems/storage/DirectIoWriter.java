@@ -0,0 +1,211 @@
+package com.distributed.systems.storage;
+
+import com.distributed.systems.util.Logger;
+
+import com.sun.nio.file.ExtendedOpenOption;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Appends to a segment's data file with O_DIRECT so bulk producers don't churn the page cache
+ * (and evict the index and tail pages that low-latency consumers rely on).
+ * <p>
+ * Direct I/O only accepts block-aligned offsets and lengths, so every append rewrites the last
+ * partially filled block from memory and pads to a block boundary. The padding stays on disk past
+ * the logical end (the segment tracks that end itself) and is trimmed once, when the segment is
+ * sealed or closed, so appends don't pay for a truncate each. A crash leaves it to the
+ * segment's recovery scan.
+ * The most recently written bytes are mirrored in a small in-process ring so tail reads never hit disk.
+ */
+class DirectIoWriter {
+
+    private final FileChannel directChannel;
+    private final FileChannel channel; // the segment's buffered channel, used for trimming and reloads
+    private final int blockSize;
+
+    private ByteBuffer staging; // block-aligned direct buffer
+    private final byte[] partialBlock; // contents of the last, partially filled block
+    private int partialLength = 0;
+
+    // Ring of the last tail.length bytes, ending at tailEnd
+    private final byte[] tail;
+    private long tailEnd = 0;
+    private int tailValid = 0;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private DirectIoWriter(FileChannel directChannel, FileChannel channel, int blockSize, int tailBytes) {
+        this.directChannel = directChannel;
+        this.channel = channel;
+        this.blockSize = blockSize;
+        this.partialBlock = new byte[blockSize];
+        this.tail = new byte[Math.max(0, tailBytes)];
+        this.staging = allocateAligned(blockSize * 16);
+    }
+
+    /**
+     * Opens a direct writer for dataPath, or returns null (buffered mode) if the file system
+     * does not support O_DIRECT, e.g. tmpfs.
+     */
+    static DirectIoWriter open(Path dataPath, FileChannel channel, int tailBytes) {
+        try {
+            int blockSize = (int) Files.getFileStore(dataPath).getBlockSize();
+            FileChannel directChannel = FileChannel.open(dataPath, StandardOpenOption.WRITE, ExtendedOpenOption.DIRECT);
+            DirectIoWriter writer = new DirectIoWriter(directChannel, channel, blockSize, tailBytes);
+            writer.resetTo(channel.size());
+            return writer;
+        } catch (IOException | UnsupportedOperationException e) {
+            Logger.logWarning("Direct I/O unavailable for " + dataPath.getFileName() + " (" + e.getMessage()
+                    + "). Falling back to buffered writes.");
+            return null;
+        }
+    }
+
+    private ByteBuffer allocateAligned(int capacity) {
+        return ByteBuffer.allocateDirect(capacity + blockSize).alignedSlice(blockSize);
+    }
+
+    /**
+     * Writes record at position, which must be the current logical end of the file.
+     * Returns the number of logical bytes appended.
+     */
+    int write(ByteBuffer record, long position) throws IOException {
+        int length = record.remaining();
+        long alignedStart = position - partialLength;
+        int total = partialLength + length;
+        int alignedLength = ((total + blockSize - 1) / blockSize) * blockSize;
+
+        if (staging.capacity() < alignedLength) {
+            staging = allocateAligned(alignedLength);
+        }
+
+        staging.clear();
+        staging.put(partialBlock, 0, partialLength);
+        staging.put(record.duplicate());
+        staging.put(new byte[alignedLength - total]); // zero padding up to the block boundary
+        staging.flip();
+
+        long written = 0;
+        while (staging.hasRemaining()) {
+            written += directChannel.write(staging, alignedStart + written);
+        }
+
+        // Remember the new partial block for the next append
+        int newPartial = (int) ((position + length) % blockSize);
+        staging.position(total - newPartial);
+        staging.get(partialBlock, 0, newPartial);
+        partialLength = newPartial;
+
+        appendToTail(record);
+        return length;
+    }
+
+    private void appendToTail(ByteBuffer record) {
+        lock.lock();
+        try {
+            if (tail.length == 0) return;
+
+            ByteBuffer source = record.duplicate();
+            int length = source.remaining();
+
+            // Only the last tail.length bytes can survive; skip the rest
+            int skip = Math.max(0, length - tail.length);
+            source.position(source.position() + skip);
+
+            long cursor = tailEnd + skip;
+            while (source.hasRemaining()) {
+                int ringPos = (int) (cursor % tail.length);
+                int chunk = Math.min(source.remaining(), tail.length - ringPos);
+                source.get(tail, ringPos, chunk);
+                cursor += chunk;
+            }
+
+            tailEnd += length;
+            tailValid = (int) Math.min(tail.length, (long) tailValid + length);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Copies bytes at position into dst if they are still held in the tail ring.
+     * Returns the number of bytes copied, or -1 if the range is not (fully) buffered.
+     */
+    int readFromTail(ByteBuffer dst, long position) {
+        lock.lock();
+        try {
+            int length = dst.remaining();
+            long tailStart = tailEnd - tailValid;
+            if (tail.length == 0 || position < tailStart || position + length > tailEnd) {
+                return -1;
+            }
+
+            long cursor = position;
+            while (dst.hasRemaining()) {
+                int ringPos = (int) (cursor % tail.length);
+                int chunk = Math.min(dst.remaining(), tail.length - ringPos);
+                dst.put(tail, ringPos, chunk);
+                cursor += chunk;
+            }
+            return length;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cuts the zero padding after the logical end off the file.
+     */
+    void trim(long end) throws IOException {
+        if (channel.size() > end) {
+            channel.truncate(end);
+        }
+    }
+
+    /**
+     * Reloads the partial block and tail ring from disk after the file was truncated or reopened.
+     */
+    void resetTo(long position) throws IOException {
+        lock.lock();
+        try {
+            partialLength = (int) (position % blockSize);
+            if (partialLength > 0) {
+                ByteBuffer buffer = ByteBuffer.wrap(partialBlock, 0, partialLength);
+                readFully(buffer, position - partialLength);
+            }
+
+            tailEnd = position;
+            tailValid = (int) Math.min(tail.length, position);
+            if (tailValid > 0) {
+                long cursor = position - tailValid;
+                while (cursor < position) {
+                    int ringPos = (int) (cursor % tail.length);
+                    int chunk = (int) Math.min(position - cursor, tail.length - ringPos);
+                    readFully(ByteBuffer.wrap(tail, ringPos, chunk), cursor);
+                    cursor += chunk;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        long cursor = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, cursor);
+            if (read < 0) throw new IOException("Unexpected EOF while loading direct I/O tail at " + cursor);
+            cursor += read;
+        }
+    }
+
+    void close() throws IOException {
+        directChannel.close();
+    }
+}
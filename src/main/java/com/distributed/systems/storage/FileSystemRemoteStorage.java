@@ -0,0 +1,54 @@
+package com.distributed.systems.storage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * RemoteStorage backed by a plain directory (a mounted bucket, NFS share or a temp dir in tests).
+ */
+public class FileSystemRemoteStorage implements RemoteStorage {
+
+    private final Path rootDir;
+
+    public FileSystemRemoteStorage(Path rootDir) throws IOException {
+        this.rootDir = rootDir;
+        Files.createDirectories(rootDir);
+    }
+
+    @Override
+    public void upload(String key, Path source) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+
+        // Copy to a temp name first so a half-written object is never visible under its real key
+        Path temp = target.resolveSibling(target.getFileName() + ".uploading");
+        Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void download(String key, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Files.copy(resolve(key), target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        return Files.exists(resolve(key));
+    }
+
+    private Path resolve(String key) throws IOException {
+        Path resolved = rootDir.resolve(key).normalize();
+        if (!resolved.startsWith(rootDir.normalize())) {
+            throw new IOException("Remote key escapes the storage root: " + key);
+        }
+        return resolved;
+    }
+}
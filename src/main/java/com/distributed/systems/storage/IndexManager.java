@@ -5,13 +5,17 @@ import com.distributed.systems.util.Logger;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class IndexManager {
     private final FileChannel indexChannel;
     private static final int ENTRY_SIZE = 16; // 8 bytes for offset, 8 for position
-    private final Path indexPath;
+    private Path indexPath;
+    private final ReentrantLock lock = new ReentrantLock();
 
 
     public IndexManager(Path indexPath) throws IOException {
@@ -84,43 +88,48 @@ public class IndexManager {
      * Truncates the index by removing all entries associated with offsets
      * equal to or greater than the targetOffset.
      */
-    public synchronized void truncateTo(long targetOffset) throws IOException {
-        long fileSize = indexChannel.size();
-        if (fileSize == 0) return;
-
-        long low = 0;
-        long high = (fileSize / ENTRY_SIZE) - 1;
-        long truncateAtEntryIndex = -1;
-
-        ByteBuffer buffer = ByteBuffer.allocate(ENTRY_SIZE);
-
-        // Binary search to find the 1st entry where offset >= targetOffset
-        while (low <= high) {
-            long mid = low + (high - low) / 2;
-            buffer.clear();
-            indexChannel.read(buffer, mid * ENTRY_SIZE);
-            buffer.flip();
-
-            long offsetAtMid = buffer.getLong();
-
-            if (offsetAtMid >= targetOffset) {
-                // This might be the first entry to delete, but keep looking left
-                truncateAtEntryIndex = mid;
-                high = mid - 1;
-            } else {
-                low = mid + 1;
+    public void truncateTo(long targetOffset) throws IOException {
+        lock.lock();
+        try {
+            long fileSize = indexChannel.size();
+            if (fileSize == 0) return;
+
+            long low = 0;
+            long high = (fileSize / ENTRY_SIZE) - 1;
+            long truncateAtEntryIndex = -1;
+
+            ByteBuffer buffer = ByteBuffer.allocate(ENTRY_SIZE);
+
+            // Binary search to find the 1st entry where offset >= targetOffset
+            while (low <= high) {
+                long mid = low + (high - low) / 2;
+                buffer.clear();
+                indexChannel.read(buffer, mid * ENTRY_SIZE);
+                buffer.flip();
+
+                long offsetAtMid = buffer.getLong();
+
+                if (offsetAtMid >= targetOffset) {
+                    // This might be the first entry to delete, but keep looking left
+                    truncateAtEntryIndex = mid;
+                    high = mid - 1;
+                } else {
+                    low = mid + 1;
+                }
             }
-        }
 
-        // If we found entries to delete
-        if (truncateAtEntryIndex != -1) {
-            long newSize = truncateAtEntryIndex * ENTRY_SIZE;
-            Logger.logStorage("Truncating index " + indexPath.getFileName() +
-                    " to " + newSize + " bytes (Removed " +
-                    (fileSize - newSize) / ENTRY_SIZE + " entries)");
+            // If we found entries to delete
+            if (truncateAtEntryIndex != -1) {
+                long newSize = truncateAtEntryIndex * ENTRY_SIZE;
+                Logger.logStorage("Truncating index " + indexPath.getFileName() +
+                        " to " + newSize + " bytes (Removed " +
+                        (fileSize - newSize) / ENTRY_SIZE + " entries)");
 
-            indexChannel.truncate(newSize);
-            indexChannel.force(true);
+                indexChannel.truncate(newSize);
+                indexChannel.force(true);
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -130,6 +139,18 @@ public class IndexManager {
         indexChannel.close();
     }
 
+    /**
+     * Renames the file in place; the open channel keeps working since it refers to the inode.
+     */
+    public void moveTo(Path target) throws IOException {
+        Files.move(indexPath, target, StandardCopyOption.ATOMIC_MOVE);
+        this.indexPath = target;
+    }
+
+    public Path getPath() {
+        return indexPath;
+    }
+
     public boolean isEmpty() throws IOException {
         return indexChannel.size() == 0;
     }
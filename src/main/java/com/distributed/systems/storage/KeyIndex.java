@@ -0,0 +1,125 @@
+package com.distributed.systems.storage;
+
+import com.distributed.systems.util.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-segment map of key hash -> latest offset holding that key, for GET-by-key lookups.
+ * Built in memory while the segment is active and written to disk once it is sealed.
+ * The file header records which offset it covers so a stale file (segment reopened and
+ * appended to after a truncate) is detected and rebuilt instead of trusted.
+ */
+public class KeyIndex {
+    private static final int HEADER_SIZE = 12; // covered last offset (8) + entry count (4)
+    private static final int ENTRY_SIZE = 16; // 8 bytes for key hash, 8 for offset
+
+    private Path keyIndexPath;
+    private final ConcurrentHashMap<Long, Long> latestOffsets = new ConcurrentHashMap<>();
+
+    public KeyIndex(Path keyIndexPath) {
+        this.keyIndexPath = keyIndexPath;
+    }
+
+    /**
+     * 64-bit FNV-1a. Collisions are resolved by the caller comparing the stored key bytes.
+     */
+    public static long hash(byte[] key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    public void put(byte[] key, long offset) {
+        latestOffsets.put(hash(key), offset);
+    }
+
+    /**
+     * Latest offset whose key hashes like this one, or -1 if the key is definitely not in the segment.
+     */
+    public long get(byte[] key) {
+        return latestOffsets.getOrDefault(hash(key), -1L);
+    }
+
+    public void clear() {
+        latestOffsets.clear();
+    }
+
+    public int size() {
+        return latestOffsets.size();
+    }
+
+    /**
+     * Loads the persisted index if it covers exactly up to lastOffset. Returns false if it is missing or stale.
+     */
+    public boolean load(long lastOffset) throws IOException {
+        if (!Files.exists(keyIndexPath)) return false;
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(keyIndexPath));
+        if (buffer.remaining() < HEADER_SIZE) return false;
+
+        long coveredOffset = buffer.getLong();
+        int count = buffer.getInt();
+        if (coveredOffset != lastOffset || buffer.remaining() != (long) count * ENTRY_SIZE) {
+            Logger.logWarning("Key index " + keyIndexPath.getFileName() + " is stale. Rebuilding.");
+            return false;
+        }
+
+        latestOffsets.clear();
+        for (int i = 0; i < count; i++) {
+            latestOffsets.put(buffer.getLong(), buffer.getLong());
+        }
+        return true;
+    }
+
+    /**
+     * Writes the index atomically, tagged with the last offset it covers.
+     */
+    public void persist(long lastOffset) throws IOException {
+        Map<Long, Long> snapshot = Map.copyOf(latestOffsets);
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + snapshot.size() * ENTRY_SIZE);
+        buffer.putLong(lastOffset);
+        buffer.putInt(snapshot.size());
+        snapshot.forEach((hash, offset) -> {
+            buffer.putLong(hash);
+            buffer.putLong(offset);
+        });
+        buffer.flip();
+
+        Path temp = keyIndexPath.resolveSibling(keyIndexPath.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, keyIndexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Points the index at a new file name, moving the persisted file if there is one.
+     */
+    public void moveTo(Path target) throws IOException {
+        if (Files.exists(keyIndexPath)) {
+            Files.move(keyIndexPath, target, StandardCopyOption.ATOMIC_MOVE);
+        }
+        this.keyIndexPath = target;
+    }
+
+    public Path getPath() {
+        return keyIndexPath;
+    }
+}
@@ -4,18 +4,21 @@ import com.distributed.systems.config.BrokerConfig;
 import com.distributed.systems.util.Logger;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentSkipListMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Manages high-level storage operations across segments.
  */
 public class Log {
+    // Temporary name of the pre-opened next segment until rotation assigns its base offset
+    private static final String PENDING_SEGMENT = "pending.data";
 
     private final Path dataDir;
     private final BrokerConfig config;
@@ -25,21 +28,62 @@ public class Log {
     private final ConcurrentSkipListMap<Long, LogSegment> segments = new ConcurrentSkipListMap<>();
     private long nextOffset = 0;
 
-    private final ScheduledExecutorService janitor = Executors.newSingleThreadScheduledExecutor();
+    // Shared broker-wide scheduler; only owned (and shut down) by standalone logs
+    private final MaintenanceScheduler scheduler;
+    private final boolean ownsScheduler;
+    private final MaintenanceScheduler.Registration cleanupTask;
+    private volatile boolean closed = false;
 
+    // Optional remote tier holding offloaded sealed segments (null when tiering is disabled)
+    private final RemoteLogTier remoteTier;
+    private final MaintenanceScheduler.Registration offloadTask;
+
+    // Dedup window for idempotent producers, snapshotted alongside the segments
+    private final ProducerStateManager producerState;
+
+    // Explicit lock rather than synchronized: holding a monitor across file I/O pins a virtual thread to its carrier
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Next segment, opened in the background so rotation is a pointer swap (guarded by lock)
+    private LogSegment pendingSegment;
+    private boolean preparingSegment = false;
+
+    /*
+     * Standalone log with its own single-threaded maintenance scheduler (tests, tools).
+     */
     public Log(Path dataDir, BrokerConfig config) throws IOException {
+        this(dataDir, config, new MaintenanceScheduler(1, 0), true, RemoteStorage.fromConfig(config));
+    }
+
+    public Log(Path dataDir, BrokerConfig config, MaintenanceScheduler scheduler) throws IOException {
+        this(dataDir, config, scheduler, false, null);
+    }
+
+    public Log(Path dataDir, BrokerConfig config, MaintenanceScheduler scheduler, RemoteStorage remoteStorage) throws IOException {
+        this(dataDir, config, scheduler, false, remoteStorage);
+    }
+
+    private Log(Path dataDir, BrokerConfig config, MaintenanceScheduler scheduler, boolean ownsScheduler,
+                RemoteStorage remoteStorage) throws IOException {
         this.dataDir = dataDir;
         this.config = config;
+        this.scheduler = scheduler;
+        this.ownsScheduler = ownsScheduler;
         // ensure the folder exists
         if (!Files.exists(dataDir)) {
             Files.createDirectories(dataDir);
         }
 
+        this.remoteTier = (remoteStorage == null) ? null
+                : new RemoteLogTier(dataDir, remoteStorage, config.getRemoteCacheSegments(), config.getIndexIntervalBytes());
+
         loadSegments();
 
         if (segments.isEmpty()) {
-            createNewSegment(0);
-            this.nextOffset = 0;
+            // Everything may already live remotely; continue right after it
+            long startOffset = (remoteTier != null && !remoteTier.isEmpty()) ? remoteTier.getNextOffset() : 0;
+            createNewSegment(startOffset);
+            this.nextOffset = startOffset;
         } else {
             // Resume from where we left off
             // Find the segment with the highest starting offset
@@ -52,18 +96,27 @@ public class Log {
             Logger.logBootstrap("Resuming log at offset: " + nextOffset);
         }
 
-        long interval = config.getCleanupIntervalMs();
-        janitor.scheduleAtFixedRate(() -> {
-            try {
-                cleanup();
-            } catch (IOException e) {
-                Logger.logError("Janitor failed to run cleanup: " + e.getMessage());
-            }
-        }, interval, interval, TimeUnit.MILLISECONDS);
+        this.producerState = new ProducerStateManager(dataDir, config.getProducerDedupWindow(), config.getProducerMaxIds());
+        // The snapshot may be newer than what survived on disk
+        producerState.truncateTo(nextOffset);
+
+        // Segments behind the active one were sealed before the restart, possibly not completely
+        for (LogSegment segment : segments.headMap(activeSegment.getBaseOffset(), false).values()) {
+            segment.markSealed();
+            completeSealInBackground(segment);
+        }
 
+        this.cleanupTask = scheduler.schedule("cleanup:" + dataDir.getFileName(), this::cleanup, config.getCleanupIntervalMs());
+        this.offloadTask = (remoteTier == null) ? null
+                : scheduler.schedule("offload:" + dataDir.getFileName(), this::offloadSealedSegments, config.getRemoteOffloadIntervalMs());
     }
 
     private void loadSegments() throws IOException {
+        // A pre-opened segment never received data; just drop it
+        for (String suffix : LogSegment.FILE_SUFFIXES) {
+            Files.deleteIfExists(LogSegment.companionPath(dataDir.resolve(PENDING_SEGMENT), suffix));
+        }
+
         try (var files = Files.list(dataDir)) {
             files.filter(path -> path.toString().endsWith(".data"))
                     .forEach(path -> {
@@ -71,7 +124,7 @@ public class Log {
                             // Parse offset from filename (e.g., "0000000123.data" -> 123)
                             String name = path.getFileName().toString();
                             long baseOffset = Long.parseLong(name.replace(".data", ""));
-                            LogSegment segment = new LogSegment(path, baseOffset, config.getIndexIntervalBytes());
+                            LogSegment segment = new LogSegment(path, baseOffset, config);
 
                             segments.put(baseOffset, segment);
                             Logger.logBootstrap("Loaded existing segment: " + name);
@@ -87,36 +140,199 @@ public class Log {
      * Creates new segment w/ segment file, provided the offset base
      */
     private void createNewSegment(long baseOffset) throws IOException {
-        String fileName = String.format("%010d.data", baseOffset);
-        Path segmentPath = dataDir.resolve(fileName);
-
-        LogSegment newSegment = new LogSegment(segmentPath, baseOffset, config.getIndexIntervalBytes());
+        LogSegment newSegment = new LogSegment(segmentPath(baseOffset), baseOffset, config);
         segments.put(baseOffset, newSegment);
         this.activeSegment = newSegment;
     }
 
+    private Path segmentPath(long baseOffset) {
+        return dataDir.resolve(String.format("%010d.data", baseOffset));
+    }
+
+    /*
+     * Kicks off opening the next segment once the active one passes the fill threshold.
+     */
+    private void maybePrepareNextSegment() throws IOException {
+        if (!config.isSegmentPreopenEnabled() || pendingSegment != null || preparingSegment || closed) return;
+        if (activeSegment.getFileSize() < config.getMaxSegmentSize() * config.getSegmentPreopenThreshold()) return;
+
+        preparingSegment = true;
+        scheduler.submit("preopen:" + dataDir.getFileName(), this::prepareNextSegment);
+    }
+
+    private void prepareNextSegment() throws IOException {
+        LogSegment prepared = null;
+        try {
+            prepared = new LogSegment(dataDir.resolve(PENDING_SEGMENT), 0, config);
+        } finally {
+            lock.lock();
+            try {
+                preparingSegment = false;
+                if (prepared != null && !closed) {
+                    pendingSegment = prepared;
+                    prepared = null;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (prepared != null) {
+                prepared.delete();
+            }
+        }
+    }
+
     /*
      * Append data to the current active segment.
      * */
-    public synchronized long append(byte[] key, byte[] value) throws IOException {
-        // Calculate total size: Current size + 4 bytes (length prefix) + data length
-        long estimatedSizeAfterAppend = activeSegment.getFileSize() + 8 + 4 + key.length + 4 + value.length;
+    public long append(byte[] key, byte[] value) throws IOException {
+        lock.lock();
+        try {
+            // Calculate total size: Current size + 4 bytes (length prefix) + data length
+            long estimatedSizeAfterAppend = activeSegment.getFileSize() + 8 + 4 + key.length + 4 + value.length;
 
-        // Rotate if this append would push us over the limit
-        if (estimatedSizeAfterAppend > config.getMaxSegmentSize()) {
-            rotate();
+            // Rotate if this append would push us over the limit
+            if (estimatedSizeAfterAppend > config.getMaxSegmentSize()) {
+                rotate();
+            }
+
+            long offset = activeSegment.append(key, value);
+            nextOffset = offset + 1;
+            maybePrepareNextSegment();
+            return offset;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends on behalf of an idempotent producer. A retry of a sequence that is still in the
+     * producer's dedup window returns the offset of the original append instead of writing again.
+     */
+    public long appendIdempotent(long producerId, int sequence, byte[] key, byte[] value) throws IOException {
+        lock.lock();
+        try {
+            long existing = producerState.lookup(producerId, sequence);
+            if (existing >= 0) {
+                Logger.logStorage("Duplicate produce from producer " + producerId + " (seq " + sequence + "), returning offset " + existing);
+                return existing;
+            }
+
+            long offset = append(key, value);
+            producerState.record(producerId, sequence, offset);
+            return offset;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends a batch read from the leader's log (readRaw) verbatim, so the records keep the
+     * leader's offsets and timestamps and the segments end up byte-for-byte the same. Segments roll
+     * over at the same records as they would for per-record appends. The batch must start exactly
+     * where this log ends: a gap or an overlap means the follower lost track of the leader, and the
+     * batch is refused before anything is written.
+     * <p>
+     * sequences are the leader's idempotent appends within the batch (producerSequences). They are
+     * recorded in this log's producer state, so retries are still deduplicated if it becomes leader.
+     */
+    public void appendAsFollower(RecordBatch batch, List<ProducerStateManager.Sequence> sequences) throws IOException {
+        batch.validate();
+        lock.lock();
+        try {
+            if (batch.baseOffset() != nextOffset) {
+                throw new IOException("Batch starts at offset " + batch.baseOffset() + " but the log ends at " + nextOffset);
+            }
+
+            ByteBuffer payload = batch.payload();
+            int chunkStart = payload.position();
+            int position = chunkStart;
+            int chunkRecords = 0;
+            long segmentSize = activeSegment.getFileSize();
+
+            for (int i = 0; i < batch.recordCount(); i++) {
+                int size = RecordBatch.recordSizeAt(payload, position);
+                // Same rule as append(): roll over before a record that would overflow the segment
+                if (segmentSize + size > config.getMaxSegmentSize()) {
+                    appendChunk(payload.slice(chunkStart, position - chunkStart), chunkRecords);
+                    rotate();
+                    segmentSize = activeSegment.getFileSize();
+                    chunkStart = position;
+                    chunkRecords = 0;
+                }
+                segmentSize += size;
+                position += size;
+                chunkRecords++;
+            }
+            appendChunk(payload.slice(chunkStart, position - chunkStart), chunkRecords);
+
+            for (ProducerStateManager.Sequence sequence : sequences) {
+                if (sequence.offset() >= batch.baseOffset() && sequence.offset() < batch.nextOffset()) {
+                    producerState.record(sequence.producerId(), sequence.sequence(), sequence.offset());
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void appendAsFollower(RecordBatch batch) throws IOException {
+        appendAsFollower(batch, List.of());
+    }
+
+    /**
+     * The idempotent appends among the records in [fromOffset, toOffset) that are still in their
+     * producer's dedup window, for a follower to replicate along with the records.
+     */
+    public List<ProducerStateManager.Sequence> producerSequences(long fromOffset, long toOffset) {
+        lock.lock();
+        try {
+            return producerState.sequencesBetween(fromOffset, toOffset);
+        } finally {
+            lock.unlock();
         }
+    }
 
-        long offset = activeSegment.append(key, value);
-        nextOffset = offset + 1;
-        return offset;
+    private void appendChunk(ByteBuffer records, int recordCount) throws IOException {
+        if (recordCount == 0) return;
+        activeSegment.appendRaw(records, recordCount);
+        nextOffset += recordCount;
+        maybePrepareNextSegment();
     }
 
-    /*Rotates logs*/
+    /*
+     * Rotates logs. With a pre-opened segment this is a rename and a pointer swap; sealing the
+     * outgoing segment (indexes, Bloom filter) and the producer snapshot happen in the background.
+     */
     private void rotate() throws IOException {
         Logger.logStorage("Rotating log segment at offset: " + nextOffset);
-        // We can consider marking old one as read-only here
-        createNewSegment(nextOffset);
+        LogSegment outgoing = activeSegment;
+        outgoing.markSealed();
+
+        if (pendingSegment != null) {
+            LogSegment next = pendingSegment;
+            pendingSegment = null;
+            next.activate(nextOffset, segmentPath(nextOffset));
+            segments.put(nextOffset, next);
+            this.activeSegment = next;
+        } else {
+            createNewSegment(nextOffset);
+        }
+
+        completeSealInBackground(outgoing);
+    }
+
+    /*
+     * Writes the indexes and Bloom filter of a segment that markSealed() closed for appends, and
+     * snapshots the producer state. Until this has run the segment is not offloaded.
+     */
+    private void completeSealInBackground(LogSegment segment) {
+        double bloomFpp = config.isBloomFilterEnabled() ? config.getBloomFilterFpp() : 0;
+        scheduler.submit("seal:" + segment.getDataPath().getFileName(), () -> {
+            segment.completeSeal(bloomFpp);
+            if (!closed) {
+                producerState.snapshot();
+            }
+        });
     }
 
     /*
@@ -129,60 +345,202 @@ public class Log {
 
         Map.Entry<Long, LogSegment> entry = segments.floorEntry(offset);
 
-        Logger.logDebug("last offset " + entry.getValue().getLastOffset());
-
         if (entry == null) {
+            // Older than every local segment: route to the remote tier if it has it
+            LogRecord remoteRecord = (remoteTier != null) ? remoteTier.read(offset) : null;
+            if (remoteRecord != null) {
+                return remoteRecord;
+            }
             throw new IOException("Offset " + offset + " is before the start of the log.");
         }
 
         return entry.getValue().read(offset);
     }
 
-    public synchronized void cleanup() throws IOException {
-        long now = System.currentTimeMillis();
-        long retentionMs = config.getRetentionMs();
+    /**
+     * Reads records from startOffset on as they are stored, for a follower to append with
+     * appendAsFollower: at most maxRecords, and no more than maxBytes unless the first record alone
+     * is larger. The batch may span segments. It is empty if startOffset is the end of the log.
+     */
+    public RecordBatch readRaw(long startOffset, int maxRecords, int maxBytes) throws IOException {
+        List<RecordBatch> parts = new ArrayList<>();
+        long offset = startOffset;
+        int bytes = 0;
+
+        while (offset - startOffset < maxRecords) {
+            int recordsLeft = (int) (maxRecords - (offset - startOffset));
+            Map.Entry<Long, LogSegment> entry = segments.floorEntry(offset);
+
+            RecordBatch part;
+            if (entry == null) {
+                // Older than every local segment: only the remote tier has it
+                part = readRemote(offset, recordsLeft, maxBytes - bytes);
+            } else {
+                part = entry.getValue().readRaw(offset, recordsLeft, maxBytes - bytes);
+                if (part != null && part.recordCount() == 0 && parts.isEmpty()) {
+                    part = entry.getValue().readRaw(offset, 1, Integer.MAX_VALUE); // too big for maxBytes; send it alone
+                }
+            }
+            if (part == null || part.recordCount() == 0) break;
+
+            parts.add(part);
+            offset = part.nextOffset();
+            bytes += part.sizeInBytes();
+        }
+
+        if (parts.size() == 1) {
+            return parts.get(0);
+        }
+        ByteBuffer payload = ByteBuffer.allocate(bytes);
+        for (RecordBatch part : parts) {
+            payload.put(part.payload().duplicate());
+        }
+        return new RecordBatch(startOffset, (int) (offset - startOffset), payload.flip());
+    }
+
+    private RecordBatch readRemote(long startOffset, int maxRecords, int maxBytes) throws IOException {
+        if (remoteTier == null) {
+            throw new IOException("Offset " + startOffset + " is before the start of the log.");
+        }
+        List<LogRecord> records = new ArrayList<>();
+        int bytes = 0;
+        for (long offset = startOffset; records.size() < maxRecords && segments.floorEntry(offset) == null; offset++) {
+            LogRecord record = remoteTier.read(offset);
+            if (record == null) break;
+            if (!records.isEmpty() && bytes + record.sizeInBytes() > maxBytes) break;
+            records.add(record);
+            bytes += record.sizeInBytes();
+        }
+        if (records.isEmpty()) {
+            throw new IOException("Offset " + startOffset + " is before the start of the log.");
+        }
 
-        Logger.logJanitor("Scanning for expired segments...");
+        ByteBuffer payload = ByteBuffer.allocate(bytes);
+        for (LogRecord record : records) {
+            RecordBatch.writeRecord(payload, record);
+        }
+        return new RecordBatch(startOffset, records.size(), payload.flip());
+    }
 
-        var iterator = segments.entrySet().iterator();
+    /**
+     * Returns the latest record written with this key, or null if no segment holds it.
+     * Segments are searched newest to oldest, so the first hit is the current value.
+     */
+    public LogRecord lookupKey(byte[] key) throws IOException {
+        for (LogSegment segment : segments.descendingMap().values()) {
+            LogRecord record = segment.lookupKey(key);
+            if (record != null) {
+                return record;
+            }
+        }
+        return (remoteTier != null) ? remoteTier.lookupKey(key) : null;
+    }
 
-        while (iterator.hasNext()) {
-            var entry = iterator.next();
-            long baseOffset = entry.getKey();
-            LogSegment segment = entry.getValue();
+    /**
+     * Moves the oldest sealed segments to remote storage, keeping the newest few (and the active one) local.
+     * Uploads run outside the log lock so producers are never blocked on remote I/O.
+     */
+    public void offloadSealedSegments() throws IOException {
+        if (remoteTier == null || closed) return;
 
-            //skip active segment
-            if (segment == activeSegment) {
-                continue;
+        List<LogSegment> candidates;
+        lock.lock();
+        try {
+            List<LogSegment> sealed = new ArrayList<>(segments.headMap(activeSegment.getBaseOffset(), false).values());
+            int excess = sealed.size() - config.getRemoteLocalSegments();
+            if (excess <= 0) return;
+            // Oldest first, stopping at a segment whose background seal hasn't finished: its
+            // indexes and filter are not written yet, and the remote tier must stay contiguous
+            candidates = new ArrayList<>();
+            for (LogSegment segment : sealed.subList(0, excess)) {
+                if (!segment.isSealComplete()) break;
+                candidates.add(segment);
             }
+        } finally {
+            lock.unlock();
+        }
+
+        for (LogSegment segment : candidates) {
+            remoteTier.offload(segment);
 
+            lock.lock();
             try {
+                if (segments.get(segment.getBaseOffset()) != segment) {
+                    // Truncated or expired while uploading; the remote copy must not outlive it
+                    remoteTier.discard(segment.getBaseOffset());
+                    continue;
+                }
+                segments.remove(segment.getBaseOffset());
+                segment.delete();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
 
-                long lastModified = Files.getLastModifiedTime(segment.getDataPath()).toMillis();
+    public void cleanup() throws IOException {
+        lock.lock();
+        try {
+            if (closed) return;
 
-                if (now - lastModified > retentionMs) {
-                    //evicting expired segment
-                    Logger.logJanitor("Evicting expired segment: " + segment.getDataPath().getFileName());
+            long now = System.currentTimeMillis();
+            long retentionMs = config.getRetentionMs();
 
-                    //release file locks
-                    segment.close();
+            Logger.logJanitor("Scanning for expired segments...");
 
-                    //delete both files for the segment. index and data files
-                    Files.deleteIfExists(segment.getDataPath());
+            var iterator = segments.entrySet().iterator();
 
-                    Path indexPath = segment.getDataPath().resolveSibling(segment.getDataPath().getFileName().toString().replace(".data", ".index"));
+            while (iterator.hasNext()) {
+                var entry = iterator.next();
+                long baseOffset = entry.getKey();
+                LogSegment segment = entry.getValue();
+
+                //skip active segment
+                if (segment == activeSegment) {
+                    continue;
+                }
 
-                    Files.deleteIfExists(indexPath);
+                try {
+                    // Expiry is based on the newest record in the segment, not the file's mtime,
+                    // so copies, restores and replication don't reset the retention clock
+                    long maxTimestamp = expiryTimestamp(baseOffset, segment);
 
-                    iterator.remove();
+                    if (maxTimestamp >= 0 && now - maxTimestamp > retentionMs) {
+                        //evicting expired segment
+                        Logger.logJanitor("Evicting expired segment: " + segment.getDataPath().getFileName());
+
+                        //release file locks and delete the data file with its indexes
+                        segment.delete();
+
+                        iterator.remove();
+                    }
+
+                } catch (IOException e) {
+                    Logger.logError("Cleanup failed for segment " + entry.getKey() + ": " + e.getMessage());
                 }
 
+            }
 
-            } catch (IOException e) {
-                Logger.logError("Cleanup failed for segment " + entry.getKey() + ": " + e.getMessage());
+            if (remoteTier != null) {
+                remoteTier.expire(now, retentionMs);
             }
+        } finally {
+            lock.unlock();
+        }
+    }
 
+    /*
+     * The timestamp a segment expires by. An empty segment has none of its own (-1), so it goes
+     * with the next segment that holds records; -1 if there is none yet.
+     */
+    private long expiryTimestamp(long baseOffset, LogSegment segment) {
+        long maxTimestamp = segment.getMaxTimestamp();
+        Map.Entry<Long, LogSegment> next = segments.higherEntry(baseOffset);
+        while (maxTimestamp < 0 && next != null) {
+            maxTimestamp = next.getValue().getMaxTimestamp();
+            next = segments.higherEntry(next.getKey());
         }
+        return maxTimestamp;
     }
 
     /*
@@ -190,19 +548,33 @@ public class Log {
      * */
     public void close() throws IOException {
 
-        //safely shutdown manager
-        janitor.shutdown();
+        // unregister from the maintenance scheduler; a run already in flight sees the closed flag
+        cleanupTask.cancel();
+        if (offloadTask != null) {
+            offloadTask.cancel();
+        }
+        if (ownsScheduler) {
+            scheduler.shutdown();
+        }
+
+        lock.lock();
         try {
-            if (!janitor.awaitTermination(5, TimeUnit.SECONDS)) {
-                janitor.shutdownNow();
+            closed = true;
+            producerState.snapshot();
+            if (pendingSegment != null) {
+                pendingSegment.delete();
+                pendingSegment = null;
             }
-        } catch (InterruptedException e) {
-            janitor.shutdownNow();
+        } finally {
+            lock.unlock();
         }
 
         for (LogSegment segment : segments.values()) {
             segment.close();
         }
+        if (remoteTier != null) {
+            remoteTier.close();
+        }
     }
 
     /**
@@ -210,45 +582,56 @@ public class Log {
      * This may include future log segments.
      * All data at or after targetOffset is permanently deleted.
      */
-    public synchronized void truncate(long targetOffset) throws IOException {
-        if (targetOffset < 0) targetOffset = 0;
+    public void truncate(long targetOffset) throws IOException {
+        lock.lock();
+        try {
+            if (targetOffset < 0) targetOffset = 0;
 
-        Logger.logWarning("!!! TRUNCATION TRIGGERED !!! Rewinding log to offset: " + targetOffset);
+            Logger.logWarning("!!! TRUNCATION TRIGGERED !!! Rewinding log to offset: " + targetOffset);
 
-        // identify segments to delete entirely (those starting after the target)
-        var tailMap = segments.tailMap(targetOffset, true);
-        var iterator = tailMap.entrySet().iterator();
+            // A target inside a remote segment brings that segment back as a local one to cut,
+            // since remote objects are immutable
+            if (remoteTier != null) {
+                long restored = remoteTier.truncate(targetOffset, dataDir);
+                if (restored >= 0) {
+                    segments.put(restored, new LogSegment(segmentPath(restored), restored, config));
+                }
+            }
 
-        while (iterator.hasNext()) {
-            var entry = iterator.next();
-            LogSegment segment = entry.getValue();
+            producerState.truncateTo(targetOffset);
 
-            Logger.logStorage("Deleting future segment: " + segment.getDataPath().getFileName());
+            // identify segments to delete entirely (those starting after the target)
+            var tailMap = segments.tailMap(targetOffset, true);
+            var iterator = tailMap.entrySet().iterator();
 
-            segment.close();
-            Files.deleteIfExists(segment.getDataPath());
+            while (iterator.hasNext()) {
+                var entry = iterator.next();
+                LogSegment segment = entry.getValue();
 
-            // Delete companion index file
-            Path indexPath = segment.getDataPath().resolveSibling(
-                    segment.getDataPath().getFileName().toString().replace(".data", ".index"));
-            Files.deleteIfExists(indexPath);
+                Logger.logStorage("Deleting future segment: " + segment.getDataPath().getFileName());
 
-            iterator.remove();
-        }
+                // Deletes the data file along with its companion index files
+                segment.delete();
 
-        Map.Entry<Long, LogSegment> entry = segments.floorEntry(targetOffset);
+                iterator.remove();
+            }
 
-        if (entry != null) {
-            this.activeSegment = entry.getValue();
-            activeSegment.truncate(targetOffset);
-        } else {
-            // If the entire log was deleted (target 0), start fresh
-            createNewSegment(0);
-        }
+            Map.Entry<Long, LogSegment> entry = segments.floorEntry(targetOffset);
+
+            if (entry != null) {
+                this.activeSegment = entry.getValue();
+                activeSegment.truncate(targetOffset);
+            } else {
+                // If every local segment was deleted, start fresh at the target
+                createNewSegment(targetOffset);
+            }
 
-        // Update the high-water mark for the next append
-        this.nextOffset = targetOffset;
-        Logger.logStorage("Log truncated. Next offset will be: " + nextOffset);
+            // Update the high-water mark for the next append
+            this.nextOffset = targetOffset;
+            Logger.logStorage("Log truncated. Next offset will be: " + nextOffset);
+        } finally {
+            lock.unlock();
+        }
     }
 
     public long getNextOffset() {
@@ -268,6 +651,22 @@ public class Log {
         return segments.size();
     }
 
+    /**
+     * True if the next segment has already been opened and rotation will just swap it in.
+     */
+    public boolean hasPendingSegment() {
+        lock.lock();
+        try {
+            return pendingSegment != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getRemoteSegmentCount() {
+        return remoteTier == null ? 0 : remoteTier.getRemoteSegmentCount();
+    }
+
     /**
      * Calculates the total size of all log segments and indexes in bytes.
      */
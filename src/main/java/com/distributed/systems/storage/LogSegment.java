@@ -1,17 +1,27 @@
 package com.distributed.systems.storage;
 
+import com.distributed.systems.config.BrokerConfig;
 import com.distributed.systems.util.Logger;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ObjLongConsumer;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class LogSegment {
+    // Every file that makes up a segment, keyed off the data file's name. The data file comes first.
+    public static final List<String> FILE_SUFFIXES = List.of(".data", ".index", ".timeindex", ".keyindex", ".bloom");
+
     private final FileChannel channel;
     private long currentPosition;
-    private final long baseOffset; // Identity of the segment
+    private long baseOffset; // Identity of the segment; only assigned late for a pre-opened segment
 
     private final IndexManager indexManager;
     private int bytesSinceLastIndexEntry = 0;
@@ -19,7 +29,37 @@ public class LogSegment {
     private long currentOffset; // Tracks the logical message ID
     private Path dataPath;
 
+    private final TimeIndex timeIndex;
+    // Largest record timestamp in this segment; read by the janitor without holding the log lock
+    private volatile long maxTimestamp = -1;
+
+    // O_DIRECT appender with an in-process tail buffer; null in the default buffered mode
+    private final DirectIoWriter directWriter;
+
+    // Key hash -> latest offset, for LOOKUP_KEY; null when the key index is disabled
+    private final KeyIndex keyIndex;
+
+    // Filter over this segment's keys, built once it is rotated out; null means "might contain anything"
+    private volatile BloomFilter bloomFilter;
+
+    // Set when the log rotates away from this segment, cleared if a truncate reopens it for appends
+    private boolean sealed = false;
+    // Set once completeSeal has written the indexes and filter of a sealed segment
+    private volatile boolean sealComplete = false;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
     public LogSegment(Path dataPath, long baseOffset, long indexIntervalBytes) throws IOException {
+        this(dataPath, baseOffset, indexIntervalBytes, false, 0, false);
+    }
+
+    public LogSegment(Path dataPath, long baseOffset, BrokerConfig config) throws IOException {
+        this(dataPath, baseOffset, config.getIndexIntervalBytes(), config.isDirectIoEnabled(), config.getDirectIoTailBytes(),
+                config.isKeyIndexEnabled());
+    }
+
+    private LogSegment(Path dataPath, long baseOffset, long indexIntervalBytes, boolean directIo, int tailBufferBytes,
+                       boolean keyIndexEnabled) throws IOException {
 
         this.baseOffset = baseOffset;
         this.dataPath = dataPath;
@@ -33,10 +73,17 @@ public class LogSegment {
                         dataPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
 
         // Initialize the index file
-        String indexFileName = dataPath.getFileName().toString().replace(".data", ".index");
-        Path indexPath = dataPath.getParent().resolve(indexFileName);
-
-        this.indexManager = new IndexManager(indexPath);
+        this.indexManager = new IndexManager(companionPath(dataPath, ".index"));
+        this.timeIndex = new TimeIndex(companionPath(dataPath, ".timeindex"));
+        this.bloomFilter = BloomFilter.readFrom(companionPath(dataPath, ".bloom"));
+
+        if (directIo) {
+            // A crash between a padded direct write and its trim leaves zero blocks at the tail
+            trimDirectIoPadding();
+            this.directWriter = DirectIoWriter.open(dataPath, channel, tailBufferBytes);
+        } else {
+            this.directWriter = null;
+        }
 
         if (!indexManager.isEmpty()) {
             this.currentOffset = indexManager.getLastOffset() + 1;
@@ -52,6 +99,146 @@ public class LogSegment {
         // Ensure we append to the end if the file exists.
         this.currentPosition = channel.size();
         this.channel.position(this.currentPosition);
+
+        recoverMaxTimestamp();
+
+        if (keyIndexEnabled) {
+            this.keyIndex = new KeyIndex(companionPath(dataPath, ".keyindex"));
+            if (!keyIndex.load(currentOffset - 1)) {
+                rebuildKeyIndex();
+            }
+        } else {
+            this.keyIndex = null;
+        }
+    }
+
+    /*
+     * Re-indexes every key in the segment (missing or stale .keyindex, or after a truncate).
+     */
+    private void rebuildKeyIndex() throws IOException {
+        keyIndex.clear();
+        if (currentOffset > baseOffset) {
+            scanKeys(keyIndex::put);
+            Logger.logBootstrap("Segment " + baseOffset + " rebuilt key index via scan: " + keyIndex.size() + " key(s)");
+        }
+    }
+
+    /*
+     * Visits the key of every record in the segment, oldest first.
+     */
+    private void scanKeys(ObjLongConsumer<byte[]> visitor) throws IOException {
+        long tempPos = 0;
+        long tempOffset = baseOffset;
+
+        ByteBuffer headerBuf = ByteBuffer.allocate(12); // Timestamp (8) + KeyLen (4)
+        ByteBuffer valLenBuf = ByteBuffer.allocate(4);
+
+        while (tempOffset < currentOffset) {
+            headerBuf.clear();
+            if (readAt(headerBuf, tempPos) < 12) break;
+            headerBuf.flip();
+            headerBuf.getLong(); // skip timestamp
+            int keyLen = headerBuf.getInt();
+
+            ByteBuffer keyBuf = ByteBuffer.allocate(keyLen);
+            if (readAt(keyBuf, tempPos + 12) < keyLen) break;
+
+            valLenBuf.clear();
+            if (readAt(valLenBuf, tempPos + 12 + keyLen) < 4) break;
+            valLenBuf.flip();
+            int valLen = valLenBuf.getInt();
+
+            visitor.accept(keyBuf.array(), tempOffset);
+            tempPos += 12 + keyLen + 4 + valLen;
+            tempOffset++;
+        }
+    }
+
+    /*
+     * Rebuilds maxTimestamp from the time index, only scanning the records written after its last entry
+     * (e.g. after a crash, or for segments written before the time index existed).
+     */
+    private void recoverMaxTimestamp() throws IOException {
+        long coveredOffset = timeIndex.getLastOffset();
+        long recovered = timeIndex.getLastTimestamp();
+
+        if (coveredOffset < currentOffset - 1) {
+            long scanFromOffset = Math.max(coveredOffset + 1, baseOffset);
+            IndexEntry entry = indexManager.lookup(scanFromOffset, baseOffset);
+            recovered = Math.max(recovered, scanMaxTimestamp(entry.physicalPosition()));
+            Logger.logBootstrap("Segment " + baseOffset + " recovered max timestamp via scan: " + recovered);
+        }
+
+        this.maxTimestamp = recovered;
+    }
+
+    private long scanMaxTimestamp(long fromPosition) throws IOException {
+        long tempPos = fromPosition;
+        long fileSize = channel.size();
+        long maxSeen = -1;
+
+        ByteBuffer headerBuf = ByteBuffer.allocate(12); // Timestamp (8) + KeyLen (4)
+        ByteBuffer valLenBuf = ByteBuffer.allocate(4);
+
+        while (tempPos + 12 <= fileSize) {
+            headerBuf.clear();
+            if (channel.read(headerBuf, tempPos) < 12) break;
+            headerBuf.flip();
+            long timestamp = headerBuf.getLong();
+            int keyLen = headerBuf.getInt();
+
+            long valLenPos = tempPos + 12 + keyLen;
+            if (valLenPos + 4 > fileSize) break;
+
+            valLenBuf.clear();
+            if (channel.read(valLenBuf, valLenPos) < 4) break;
+            valLenBuf.flip();
+            int valLen = valLenBuf.getInt();
+
+            if (valLenPos + 4 + valLen > fileSize) break; // Partial message
+
+            maxSeen = Math.max(maxSeen, timestamp);
+            tempPos = valLenPos + 4 + valLen;
+        }
+        return maxSeen;
+    }
+
+    /*
+     * Cuts the file at the first all-zero header after the last index entry. A real record
+     * always carries a non-zero timestamp, so a zero one can only be direct I/O padding.
+     */
+    private void trimDirectIoPadding() throws IOException {
+        long tempPos = indexManager.lookup(Long.MAX_VALUE, baseOffset).physicalPosition();
+        long fileSize = channel.size();
+
+        ByteBuffer headerBuf = ByteBuffer.allocate(12); // Timestamp (8) + KeyLen (4)
+        ByteBuffer valLenBuf = ByteBuffer.allocate(4);
+
+        while (tempPos + 12 <= fileSize) {
+            headerBuf.clear();
+            if (channel.read(headerBuf, tempPos) < 12) break;
+            headerBuf.flip();
+            if (headerBuf.getLong() == 0) break;
+            int keyLen = headerBuf.getInt();
+
+            long valLenPos = tempPos + 12 + keyLen;
+            if (valLenPos + 4 > fileSize) break;
+
+            valLenBuf.clear();
+            if (channel.read(valLenBuf, valLenPos) < 4) break;
+            valLenBuf.flip();
+            int valLen = valLenBuf.getInt();
+
+            if (valLenPos + 4 + valLen > fileSize) break; // Partial message
+
+            tempPos = valLenPos + 4 + valLen;
+        }
+
+        if (tempPos < fileSize) {
+            Logger.logWarning("Segment " + baseOffset + " trimming " + (fileSize - tempPos) + " bytes of torn/padded tail");
+            channel.truncate(tempPos);
+            channel.force(true);
+        }
     }
 
     private long recoverOffsetFromDataFile() throws IOException {
@@ -110,6 +297,7 @@ public class LogSegment {
         // Check if we need to add sparse index entry before writing
         if (bytesSinceLastIndexEntry >= indexIntervalBytes) {
             indexManager.addEntry(currentOffset, currentPosition);
+            timeIndex.maybeAppend(maxTimestamp, currentOffset - 1);
             bytesSinceLastIndexEntry = 0;
         }
 
@@ -123,21 +311,91 @@ public class LogSegment {
 
         // Write to channel using current position in retry manner
         int totalBytesWritten = 0;
-        while (buffer.hasRemaining()) {
-            totalBytesWritten += channel.write(buffer, currentPosition + totalBytesWritten);
+        if (directWriter != null) {
+            totalBytesWritten = directWriter.write(buffer, currentPosition);
+        } else {
+            while (buffer.hasRemaining()) {
+                totalBytesWritten += channel.write(buffer, currentPosition + totalBytesWritten);
+            }
         }
 
 
+        if (keyIndex != null) {
+            keyIndex.put(key, currentOffset);
+        }
+
         this.currentPosition += totalBytesWritten;
         this.bytesSinceLastIndexEntry += totalBytesWritten;
+        if (timestamp > maxTimestamp) {
+            this.maxTimestamp = timestamp;
+        }
 
         // Durability; Flush to physical hardware.
-        channel.force(true);
+        flush();
 
         // Return the logical offset (0, 1, 2...) instead of the byte position
         return currentOffset++;
     }
 
+    /**
+     * Appends records exactly as another log stored them (see readRaw), keeping their timestamps.
+     * The batch must already be validated to hold recordCount whole records. It goes to disk in one
+     * write and one force, and the indexes get the same entries per-record appends would have made.
+     * Returns the offset of the first record.
+     */
+    public long appendRaw(ByteBuffer records, int recordCount) throws IOException {
+        ByteBuffer batch = records.slice();
+        long firstOffset = currentOffset;
+
+        // Walk the record headers to keep the indexes in step; the bytes themselves are not copied
+        int position = 0;
+        for (int i = 0; i < recordCount; i++) {
+            long offset = firstOffset + i;
+            if (bytesSinceLastIndexEntry >= indexIntervalBytes) {
+                indexManager.addEntry(offset, currentPosition + position);
+                timeIndex.maybeAppend(maxTimestamp, offset - 1);
+                bytesSinceLastIndexEntry = 0;
+            }
+
+            int size = RecordBatch.recordSizeAt(batch, position);
+            long timestamp = batch.getLong(position);
+            if (keyIndex != null) {
+                byte[] key = new byte[batch.getInt(position + 8)];
+                batch.get(position + 12, key);
+                keyIndex.put(key, offset);
+            }
+            if (timestamp > maxTimestamp) {
+                this.maxTimestamp = timestamp;
+            }
+            this.bytesSinceLastIndexEntry += size;
+            position += size;
+        }
+
+        batch.limit(position);
+        int totalBytesWritten = 0;
+        if (directWriter != null) {
+            totalBytesWritten = directWriter.write(batch, currentPosition);
+        } else {
+            while (batch.hasRemaining()) {
+                totalBytesWritten += channel.write(batch, currentPosition + totalBytesWritten);
+            }
+        }
+        this.currentPosition += totalBytesWritten;
+
+        flush();
+
+        currentOffset += recordCount;
+        return firstOffset;
+    }
+
+    /*
+     * Direct writes have already bypassed the page cache, so they only need the data sync
+     * (file length and device cache), not a full metadata flush.
+     */
+    private void flush() throws IOException {
+        channel.force(directWriter == null);
+    }
+
     public LogRecord read(long targetOffset) throws IOException {
         if (targetOffset >= currentOffset) {
             return null;
@@ -147,62 +405,153 @@ public class LogSegment {
             throw new IOException("Offset " + targetOffset + " is before this segment's base offset " + baseOffset);
         }
 
+        return readRecordAt(positionOf(targetOffset), targetOffset);
+    }
+
+    /**
+     * Reads whole records starting at targetOffset as they are stored on disk: at most maxRecords,
+     * and no more than maxBytes in total (so possibly none, if the first record is larger). Returns
+     * null if targetOffset has not been written to this segment.
+     */
+    public RecordBatch readRaw(long targetOffset, int maxRecords, int maxBytes) throws IOException {
+        if (targetOffset >= currentOffset) {
+            return null;
+        }
+        if (targetOffset < baseOffset) {
+            throw new IOException("Offset " + targetOffset + " is before this segment's base offset " + baseOffset);
+        }
+
+        long start = positionOf(targetOffset);
+        long end = start;
+        int count = 0;
+        while (count < maxRecords && targetOffset + count < currentOffset) {
+            int size = recordSizeAt(end);
+            if (end + size - start > maxBytes) break;
+            end += size;
+            count++;
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate((int) (end - start));
+        while (payload.hasRemaining()) {
+            if (readAt(payload, start + payload.position()) < 0) {
+                throw new IOException("Unexpected EOF at pos " + (start + payload.position()));
+            }
+        }
+        return new RecordBatch(targetOffset, count, payload.flip());
+    }
+
+    /*
+     * Physical position of a record in this segment: the nearest sparse index entry, then a scan
+     * over the record headers from there.
+     */
+    private long positionOf(long targetOffset) throws IOException {
         IndexEntry entry = indexManager.lookup(targetOffset, baseOffset);
         long logicalOffset = entry.logicalOffset();
         long physicalPos = entry.physicalPosition();
 
+        while (logicalOffset < targetOffset) {
+            // Advance to next record
+            physicalPos += recordSizeAt(physicalPos);
+            logicalOffset++;
+        }
+        return physicalPos;
+    }
+
+    private int recordSizeAt(long physicalPos) throws IOException {
         ByteBuffer headerBuf = ByteBuffer.allocate(12);
+        // Read header at current physical position
+        if (readAt(headerBuf, physicalPos) < 12) {
+            throw new IOException("Unexpected EOF at pos " + physicalPos);
+        }
+        headerBuf.flip();
+        headerBuf.getLong(); // skip timestamp
+        int keyLen = headerBuf.getInt();
+
+        // Find value length
         ByteBuffer valLenBuf = ByteBuffer.allocate(4);
+        if (readAt(valLenBuf, physicalPos + 12 + keyLen) < 4) {
+            throw new IOException("Unexpected EOF at valLen pos " + (physicalPos + 12 + keyLen));
+        }
+        valLenBuf.flip();
+        return 12 + keyLen + 4 + valLenBuf.getInt();
+    }
 
-        while (logicalOffset < targetOffset) {
-            headerBuf.clear();
-            // Read header at current physical position
-            if (channel.read(headerBuf, physicalPos) < 12) {
-                throw new IOException("Unexpected EOF at pos " + physicalPos + " while scanning for offset " + targetOffset);
-            }
+    /**
+     * Returns the newest record in this segment with the given key, or null if the segment doesn't hold it.
+     * Uses the key index when enabled; a hash collision (or no index) falls back to a scan.
+     */
+    public LogRecord lookupKey(byte[] key) throws IOException {
+        if (!mightContainKey(key)) return null;
 
-            headerBuf.flip();
-            headerBuf.getLong(); // skip timestamp
-            int keyLen = headerBuf.getInt();
+        if (keyIndex != null) {
+            long offset = keyIndex.get(key);
+            if (offset < 0) return null;
 
-            // Find value length
-            valLenBuf.clear();
-            if (channel.read(valLenBuf, physicalPos + 12 + keyLen) < 4) {
-                throw new IOException("Unexpected EOF at valLen pos " + (physicalPos + 12 + keyLen));
+            LogRecord record = read(offset);
+            if (record != null && Arrays.equals(record.key(), key)) {
+                return record;
             }
-            valLenBuf.flip();
-            int valLen = valLenBuf.getInt();
-
-            // Advance to next record
-            physicalPos += (12 + keyLen + 4 + valLen);
-            logicalOffset++;
         }
 
-        return readRecordAt(physicalPos, targetOffset);
+        long[] latest = {-1};
+        scanKeys((candidate, offset) -> {
+            if (Arrays.equals(candidate, key)) latest[0] = offset;
+        });
+        return latest[0] < 0 ? null : read(latest[0]);
+    }
+
+    /**
+     * False only if the segment definitely has no record with this key.
+     */
+    public boolean mightContainKey(byte[] key) {
+        BloomFilter filter = bloomFilter;
+        return filter == null || filter.mightContain(key);
+    }
+
+    /**
+     * Builds a Bloom filter of every key in the segment and writes it next to the index.
+     * Called from completeSeal once the segment no longer takes appends.
+     */
+    public void buildBloomFilter(double falsePositiveRate) throws IOException {
+        BloomFilter filter = BloomFilter.create(currentOffset - baseOffset, falsePositiveRate);
+        scanKeys((key, offset) -> filter.add(key));
+        filter.writeTo(companionPath(dataPath, ".bloom"));
+        this.bloomFilter = filter;
     }
 
     private LogRecord readRecordAt(long position, long offset) throws IOException {
         ByteBuffer header = ByteBuffer.allocate(12);
-        if (channel.read(header, position) < 12) throw new IOException("Read failed at header");
+        if (readAt(header, position) < 12) throw new IOException("Read failed at header");
         header.flip();
 
         long timestamp = header.getLong();
         int keyLen = header.getInt();
 
         ByteBuffer keyBuf = ByteBuffer.allocate(keyLen);
-        if (channel.read(keyBuf, position + 12) < keyLen) throw new IOException("Read failed at key");
+        if (readAt(keyBuf, position + 12) < keyLen) throw new IOException("Read failed at key");
 
         ByteBuffer valLenBuf = ByteBuffer.allocate(4);
-        if (channel.read(valLenBuf, position + 12 + keyLen) < 4) throw new IOException("Read failed at valLen");
+        if (readAt(valLenBuf, position + 12 + keyLen) < 4) throw new IOException("Read failed at valLen");
         valLenBuf.flip();
         int valLen = valLenBuf.getInt();
 
         ByteBuffer valBuf = ByteBuffer.allocate(valLen);
-        if (channel.read(valBuf, position + 12 + keyLen + 4) < valLen) throw new IOException("Read failed at value");
+        if (readAt(valBuf, position + 12 + keyLen + 4) < valLen) throw new IOException("Read failed at value");
 
         return new LogRecord(offset, timestamp, keyBuf.array(), valBuf.array());
     }
 
+    /*
+     * Positional read that is served from the direct I/O tail buffer when the bytes are still there.
+     */
+    private int readAt(ByteBuffer dst, long position) throws IOException {
+        if (directWriter != null) {
+            int copied = directWriter.readFromTail(dst, position);
+            if (copied >= 0) return copied;
+        }
+        return channel.read(dst, position);
+    }
+
     /**
      * Scans the segment to find the physical byte position where 'targetOffset' begins.
      */
@@ -212,7 +561,7 @@ public class LogSegment {
 
         long tempPos = 0;
         long tempOffset = baseOffset;
-        long fileSize = channel.size();
+        long fileSize = currentPosition; // the file may run on into direct I/O padding
 
         ByteBuffer headerBuf = ByteBuffer.allocate(12); // TS (8) + KeyLen (4)
         ByteBuffer valLenBuf = ByteBuffer.allocate(4);
@@ -242,35 +591,204 @@ public class LogSegment {
         return tempPos;
     }
 
-    public synchronized void truncate(long targetOffset) throws IOException {
-        // find where to cut physically
-        long physicalPosition = findByteOffsetFor(targetOffset);
+    public void truncate(long targetOffset) throws IOException {
+        lock.lock();
+        try {
+            // find where to cut physically
+            long physicalPosition = findByteOffsetFor(targetOffset);
         
-        channel.truncate(physicalPosition);
-        channel.force(true);
+            channel.truncate(physicalPosition);
+            channel.force(true);
+            if (directWriter != null) {
+                directWriter.resetTo(physicalPosition);
+            }
+
+            // clear the Index
+            indexManager.truncateTo(targetOffset);
+            timeIndex.truncateTo(targetOffset);
+
+            // critical: if we don't update these, the next append will write to the old EOF
+            this.currentPosition = physicalPosition;
+            this.currentOffset = targetOffset;
+            this.bytesSinceLastIndexEntry = 0; // Reset index counter
+
+            channel.position(this.currentPosition);
+            recoverMaxTimestamp();
+            // The segment takes appends again, so its filter would start giving false negatives
+            this.sealed = false;
+            this.sealComplete = false;
+            this.bloomFilter = null;
+            Files.deleteIfExists(companionPath(dataPath, ".bloom"));
+            if (keyIndex != null) {
+                // Older occurrences of the truncated keys become the latest again
+                rebuildKeyIndex();
+            }
+
+            Logger.logStorage("Segment " + baseOffset + " physically truncated to " + physicalPosition + " bytes. Next offset: " + currentOffset);
+        } finally {
+            lock.unlock();
+        }
+    }
 
-        // clear the Index
-        indexManager.truncateTo(targetOffset);
 
-        // critical: if we don't update these, the next append will write to the old EOF
-        this.currentPosition = physicalPosition;
-        this.currentOffset = targetOffset;
-        this.bytesSinceLastIndexEntry = 0; // Reset index counter
+    /**
+     * Turns an empty, pre-opened segment into the segment starting at baseOffset by renaming its
+     * files. The channels stay open, so rotation doesn't pay for opening them.
+     */
+    public void activate(long baseOffset, Path newDataPath) throws IOException {
+        lock.lock();
+        try {
+            if (currentPosition != 0 || currentOffset != this.baseOffset) {
+                throw new IOException("Only an empty segment can be activated, " + dataPath.getFileName() + " holds data");
+            }
 
-        channel.position(this.currentPosition);
+            Files.move(dataPath, newDataPath, StandardCopyOption.ATOMIC_MOVE);
+            indexManager.moveTo(companionPath(newDataPath, ".index"));
+            timeIndex.moveTo(companionPath(newDataPath, ".timeindex"));
+            if (keyIndex != null) {
+                keyIndex.moveTo(companionPath(newDataPath, ".keyindex"));
+            }
 
-        Logger.logStorage("Segment " + baseOffset + " physically truncated to " + physicalPosition + " bytes. Next offset: " + currentOffset);
+            this.dataPath = newDataPath;
+            this.baseOffset = baseOffset;
+            this.currentOffset = baseOffset;
+            Logger.logStorage("Activated pre-opened segment as " + newDataPath.getFileName());
+        } finally {
+            lock.unlock();
+        }
     }
 
+    /**
+     * Marks the segment read-only. Called by Log.rotate; the expensive part happens later in completeSeal.
+     */
+    public void markSealed() throws IOException {
+        lock.lock();
+        try {
+            if (directWriter != null) {
+                // No more appends: the direct I/O padding can go before readers or offload see the file
+                directWriter.trim(currentPosition);
+            }
+            this.sealed = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the time/key indexes and, if bloomFpp > 0, the Bloom filter of a sealed segment.
+     * Runs in the background; does nothing if the segment was truncated back open or closed meanwhile.
+     * A filter already loaded from disk is kept.
+     */
+    public void completeSeal(double bloomFpp) throws IOException {
+        lock.lock();
+        try {
+            if (!sealed || !channel.isOpen()) return;
+
+            seal();
+            if (bloomFpp > 0 && bloomFilter == null) {
+                buildBloomFilter(bloomFpp);
+            }
+            this.sealComplete = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Persists the final max timestamp (and key index) so neither has to be rebuilt by a scan.
+     * Called once the segment stops being the active one.
+     */
+    public void seal() throws IOException {
+        if (currentOffset > baseOffset) {
+            timeIndex.maybeAppend(maxTimestamp, currentOffset - 1);
+        }
+        if (keyIndex != null) {
+            keyIndex.persist(currentOffset - 1);
+        }
+    }
 
     public void close() throws IOException {
+        lock.lock();
+        try {
+            if (channel.isOpen()) {
+                seal();
+                if (directWriter != null) {
+                    directWriter.trim(currentPosition);
+                }
+            }
+            closeFiles();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void closeFiles() throws IOException {
         Logger.logStorage("Closing file channel: " + dataPath.getFileName());
+        if (directWriter != null) {
+            directWriter.close();
+        }
         channel.close();
         indexManager.close();
+        timeIndex.close();
+    }
+
+    /**
+     * Closes the segment and removes the data file along with its companion index files.
+     */
+    public void delete() throws IOException {
+        lock.lock();
+        try {
+            closeFiles();
+            for (Path path : getFilePaths()) {
+                Files.deleteIfExists(path);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Resolves a companion file of a segment, e.g. 0000000042.data -> 0000000042.index
+     */
+    public static Path companionPath(Path dataPath, String suffix) {
+        return dataPath.resolveSibling(dataPath.getFileName().toString().replace(".data", suffix));
+    }
+
+    /**
+     * Every file that belongs to this segment, data file first.
+     */
+    public List<Path> getFilePaths() {
+        return FILE_SUFFIXES.stream().map(suffix -> companionPath(dataPath, suffix)).toList();
     }
 
-    public long getFileSize() throws IOException {
-        return channel.size();
+    /**
+     * The segment's key filter, or null if it has not been built (active or legacy segment).
+     */
+    public BloomFilter getBloomFilter() {
+        return this.bloomFilter;
+    }
+
+    /**
+     * Bytes written to the data file so far. Tracked in memory, so the append path can check it
+     * on every record without a size syscall.
+     */
+    public long getFileSize() {
+        return currentPosition;
+    }
+
+    /**
+     * Whether appends go through O_DIRECT. False if it was not requested, or the file system
+     * refused it and the segment fell back to buffered writes.
+     */
+    /**
+     * Whether completeSeal has finished, so every companion file of the segment is on disk.
+     */
+    public boolean isSealComplete() {
+        return sealComplete;
+    }
+
+    public boolean isDirectIo() {
+        return directWriter != null;
     }
 
     public long getLastOffset() {
@@ -279,7 +797,18 @@ public class LogSegment {
         return currentOffset - 1;
     }
 
+    public long getBaseOffset() {
+        return this.baseOffset;
+    }
+
     public Path getDataPath() {
         return this.dataPath;
     }
+
+    /**
+     * Largest record timestamp in this segment, or -1 if it holds no records.
+     */
+    public long getMaxTimestamp() {
+        return this.maxTimestamp;
+    }
 }
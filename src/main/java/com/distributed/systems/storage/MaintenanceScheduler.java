@@ -0,0 +1,205 @@
+package com.distributed.systems.storage;
+
+import com.distributed.systems.util.Logger;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Broker-wide pool that runs periodic maintenance (retention, etc.) for every Log.
+ * A handful of worker threads serve all topics, so thread count stays flat as topics grow.
+ * <p>
+ * Fairness: the underlying queue is ordered by due time and every task is rescheduled with a
+ * fixed delay after it finishes, so a slow log goes to the back of the line instead of starving others.
+ * Throttling: task starts are spaced out to at most maxTasksPerSec across the whole broker.
+ * <p>
+ * One-shot tasks from submit() run in submission order on a worker of their own, so they never
+ * queue behind a recurring task that is waiting out the throttle.
+ */
+public class MaintenanceScheduler {
+
+    @FunctionalInterface
+    public interface MaintenanceTask {
+        void run() throws IOException;
+    }
+
+    private final ScheduledThreadPoolExecutor executor;
+    private final ExecutorService oneShotExecutor;
+    private final int threadCount;
+    private final long minGapNanos; // 0 = unthrottled
+    private final AtomicLong nextStartNanos = new AtomicLong(0);
+
+    // Metrics
+    private final AtomicInteger registeredTasks = new AtomicInteger(0);
+    private final LongAdder completedRuns = new LongAdder();
+    private final LongAdder failedRuns = new LongAdder();
+    private final LongAdder totalRunNanos = new LongAdder();
+    private final LongAdder totalLagNanos = new LongAdder();
+    private final LongAdder totalThrottleNanos = new LongAdder();
+
+    public MaintenanceScheduler(int threadCount, int maxTasksPerSec) {
+        this.threadCount = Math.max(1, threadCount);
+        this.minGapNanos = maxTasksPerSec > 0 ? TimeUnit.SECONDS.toNanos(1) / maxTasksPerSec : 0;
+
+        AtomicInteger threadId = new AtomicInteger(0);
+        this.executor = new ScheduledThreadPoolExecutor(this.threadCount, runnable -> {
+            Thread thread = new Thread(runnable, "log-maintenance-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Cancelled tasks (closed logs) should not linger in the queue
+        this.executor.setRemoveOnCancelPolicy(true);
+        this.oneShotExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "log-maintenance-oneshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Registers a recurring task. The first run is jittered across one interval so that
+     * thousands of logs created at boot don't all fire on the same tick.
+     */
+    public Registration schedule(String name, MaintenanceTask task, long intervalMs) {
+        long initialDelayMs = ThreadLocalRandom.current().nextLong(Math.max(1, intervalMs));
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMs);
+
+        Runnable wrapped = new Runnable() {
+            private long dueNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(initialDelayMs);
+
+            @Override
+            public void run() {
+                totalLagNanos.add(Math.max(0, System.nanoTime() - dueNanos));
+                throttle();
+
+                long start = System.nanoTime();
+                try {
+                    task.run();
+                    completedRuns.increment();
+                } catch (Exception e) {
+                    failedRuns.increment();
+                    Logger.logError("Maintenance task " + name + " failed: " + e.getMessage());
+                } finally {
+                    long end = System.nanoTime();
+                    totalRunNanos.add(end - start);
+                    dueNanos = end + intervalNanos;
+                }
+            }
+        };
+
+        registeredTasks.incrementAndGet();
+        return new Registration(executor.scheduleWithFixedDelay(wrapped, initialDelayMs, intervalMs, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Runs a one-shot task (e.g. preparing or sealing a segment) on the one-shot worker, after the
+     * ones submitted before it. These are triggered by appends, so they skip the throttle; delaying
+     * them would only delay rotation.
+     */
+    public void submit(String name, MaintenanceTask task) {
+        if (oneShotExecutor.isShutdown()) return;
+
+        oneShotExecutor.execute(() -> {
+            long start = System.nanoTime();
+            try {
+                task.run();
+                completedRuns.increment();
+            } catch (Exception e) {
+                failedRuns.increment();
+                Logger.logError("Maintenance task " + name + " failed: " + e.getMessage());
+            } finally {
+                totalRunNanos.add(System.nanoTime() - start);
+            }
+        });
+    }
+
+    /*
+     * Reserves the next start slot and sleeps until it arrives.
+     */
+    private void throttle() {
+        if (minGapNanos == 0) return;
+
+        long now = System.nanoTime();
+        long slot = nextStartNanos.accumulateAndGet(now, (prev, n) -> Math.max(prev, n) + minGapNanos) - minGapNanos;
+        long waitNanos = slot - now;
+
+        if (waitNanos > 0) {
+            totalThrottleNanos.add(waitNanos);
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        oneShotExecutor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+            if (!oneShotExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                oneShotExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            oneShotExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getRegisteredTaskCount() {
+        return registeredTasks.get();
+    }
+
+    public long getCompletedRuns() {
+        return completedRuns.sum();
+    }
+
+    public long getFailedRuns() {
+        return failedRuns.sum();
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public String getStatsReport() {
+        long runs = completedRuns.sum() + failedRuns.sum();
+        double avgRunMs = runs == 0 ? 0 : totalRunNanos.sum() / 1_000_000.0 / runs;
+        double avgLagMs = runs == 0 ? 0 : totalLagNanos.sum() / 1_000_000.0 / runs;
+
+        return String.format("MAINT_THREADS=%d, MAINT_TASKS=%d, MAINT_RUNS=%d, MAINT_FAILURES=%d, MAINT_AVG_RUN=%.2fms, MAINT_AVG_LAG=%.2fms, MAINT_THROTTLED=%dms",
+                threadCount, registeredTasks.get(), completedRuns.sum(), failedRuns.sum(), avgRunMs, avgLagMs,
+                totalThrottleNanos.sum() / 1_000_000);
+    }
+
+    /**
+     * Handle returned by schedule(); cancelling it unregisters the task.
+     */
+    public class Registration {
+        private final ScheduledFuture<?> future;
+        private boolean cancelled = false;
+
+        private Registration(ScheduledFuture<?> future) {
+            this.future = future;
+        }
+
+        public synchronized void cancel() {
+            if (cancelled) return;
+            cancelled = true;
+            future.cancel(false);
+            registeredTasks.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.distributed.systems.storage;
+
+import java.io.IOException;
+
+/**
+ * Thrown when an idempotent produce carries a sequence number that is older than the
+ * producer's dedup window, so the broker can no longer tell whether it is a duplicate.
+ */
+public class OutOfOrderSequenceException extends IOException {
+    public OutOfOrderSequenceException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,223 @@
+package com.distributed.systems.storage;
+
+import com.distributed.systems.util.Logger;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-log dedup state for idempotent producers: for each producer id, the last sequence number
+ * seen and the offsets assigned to the most recent sequences. A retried produce whose sequence
+ * is still in the window gets its original offset back instead of being appended again.
+ * <p>
+ * The state is snapshotted next to the segments whenever the log rotates or closes. Records
+ * appended after the last snapshot are not covered if the broker crashes.
+ * <p>
+ * Segments do not store producer ids, so a follower cannot rebuild this state from the records it
+ * copies. Instead the leader sends the sequences of each replicated range along with its records
+ * (sequencesBetween) and the follower records them, so a retry is still deduplicated after the
+ * follower takes over. Only sequences still in the leader's window travel, which is all a retry
+ * can hit anyway.
+ */
+public class ProducerStateManager {
+    private static final String SNAPSHOT_FILE = "producer-state.snapshot";
+
+    private final Path snapshotPath;
+    private final int windowSize;
+
+    // Access-ordered, so the least recently active producer is evicted first
+    private final LinkedHashMap<Long, ProducerEntry> producers;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * One idempotent append: the sequence a producer sent and the offset it was stored at.
+     */
+    public record Sequence(long producerId, int sequence, long offset) {
+    }
+
+    private static class ProducerEntry {
+        int lastSequence = -1;
+        // Insertion-ordered sequence -> offset, bounded to windowSize
+        final LinkedHashMap<Integer, Long> window = new LinkedHashMap<>();
+    }
+
+    public ProducerStateManager(Path dataDir, int windowSize, int maxProducers) throws IOException {
+        this.snapshotPath = dataDir.resolve(SNAPSHOT_FILE);
+        this.windowSize = Math.max(1, windowSize);
+        this.producers = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ProducerEntry> eldest) {
+                return size() > maxProducers;
+            }
+        };
+        loadSnapshot();
+    }
+
+    /**
+     * Returns the offset already assigned to (producerId, sequence), or -1 if the sequence is new.
+     */
+    public long lookup(long producerId, int sequence) throws OutOfOrderSequenceException {
+        lock.lock();
+        try {
+            ProducerEntry entry = producers.get(producerId);
+            if (entry == null) return -1;
+
+            Long offset = entry.window.get(sequence);
+            if (offset != null) return offset;
+
+            if (sequence <= entry.lastSequence) {
+                throw new OutOfOrderSequenceException("Sequence " + sequence + " of producer " + producerId
+                        + " is older than the dedup window (last sequence " + entry.lastSequence + ")");
+            }
+            return -1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void record(long producerId, int sequence, long offset) {
+        lock.lock();
+        try {
+            ProducerEntry entry = producers.computeIfAbsent(producerId, id -> new ProducerEntry());
+            entry.window.put(sequence, offset);
+            entry.lastSequence = Math.max(entry.lastSequence, sequence);
+
+            if (entry.window.size() > windowSize) {
+                Iterator<Integer> oldest = entry.window.keySet().iterator();
+                oldest.next();
+                oldest.remove();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The known sequences whose records are in [fromOffset, toOffset), in offset order.
+     */
+    public List<Sequence> sequencesBetween(long fromOffset, long toOffset) {
+        lock.lock();
+        try {
+            List<Sequence> sequences = new ArrayList<>();
+            for (Map.Entry<Long, ProducerEntry> producer : producers.entrySet()) {
+                producer.getValue().window.forEach((sequence, offset) -> {
+                    if (offset >= fromOffset && offset < toOffset) {
+                        sequences.add(new Sequence(producer.getKey(), sequence, offset));
+                    }
+                });
+            }
+            sequences.sort(Comparator.comparingLong(Sequence::offset));
+            return sequences;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forgets every sequence whose record was at or after targetOffset, so a retry of it is appended again.
+     */
+    public void truncateTo(long targetOffset) {
+        lock.lock();
+        try {
+            Iterator<ProducerEntry> iterator = producers.values().iterator();
+            while (iterator.hasNext()) {
+                ProducerEntry entry = iterator.next();
+                entry.window.values().removeIf(offset -> offset >= targetOffset);
+
+                if (entry.window.isEmpty()) {
+                    iterator.remove();
+                } else {
+                    entry.lastSequence = entry.window.keySet().stream().max(Integer::compare).orElse(-1);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Layout: [Int ProducerCount] then per producer [Long Id][Int LastSeq][Int N] N x ([Int Seq][Long Offset])
+     */
+    public void snapshot() throws IOException {
+        lock.lock();
+        try {
+            int size = 4;
+            for (ProducerEntry entry : producers.values()) {
+                size += 16 + entry.window.size() * 12;
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            buffer.putInt(producers.size());
+            for (Map.Entry<Long, ProducerEntry> producer : producers.entrySet()) {
+                ProducerEntry entry = producer.getValue();
+                buffer.putLong(producer.getKey());
+                buffer.putInt(entry.lastSequence);
+                buffer.putInt(entry.window.size());
+                entry.window.forEach((sequence, offset) -> {
+                    buffer.putInt(sequence);
+                    buffer.putLong(offset);
+                });
+            }
+            buffer.flip();
+
+            Path temp = snapshotPath.resolveSibling(SNAPSHOT_FILE + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void loadSnapshot() throws IOException {
+        if (!Files.exists(snapshotPath)) return;
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(snapshotPath));
+        try {
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                long producerId = buffer.getLong();
+                ProducerEntry entry = new ProducerEntry();
+                entry.lastSequence = buffer.getInt();
+                int windowCount = buffer.getInt();
+                for (int j = 0; j < windowCount; j++) {
+                    entry.window.put(buffer.getInt(), buffer.getLong());
+                }
+                producers.put(producerId, entry);
+            }
+            Logger.logBootstrap("Loaded producer state for " + producers.size() + " producer(s) from " + snapshotPath.getParent().getFileName());
+        } catch (BufferUnderflowException e) {
+            // A torn snapshot only costs dedup for in-flight retries; start clean rather than fail the log
+            Logger.logWarning("Producer state snapshot " + snapshotPath + " is corrupt. Ignoring it.");
+            producers.clear();
+        }
+    }
+
+    public int getProducerCount() {
+        lock.lock();
+        try {
+            return producers.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.distributed.systems.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Consecutive records exactly as a segment stores them, [Timestamp][KeyLen][Key][ValLen][Value]
+ * each, starting at baseOffset. Offsets are implied by position, so the bytes can move from one
+ * log to another unchanged. The payload is read between its position and limit and never consumed.
+ */
+public record RecordBatch(long baseOffset, int recordCount, ByteBuffer payload) {
+
+    private static final int HEADER_SIZE = 8 + 4; // Timestamp + KeyLen
+
+    public static RecordBatch empty(long baseOffset) {
+        return new RecordBatch(baseOffset, 0, ByteBuffer.allocate(0));
+    }
+
+    /**
+     * Offset right after the last record of the batch.
+     */
+    public long nextOffset() {
+        return baseOffset + recordCount;
+    }
+
+    public int sizeInBytes() {
+        return payload.remaining();
+    }
+
+    /**
+     * Checks that the payload is exactly recordCount whole records, so a truncated or padded
+     * batch is refused before any of it is written.
+     */
+    public void validate() throws IOException {
+        int position = payload.position();
+        for (int i = 0; i < recordCount; i++) {
+            position += recordSizeAt(payload, position);
+        }
+        if (position != payload.limit()) {
+            throw new IOException("Batch at offset " + baseOffset + " has " + (payload.limit() - position)
+                    + " bytes beyond its " + recordCount + " records");
+        }
+    }
+
+    /**
+     * Decodes the records, for callers that want them rather than the bytes.
+     */
+    public List<LogRecord> records() throws IOException {
+        List<LogRecord> records = new ArrayList<>(recordCount);
+        int position = payload.position();
+        for (int i = 0; i < recordCount; i++) {
+            int size = recordSizeAt(payload, position);
+            long timestamp = payload.getLong(position);
+            byte[] key = new byte[payload.getInt(position + 8)];
+            payload.get(position + HEADER_SIZE, key);
+            byte[] value = new byte[size - HEADER_SIZE - key.length - 4];
+            payload.get(position + HEADER_SIZE + key.length + 4, value);
+            records.add(new LogRecord(baseOffset + i, timestamp, key, value));
+            position += size;
+        }
+        return records;
+    }
+
+    /**
+     * Size of the record starting at position, checked against the buffer's limit.
+     */
+    static int recordSizeAt(ByteBuffer buffer, int position) throws IOException {
+        int limit = buffer.limit();
+        if (limit - position < HEADER_SIZE) {
+            throw new IOException("Truncated record header at byte " + position);
+        }
+        int keyLen = buffer.getInt(position + 8);
+        if (keyLen < 0 || limit - position - HEADER_SIZE - 4 < keyLen) {
+            throw new IOException("Bad key length " + keyLen + " at byte " + position);
+        }
+        int valLen = buffer.getInt(position + HEADER_SIZE + keyLen);
+        if (valLen < 0 || limit - position - HEADER_SIZE - 4 - keyLen < valLen) {
+            throw new IOException("Bad value length " + valLen + " at byte " + position);
+        }
+        return HEADER_SIZE + keyLen + 4 + valLen;
+    }
+
+    /**
+     * Encodes a record the way a segment stores it.
+     */
+    static void writeRecord(ByteBuffer buffer, LogRecord record) {
+        buffer.putLong(record.timestamp());
+        buffer.putInt(record.key().length);
+        buffer.put(record.key());
+        buffer.putInt(record.value().length);
+        buffer.put(record.value());
+    }
+}
@@ -0,0 +1,444 @@
+package com.distributed.systems.storage;
+
+import com.distributed.systems.util.Logger;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The remote half of a Log. Sealed segments are uploaded here and deleted locally; the broker only
+ * keeps a small manifest (base/last offset + max timestamp per segment) on disk.
+ * Cold reads pull the whole segment into a bounded, LRU local cache and serve it from there. The
+ * download runs outside the tier lock, so one cold read doesn't hold up reads of other segments;
+ * readers of the same segment share its single download.
+ */
+public class RemoteLogTier {
+    private static final String MANIFEST_FILE = "remote-segments.manifest";
+    private static final String CACHE_DIR = "remote-cache";
+    private static final int ENTRY_SIZE = 24; // base offset, last offset, max timestamp
+
+    private final RemoteStorage remoteStorage;
+    private final String keyPrefix;
+    private final Path manifestPath;
+    private final Path cacheDir;
+    private final long indexIntervalBytes;
+
+    // Maps baseOffset -> metadata of segments that only exist remotely
+    private final ConcurrentSkipListMap<Long, RemoteSegmentMetadata> remoteSegments = new ConcurrentSkipListMap<>();
+
+    // Key filters of remote segments (null value = segment has none), so lookups skip them without a download
+    private final Map<Long, BloomFilter> bloomFilters = new HashMap<>();
+
+    // Access-ordered LRU of segments downloaded for cold reads
+    private final LinkedHashMap<Long, LogSegment> cache;
+
+    // Downloads in progress for the cache, keyed by base offset
+    private final Map<Long, CompletableFuture<LogSegment>> downloads = new HashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public RemoteLogTier(Path dataDir, RemoteStorage remoteStorage, int maxCachedSegments, long indexIntervalBytes) throws IOException {
+        this.remoteStorage = remoteStorage;
+        this.keyPrefix = dataDir.getFileName().toString() + "/";
+        this.manifestPath = dataDir.resolve(MANIFEST_FILE);
+        this.cacheDir = dataDir.resolve(CACHE_DIR);
+        this.indexIntervalBytes = indexIntervalBytes;
+
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, LogSegment> eldest) {
+                if (size() <= maxCachedSegments) return false;
+                evict(eldest.getValue());
+                return true;
+            }
+        };
+
+        // Whatever was cached before a restart is not tracked anymore
+        deleteDirectory(cacheDir);
+        loadManifest();
+    }
+
+    private void loadManifest() throws IOException {
+        if (!Files.exists(manifestPath)) return;
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(manifestPath));
+        while (buffer.remaining() >= ENTRY_SIZE) {
+            RemoteSegmentMetadata metadata = new RemoteSegmentMetadata(buffer.getLong(), buffer.getLong(), buffer.getLong());
+            remoteSegments.put(metadata.baseOffset(), metadata);
+        }
+        Logger.logBootstrap("Loaded " + remoteSegments.size() + " remote segment(s) for " + keyPrefix);
+    }
+
+    /*
+     * Rewrites the manifest atomically; it is tiny (24 bytes per remote segment).
+     */
+    private void writeManifest() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(remoteSegments.size() * ENTRY_SIZE);
+        for (RemoteSegmentMetadata metadata : remoteSegments.values()) {
+            buffer.putLong(metadata.baseOffset());
+            buffer.putLong(metadata.lastOffset());
+            buffer.putLong(metadata.maxTimestamp());
+        }
+        buffer.flip();
+
+        Path temp = manifestPath.resolveSibling(MANIFEST_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, manifestPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Uploads a sealed segment and its indexes, then records it in the manifest.
+     * The caller is responsible for deleting the local copy afterwards.
+     */
+    public void offload(LogSegment segment) throws IOException {
+        for (Path path : segment.getFilePaths()) {
+            if (Files.exists(path)) {
+                remoteStorage.upload(keyPrefix + path.getFileName(), path);
+            }
+        }
+
+        lock.lock();
+        try {
+            remoteSegments.put(segment.getBaseOffset(), new RemoteSegmentMetadata(
+                    segment.getBaseOffset(), segment.getLastOffset(), segment.getMaxTimestamp()));
+            bloomFilters.put(segment.getBaseOffset(), segment.getBloomFilter());
+            writeManifest();
+        } finally {
+            lock.unlock();
+        }
+        Logger.logStorage("Offloaded segment " + segment.getDataPath().getFileName() + " to remote storage");
+    }
+
+    /**
+     * Reads an offset that lives in the remote tier. Returns null if no remote segment holds it.
+     */
+    public LogRecord read(long offset) throws IOException {
+        Map.Entry<Long, RemoteSegmentMetadata> entry = remoteSegments.floorEntry(offset);
+        if (entry == null || offset > entry.getValue().lastOffset()) {
+            return null;
+        }
+
+        return readCached(entry.getValue(), segment -> segment.read(offset));
+    }
+
+    /**
+     * Searches remote segments newest to oldest for a key. Every remote segment that has to be
+     * searched is pulled into the cache, so this is only cheap for keys written recently.
+     */
+    public LogRecord lookupKey(byte[] key) throws IOException {
+        for (RemoteSegmentMetadata metadata : remoteSegments.descendingMap().values()) {
+            BloomFilter filter;
+            lock.lock();
+            try {
+                filter = bloomFilter(metadata);
+            } finally {
+                lock.unlock();
+            }
+            if (filter != null && !filter.mightContain(key)) continue;
+
+            LogRecord record = readCached(metadata, segment -> segment.lookupKey(key));
+            if (record != null) {
+                return record;
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Loads a remote segment's filter on first use; only the small .bloom object is downloaded.
+     */
+    private BloomFilter bloomFilter(RemoteSegmentMetadata metadata) throws IOException {
+        if (bloomFilters.containsKey(metadata.baseOffset())) {
+            return bloomFilters.get(metadata.baseOffset());
+        }
+
+        String name = String.format("%010d.bloom", metadata.baseOffset());
+        BloomFilter filter = null;
+        if (remoteStorage.exists(keyPrefix + name)) {
+            Path localPath = cacheDir.resolve(name + ".remote");
+            remoteStorage.download(keyPrefix + name, localPath);
+            filter = BloomFilter.readFrom(localPath);
+            Files.deleteIfExists(localPath);
+        }
+        bloomFilters.put(metadata.baseOffset(), filter);
+        return filter;
+    }
+
+    private interface SegmentReader<T> {
+        T read(LogSegment segment) throws IOException;
+    }
+
+    /*
+     * Runs reader against the cached copy of a remote segment, downloading it first on a miss.
+     * The first reader to miss downloads it without holding the lock; others wait for that
+     * download, then retry. Returns null if the segment was expired or truncated meanwhile.
+     */
+    private <T> T readCached(RemoteSegmentMetadata metadata, SegmentReader<T> reader) throws IOException {
+        long baseOffset = metadata.baseOffset();
+        while (true) {
+            CompletableFuture<LogSegment> download;
+            boolean downloading = false;
+            lock.lock();
+            try {
+                if (remoteSegments.get(baseOffset) != metadata) return null;
+
+                LogSegment segment = cache.get(baseOffset);
+                if (segment != null) {
+                    return reader.read(segment);
+                }
+                download = downloads.get(baseOffset);
+                if (download == null) {
+                    download = new CompletableFuture<>();
+                    downloads.put(baseOffset, download);
+                    downloading = true;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (downloading) {
+                download(metadata, download);
+            } else {
+                await(download);
+            }
+        }
+    }
+
+    private void download(RemoteSegmentMetadata metadata, CompletableFuture<LogSegment> download) throws IOException {
+        Logger.logStorage("Cache miss: fetching remote segment " + metadata.baseOffset() + " for " + keyPrefix);
+
+        LogSegment segment;
+        try {
+            Path dataPath = cacheDir.resolve(String.format("%010d.data", metadata.baseOffset()));
+            fetch(metadata, dataPath);
+            segment = new LogSegment(dataPath, metadata.baseOffset(), indexIntervalBytes);
+        } catch (IOException | RuntimeException e) {
+            lock.lock();
+            try {
+                downloads.remove(metadata.baseOffset());
+            } finally {
+                lock.unlock();
+            }
+            download.completeExceptionally(e);
+            throw e;
+        }
+
+        lock.lock();
+        try {
+            downloads.remove(metadata.baseOffset());
+            if (remoteSegments.get(metadata.baseOffset()) == metadata) {
+                cache.put(metadata.baseOffset(), segment);
+            } else {
+                // Expired or truncated while downloading
+                evict(segment);
+            }
+        } finally {
+            lock.unlock();
+        }
+        download.complete(segment);
+    }
+
+    private static void await(CompletableFuture<LogSegment> download) throws IOException {
+        try {
+            download.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a remote segment download");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    /*
+     * Downloads a remote segment's data file and indexes to dataPath and its companions.
+     */
+    private void fetch(RemoteSegmentMetadata metadata, Path dataPath) throws IOException {
+        for (String suffix : LogSegment.FILE_SUFFIXES) {
+            Path localPath = LogSegment.companionPath(dataPath, suffix);
+            String key = keyPrefix + localPath.getFileName();
+            if (remoteStorage.exists(key)) {
+                remoteStorage.download(key, localPath);
+            }
+        }
+
+        if (!Files.exists(dataPath)) {
+            throw new IOException("Remote segment " + metadata.baseOffset() + " is missing its data file");
+        }
+    }
+
+    private void evict(LogSegment segment) {
+        try {
+            segment.delete();
+        } catch (IOException e) {
+            Logger.logError("Failed to evict cached segment " + segment.getDataPath().getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes remote segments whose newest record is older than the retention window.
+     */
+    public void expire(long now, long retentionMs) throws IOException {
+        lock.lock();
+        try {
+            List<RemoteSegmentMetadata> expired = new ArrayList<>();
+            long maxTimestamp = -1;
+            // Newest first, so an empty segment (-1) goes with the next segment that holds records
+            for (RemoteSegmentMetadata metadata : remoteSegments.descendingMap().values()) {
+                if (metadata.maxTimestamp() >= 0) {
+                    maxTimestamp = metadata.maxTimestamp();
+                }
+                if (maxTimestamp >= 0 && now - maxTimestamp > retentionMs) {
+                    expired.add(metadata);
+                }
+            }
+            if (expired.isEmpty()) return;
+
+            for (RemoteSegmentMetadata metadata : expired) {
+                Logger.logJanitor("Evicting expired remote segment: " + metadata.baseOffset());
+                removeSegment(metadata);
+            }
+            writeManifest();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops remote segments at or after targetOffset. Remote objects are immutable, so a segment
+     * that targetOffset falls inside is first downloaded into logDir as a regular local segment,
+     * for the caller to open and cut, and then dropped remotely too.
+     * Returns the base offset of that restored segment, or -1 if none was needed.
+     */
+    public long truncate(long targetOffset, Path logDir) throws IOException {
+        lock.lock();
+        try {
+            long restored = -1;
+            Map.Entry<Long, RemoteSegmentMetadata> floor = remoteSegments.floorEntry(targetOffset);
+            if (floor != null && floor.getKey() < targetOffset && targetOffset <= floor.getValue().lastOffset()) {
+                restored = floor.getKey();
+                fetch(floor.getValue(), logDir.resolve(String.format("%010d.data", restored)));
+                Logger.logStorage("Restored remote segment " + restored + " locally to truncate inside it");
+            }
+
+            long dropFrom = (restored >= 0) ? restored : targetOffset;
+            Iterator<RemoteSegmentMetadata> iterator = remoteSegments.tailMap(dropFrom, true).values().iterator();
+            boolean changed = false;
+            while (iterator.hasNext()) {
+                RemoteSegmentMetadata metadata = iterator.next();
+                deleteRemoteFiles(metadata);
+                dropFromCache(metadata.baseOffset());
+                bloomFilters.remove(metadata.baseOffset());
+                iterator.remove();
+                changed = true;
+            }
+            if (changed) writeManifest();
+            return restored;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forgets a segment that was uploaded but removed locally (truncated) before the hand-off completed.
+     */
+    public void discard(long baseOffset) throws IOException {
+        lock.lock();
+        try {
+            RemoteSegmentMetadata metadata = remoteSegments.get(baseOffset);
+            if (metadata == null) return;
+            removeSegment(metadata);
+            writeManifest();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void removeSegment(RemoteSegmentMetadata metadata) throws IOException {
+        deleteRemoteFiles(metadata);
+        dropFromCache(metadata.baseOffset());
+        bloomFilters.remove(metadata.baseOffset());
+        remoteSegments.remove(metadata.baseOffset());
+    }
+
+    private void deleteRemoteFiles(RemoteSegmentMetadata metadata) throws IOException {
+        String base = String.format("%010d", metadata.baseOffset());
+        for (String suffix : LogSegment.FILE_SUFFIXES) {
+            remoteStorage.delete(keyPrefix + base + suffix);
+        }
+    }
+
+    private void dropFromCache(long baseOffset) {
+        LogSegment cached = cache.remove(baseOffset);
+        if (cached != null) evict(cached);
+    }
+
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            for (LogSegment segment : cache.values()) {
+                segment.close();
+            }
+            cache.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        return remoteSegments.isEmpty();
+    }
+
+    /**
+     * Offset right after the newest remotely stored record, or -1 if nothing is remote.
+     */
+    public long getNextOffset() {
+        Map.Entry<Long, RemoteSegmentMetadata> last = remoteSegments.lastEntry();
+        return last == null ? -1 : last.getValue().lastOffset() + 1;
+    }
+
+    public int getRemoteSegmentCount() {
+        return remoteSegments.size();
+    }
+
+    public int getCachedSegmentCount() {
+        lock.lock();
+        try {
+            return cache.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void deleteDirectory(Path dir) throws IOException {
+        if (!Files.exists(dir)) return;
+        try (var stream = Files.walk(dir)) {
+            for (Path path : stream.sorted(java.util.Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
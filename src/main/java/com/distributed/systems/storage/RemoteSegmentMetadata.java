@@ -0,0 +1,7 @@
+package com.distributed.systems.storage;
+
+/**
+ * What the local broker remembers about a segment that now only lives in remote storage.
+ */
+public record RemoteSegmentMetadata(long baseOffset, long lastOffset, long maxTimestamp) {
+}
@@ -0,0 +1,32 @@
+package com.distributed.systems.storage;
+
+import com.distributed.systems.config.BrokerConfig;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Minimal object-store contract used to offload sealed segments.
+ * Keys are "/"-separated names (e.g. "orders/0000000120.data"); implementations decide how to map them.
+ */
+public interface RemoteStorage {
+
+    void upload(String key, Path source) throws IOException;
+
+    void download(String key, Path target) throws IOException;
+
+    void delete(String key) throws IOException;
+
+    boolean exists(String key) throws IOException;
+
+    /**
+     * Builds the configured remote store, or returns null when tiering is disabled.
+     */
+    static RemoteStorage fromConfig(BrokerConfig config) throws IOException {
+        if (!config.isRemoteStorageEnabled()) {
+            return null;
+        }
+        return new FileSystemRemoteStorage(Paths.get(config.getRemoteStorageDir()));
+    }
+}
@@ -0,0 +1,152 @@
+package com.distributed.systems.storage;
+
+import com.distributed.systems.util.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Tracks the largest record timestamp seen by a segment.
+ * Each entry says "every record up to this offset has a timestamp of at most this value",
+ * so the last entry is all retention needs and the file never has to be stat'ed.
+ */
+public class TimeIndex {
+    private static final int ENTRY_SIZE = 16; // 8 bytes for max timestamp, 8 for last covered offset
+
+    private final FileChannel timeChannel;
+    private Path timeIndexPath;
+
+    private long lastTimestamp = -1;
+    private long lastOffset = -1;
+
+    public TimeIndex(Path timeIndexPath) throws IOException {
+        this.timeChannel =
+                FileChannel.open(
+                        timeIndexPath,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+
+        this.timeIndexPath = timeIndexPath;
+
+        // Drop a torn entry left behind by a crash mid-write
+        long size = timeChannel.size();
+        if (size % ENTRY_SIZE != 0) {
+            Logger.logWarning("Time index " + timeIndexPath.getFileName() + " has a partial entry. Trimming.");
+            timeChannel.truncate(size - (size % ENTRY_SIZE));
+        }
+
+        loadLastEntry();
+    }
+
+    private void loadLastEntry() throws IOException {
+        long size = timeChannel.size();
+        if (size < ENTRY_SIZE) {
+            lastTimestamp = -1;
+            lastOffset = -1;
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(ENTRY_SIZE);
+        timeChannel.read(buffer, size - ENTRY_SIZE);
+        buffer.flip();
+
+        lastTimestamp = buffer.getLong();
+        lastOffset = buffer.getLong();
+    }
+
+    /**
+     * Records that all records up to (and including) offset have a timestamp no larger than maxTimestamp.
+     * Skips the write if nothing changed since the last entry.
+     */
+    public void maybeAppend(long maxTimestamp, long offset) throws IOException {
+        if (offset <= lastOffset && maxTimestamp <= lastTimestamp) {
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(ENTRY_SIZE);
+        buffer.putLong(maxTimestamp);
+        buffer.putLong(offset);
+        buffer.flip();
+
+        timeChannel.write(buffer, timeChannel.size());
+        timeChannel.force(true);
+
+        lastTimestamp = maxTimestamp;
+        lastOffset = offset;
+    }
+
+    /**
+     * Removes all entries covering offsets equal to or greater than targetOffset.
+     */
+    public void truncateTo(long targetOffset) throws IOException {
+        long fileSize = timeChannel.size();
+        if (fileSize == 0) return;
+
+        long low = 0;
+        long high = (fileSize / ENTRY_SIZE) - 1;
+        long truncateAtEntryIndex = -1;
+
+        ByteBuffer buffer = ByteBuffer.allocate(ENTRY_SIZE);
+
+        // Entries are appended in offset order, so binary search for the first one to drop
+        while (low <= high) {
+            long mid = low + (high - low) / 2;
+            buffer.clear();
+            timeChannel.read(buffer, mid * ENTRY_SIZE);
+            buffer.flip();
+
+            buffer.getLong(); // skip timestamp
+            long offsetAtMid = buffer.getLong();
+
+            if (offsetAtMid >= targetOffset) {
+                truncateAtEntryIndex = mid;
+                high = mid - 1;
+            } else {
+                low = mid + 1;
+            }
+        }
+
+        if (truncateAtEntryIndex != -1) {
+            timeChannel.truncate(truncateAtEntryIndex * ENTRY_SIZE);
+            timeChannel.force(true);
+            loadLastEntry();
+        }
+    }
+
+    public void close() throws IOException {
+        Logger.logStorage("Closing time index: " + timeIndexPath.getFileName());
+        timeChannel.close();
+    }
+
+    /**
+     * The max timestamp of the last entry, or -1 if the index is empty.
+     */
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * The offset covered by the last entry, or -1 if the index is empty.
+     */
+    public long getLastOffset() {
+        return lastOffset;
+    }
+
+    /**
+     * Renames the file in place; the open channel keeps working since it refers to the inode.
+     */
+    public void moveTo(Path target) throws IOException {
+        Files.move(timeIndexPath, target, StandardCopyOption.ATOMIC_MOVE);
+        this.timeIndexPath = target;
+    }
+
+    public Path getPath() {
+        return timeIndexPath;
+    }
+}
@@ -17,9 +17,21 @@ public class TopicManager {
     private final BrokerConfig config;
     private final ConcurrentHashMap<String, Log> topicMap = new ConcurrentHashMap<>();
 
+    // One small worker pool runs retention for every topic instead of a janitor thread per Log
+    private final MaintenanceScheduler maintenanceScheduler;
+
+    // Shared object store for tiered segments (null when tiering is disabled)
+    private final RemoteStorage remoteStorage;
+
     public TopicManager(Path dataRootDir, BrokerConfig config) throws IOException {
+        this(dataRootDir, config, RemoteStorage.fromConfig(config));
+    }
+
+    public TopicManager(Path dataRootDir, BrokerConfig config, RemoteStorage remoteStorage) throws IOException {
         this.dataRootDir = dataRootDir;
         this.config = config;
+        this.remoteStorage = remoteStorage;
+        this.maintenanceScheduler = new MaintenanceScheduler(config.getMaintenanceThreads(), config.getMaintenanceMaxTasksPerSec());
 
         if (!Files.exists(dataRootDir)) {
             Files.createDirectories(dataRootDir);
@@ -30,7 +42,7 @@ public class TopicManager {
                             String topicName = path.getFileName().toString();
                             try {
                                 // preload the log into our map
-                                topicMap.put(topicName, new Log(path, config));
+                                topicMap.put(topicName, new Log(path, config, maintenanceScheduler, remoteStorage));
                                 Logger.logInfo("Recovered topic: " + topicName);
                             } catch (IOException e) {
                                 Logger.logError("Failed to recover topic " + topicName);
@@ -46,7 +58,7 @@ public class TopicManager {
                 validateTopicName(topicName);
                 Path topicDir = dataRootDir.resolve(name);
                 Logger.logInfo("Initializing storage for topic: " + name);
-                return new Log(topicDir, config);
+                return new Log(topicDir, config, maintenanceScheduler, remoteStorage);
             } catch (IOException e) {
                 throw new RuntimeException("Could not initialize log for topic: " + name, e);
             }
@@ -64,6 +76,7 @@ public class TopicManager {
     /*Shutdown used for graceful end once server comes to stop*/
     public void shutdown() {
         Logger.logInfo("Shutting down TopicManager and closing all logs...");
+        maintenanceScheduler.shutdown();
         topicMap.forEach((name, log) -> {
             try {
                 log.close();
@@ -83,6 +96,10 @@ public class TopicManager {
                 .sum();
     }
 
+    public MaintenanceScheduler getMaintenanceScheduler() {
+        return maintenanceScheduler;
+    }
+
     /*
      * Validate topic name
      * */
@@ -0,0 +1,80 @@
+package com.distributed.systems.util;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Numeric request types of the v2 wire format, each paired with the v1 command it replaces.
+ * The request and response bodies are the same in both versions; only the header differs.
+ * Ids are part of the protocol: never renumber, only append.
+ */
+public enum ApiKey {
+    PRODUCE(0, Protocol.CMD_PRODUCE, true),
+    PRODUCE_IDEMPOTENT(1, Protocol.CMD_PRODUCE_IDEMPOTENT, true),
+    CONSUME(2, Protocol.CMD_CONSUME, true),
+    LOOKUP_KEY(3, Protocol.CMD_LOOKUP_KEY, true),
+    REPLICA_FETCH(4, Protocol.CMD_REPLICA_FETCH, true),
+    OFFSET_COMMIT(5, Protocol.CMD_OFFSET_COMMIT, false),
+    OFFSET_FETCH(6, Protocol.CMD_OFFSET_FETCH, false),
+    GET_OFFSET(7, Protocol.CMD_GET_OFFSET, true),
+    LIST_TOPICS(8, Protocol.CMD_LIST_TOPICS, false),
+    STATS(9, Protocol.CMD_STATS, false),
+    PROMOTE(10, Protocol.CMD_PROMOTE, false),
+    DEMOTE(11, Protocol.CMD_DEMOTE, false),
+    UPDATE_LEADER(12, Protocol.CMD_UPDATE_LEADER, false),
+    CLIENT_ID(13, Protocol.CMD_CLIENT_ID, false),
+    METADATA(14, Protocol.CMD_METADATA, false),
+    FOLLOWER_FETCH(15, Protocol.CMD_FOLLOWER_FETCH, false);
+
+    private static final ApiKey[] BY_ID;
+    private static final Map<String, ApiKey> BY_COMMAND = new HashMap<>();
+
+    static {
+        int maxId = 0;
+        for (ApiKey key : values()) {
+            maxId = Math.max(maxId, key.id);
+            BY_COMMAND.put(key.command, key);
+        }
+        BY_ID = new ApiKey[maxId + 1];
+        for (ApiKey key : values()) {
+            BY_ID[key.id] = key;
+        }
+    }
+
+    private final short id;
+    private final String command;
+    private final boolean topicScoped; // request fields start with the topic name
+
+    ApiKey(int id, String command, boolean topicScoped) {
+        this.id = (short) id;
+        this.command = command;
+        this.topicScoped = topicScoped;
+    }
+
+    public short id() {
+        return id;
+    }
+
+    public String command() {
+        return command;
+    }
+
+    public boolean isTopicScoped() {
+        return topicScoped;
+    }
+
+    /**
+     * Looks up a v2 api key, or returns null if this broker does not know it.
+     */
+    public static ApiKey forId(int id) {
+        return (id >= 0 && id < BY_ID.length) ? BY_ID[id] : null;
+    }
+
+    /**
+     * Looks up a v1 command (case-insensitive), or returns null if it is not a request type.
+     */
+    public static ApiKey forCommand(String command) {
+        return BY_COMMAND.get(command.toUpperCase(Locale.ROOT));
+    }
+}
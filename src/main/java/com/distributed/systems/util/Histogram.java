@@ -0,0 +1,93 @@
+package com.distributed.systems.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear histogram of non-negative values in any unit, e.g. bytes. Every power of
+ * two is split into 32 linear sub-buckets, so any reported percentile is within ~3% of the true
+ * value while the whole histogram stays a fixed ~15KB regardless of how many samples are recorded.
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalValue = new LongAdder();
+    private final AtomicLong maxValue = new AtomicLong(0);
+
+    /**
+     * Records one sample; negative values count as zero.
+     */
+    public void record(long value) {
+        long clamped = Math.max(0, value);
+        counts.incrementAndGet(bucketIndex(clamped));
+        totalCount.increment();
+        totalValue.add(clamped);
+        maxValue.accumulateAndGet(clamped, Math::max);
+    }
+
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /*
+     * Largest value that falls into the bucket, so percentiles err on the pessimistic side.
+     */
+    private static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Value at the given percentile (0-100). Returns 0 if nothing was recorded.
+     */
+    public long getPercentile(double percentile) {
+        long total = totalCount.sum();
+        if (total == 0) return 0;
+
+        long rank = (long) Math.ceil(total * Math.min(100.0, Math.max(0.0, percentile)) / 100.0);
+        rank = Math.max(1, rank);
+
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), maxValue.get());
+            }
+        }
+        return maxValue.get();
+    }
+
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    public double getMean() {
+        long total = totalCount.sum();
+        return total == 0 ? 0 : (double) totalValue.sum() / total;
+    }
+
+    public long getMax() {
+        return maxValue.get();
+    }
+
+    /**
+     * One-line summary in the recorded unit, e.g. "count=10, mean=1200.0, p50=1100, p99=3000, p999=3000, max=3000".
+     */
+    public String summary() {
+        return String.format("count=%d, mean=%.1f, p50=%d, p99=%d, p999=%d, max=%d",
+                getCount(), getMean(), getPercentile(50), getPercentile(99), getPercentile(99.9), getMax());
+    }
+}
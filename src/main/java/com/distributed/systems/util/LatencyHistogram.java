@@ -0,0 +1,25 @@
+package com.distributed.systems.util;
+
+/**
+ * Histogram of latencies in nanoseconds, summarised in milliseconds.
+ */
+public class LatencyHistogram extends Histogram {
+
+    public double getMeanNanos() {
+        return getMean();
+    }
+
+    public long getMaxNanos() {
+        return getMax();
+    }
+
+    /**
+     * One-line summary in milliseconds, e.g. "count=10, mean=1.20ms, p50=1.10ms, p99=3.00ms, p999=3.00ms, max=3.00ms".
+     */
+    @Override
+    public String summary() {
+        return String.format("count=%d, mean=%.2fms, p50=%.2fms, p99=%.2fms, p999=%.2fms, max=%.2fms",
+                getCount(), getMeanNanos() / 1_000_000.0, getPercentile(50) / 1_000_000.0,
+                getPercentile(99) / 1_000_000.0, getPercentile(99.9) / 1_000_000.0, getMaxNanos() / 1_000_000.0);
+    }
+}
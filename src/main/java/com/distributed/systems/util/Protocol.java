@@ -13,12 +13,47 @@ public class Protocol {
     public static final String CMD_GET_OFFSET = "GET_OFFSET";
     public static final String CMD_DEMOTE = "DEMOTE";
     public static final String CMD_UPDATE_LEADER = "CMD_UPDATE_LEADER";
+    public static final String CMD_LOOKUP_KEY = "LOOKUP_KEY";
+    public static final String CMD_PRODUCE_IDEMPOTENT = "PRODUCE_IDEMPOTENT";
+    // Names the connection for quotas: [CLIENT_ID][String ClientId] -> [Boolean]
+    public static final String CMD_CLIENT_ID = "CLIENT_ID";
+    // Who leads: [METADATA] -> [Boolean IsLeader][String LeaderHost][Int LeaderPort]
+    public static final String CMD_METADATA = "METADATA";
+    // Follower fetch, any number of topics per request:
+    // [FOLLOWER_FETCH][Int TopicCount] TopicCount x ([String Topic][Long Offset][Int MaxRecords])
+    // -> [Int TopicCount] TopicCount x ([String Topic][Long LogEndOffset][Long BaseOffset][Int Count][Int Size][Bytes Records]
+    //                                    [Int N] N x ([Long ProducerId][Int Sequence][Long Offset]))
+    // where the records are as stored in the segment, followed by the idempotent producer sequences among them
+    public static final String CMD_FOLLOWER_FETCH = "FOLLOWER_FETCH";
+
+    // Connection upgrade: [SWITCH_PROTOCOL][Int Mode] -> [Boolean Accepted]
+    public static final String CMD_SWITCH_PROTOCOL = "SWITCH_PROTOCOL";
+    // Pipelined mode: requests are [Int Length][Int CorrelationId][Command][Fields...] and responses
+    // [Int Length][Int CorrelationId][Body...], where Length counts everything after itself
+    public static final int MODE_PIPELINED = 1;
+    // v2: requests are [Int Length][Short ApiKey][Int CorrelationId][Fields...] and responses
+    // [Int Length][Int CorrelationId][Short ErrorCode][Int ThrottleTimeMs][Body...]; bodies are the same as in v1
+    public static final int MODE_V2 = 2;
+
+    // v2 error codes (response header). Errors inside a body keep their v1 encoding.
+    public static final short ERROR_NONE = 0;
+    public static final short ERROR_UNKNOWN_API_KEY = 1;
+    public static final short ERROR_CORRUPT_REQUEST = 2;
+    public static final short ERROR_SERVER = 3;
+    // Shed by admission control before it ran; safe to retry after backing off. v1 has no
+    // such error: a shed v1 request or connection is closed unanswered, and clients retry it
+    // like any lost connection.
+    public static final short ERROR_BUSY = 4;
 
     // Responses
     public static final String RESP_SUCCESS_PREFIX = "SUCCESS: Message stored at OFFSET ";
     public static final String RESP_DATA_PREFIX = "DATA: ";
     public static final String RESP_ERROR_PREFIX = "ERROR: ";
 
+    // Error codes sent after a -1 offset
+    public static final String ERR_NOT_LEADER = "ERR_NOT_LEADER";
+    public static final String ERR_OUT_OF_ORDER_SEQUENCE = "ERR_OUT_OF_ORDER_SEQUENCE";
+
     // Welcome Messages
     public static final String WELCOME_HEADER = "--- Welcome to Kafka-Lite Broker ---";
     public static final String WELCOME_HELP = "Commands: PRODUCE <data> | CONSUME <offset> | QUIT";
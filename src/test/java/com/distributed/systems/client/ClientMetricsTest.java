@@ -0,0 +1,64 @@
+package com.distributed.systems.client;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientMetricsTest {
+
+    @Test
+    void testRecordsPerCommandLatencyAndTraffic() {
+        ClientMetrics metrics = new ClientMetrics();
+
+        metrics.recordRequest("PRODUCE", 2_000_000, 100, 8);
+        metrics.recordRequest("PRODUCE", 4_000_000, 120, 8);
+        metrics.recordRequest("CONSUME", 1_000_000, 20, 60);
+        metrics.recordRetry(1000);
+        metrics.recordRetry(2000);
+        metrics.recordError();
+
+        assertEquals(3, metrics.getRequestCount());
+        assertEquals(2, metrics.getLatency("PRODUCE").getCount());
+        assertNull(metrics.getLatency("LOOKUP_KEY"));
+        assertEquals(240, metrics.getBytesSent());
+        assertEquals(76, metrics.getBytesReceived());
+        assertEquals(2, metrics.getRetryCount());
+        assertEquals(3000, metrics.getBackoffTimeMs());
+        assertEquals(1, metrics.getErrorCount());
+        assertEquals(4.0, metrics.getLatencyP99Ms("PRODUCE"), 0.2);
+
+        String report = metrics.getStatsReport();
+        assertTrue(report.contains("RETRIES=2"), report);
+        assertTrue(report.contains("CONSUME=[count=1"), report);
+    }
+
+    @Test
+    void testInFlightCount() {
+        ClientMetrics metrics = new ClientMetrics();
+        metrics.requestStarted();
+        metrics.requestStarted();
+        metrics.requestFinished();
+        assertEquals(1, metrics.getInFlightRequests());
+    }
+
+    @Test
+    void testJmxRegistration() throws Exception {
+        ClientMetrics metrics = new ClientMetrics();
+        metrics.recordRequest("PRODUCE", 1_000_000, 50, 8);
+        metrics.register("jmx-test");
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = metrics.getObjectName();
+        assertNotNull(name);
+        assertTrue(server.isRegistered(name));
+        assertEquals(1L, server.getAttribute(name, "RequestCount"));
+        assertEquals(50L, server.getAttribute(name, "BytesSent"));
+
+        metrics.unregister();
+        assertFalse(server.isRegistered(name));
+    }
+}
@@ -0,0 +1,162 @@
+package com.distributed.systems.client;
+
+import com.distributed.systems.model.BrokerAddress;
+import com.distributed.systems.util.FatalClientException;
+import com.distributed.systems.util.Protocol;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionPoolTest {
+
+    private ServerSocket mockBroker;
+    private BrokerAddress broker;
+    private final AtomicInteger accepted = new AtomicInteger();
+    private final List<Socket> serverSides = new CopyOnWriteArrayList<>();
+
+    /*
+     * Answers every STATS with "ok" on the same connection until the client goes away.
+     */
+    @BeforeEach
+    void startMockBroker() throws IOException {
+        mockBroker = new ServerSocket(0);
+        broker = new BrokerAddress("localhost", mockBroker.getLocalPort());
+        Thread acceptor = new Thread(() -> {
+            while (!mockBroker.isClosed()) {
+                try {
+                    Socket socket = mockBroker.accept();
+                    accepted.incrementAndGet();
+                    serverSides.add(socket);
+                    new Thread(() -> serve(socket)).start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private static void serve(Socket socket) {
+        try (socket;
+             DataInputStream in = new DataInputStream(socket.getInputStream());
+             DataOutputStream out = new DataOutputStream(socket.getOutputStream())) {
+            while (true) {
+                if (!Protocol.CMD_STATS.equals(in.readUTF())) return;
+                out.writeUTF("ok");
+                out.flush();
+            }
+        } catch (EOFException ignored) {
+        } catch (IOException ignored) {
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        mockBroker.close();
+    }
+
+    private static String stats(ConnectionPool pool, BrokerAddress broker) throws IOException {
+        return pool.execute(broker, (in, out) -> {
+            out.writeUTF(Protocol.CMD_STATS);
+            out.flush();
+            return in.readUTF();
+        });
+    }
+
+    @Test
+    void testSequentialRequestsReuseOneConnection() throws Exception {
+        try (ConnectionPool pool = new ConnectionPool()) {
+            for (int i = 0; i < 50; i++) {
+                assertEquals("ok", stats(pool, broker));
+            }
+            assertEquals(1, accepted.get());
+            assertEquals(1, pool.getIdleCount(broker));
+            assertEquals(0, pool.getActiveCount(broker));
+        }
+    }
+
+    @Test
+    void testPerBrokerLimitMakesBorrowersWait() throws Exception {
+        try (ConnectionPool pool = new ConnectionPool(1, 60000, 200, 200)) {
+            BrokerConnection held = pool.borrow(broker);
+            assertEquals(1, pool.getActiveCount(broker));
+            assertThrows(IOException.class, () -> pool.borrow(broker));
+
+            pool.release(held);
+            assertEquals("ok", stats(pool, broker));
+            assertEquals(1, accepted.get());
+        }
+    }
+
+    @Test
+    void testConnectionClosedByTheBrokerIsReplaced() throws Exception {
+        try (ConnectionPool pool = new ConnectionPool()) {
+            assertEquals("ok", stats(pool, broker));
+            serverSides.get(0).close();
+
+            // Idle long enough to be checked before it is handed out again
+            Thread.sleep(600);
+            assertEquals("ok", stats(pool, broker));
+            assertEquals(2, accepted.get());
+        }
+    }
+
+    @Test
+    void testFailedExchangeDiscardsTheConnection() throws Exception {
+        try (ConnectionPool pool = new ConnectionPool()) {
+            assertThrows(IOException.class, () -> pool.execute(broker, (in, out) -> {
+                throw new IOException("broken mid-request");
+            }));
+            assertEquals(0, pool.getIdleCount(broker));
+            assertEquals(0, pool.getActiveCount(broker));
+
+            assertEquals("ok", stats(pool, broker));
+            assertEquals(2, accepted.get());
+        }
+    }
+
+    @Test
+    void testServerErrorKeepsTheConnection() throws Exception {
+        try (ConnectionPool pool = new ConnectionPool()) {
+            assertEquals("ok", stats(pool, broker));
+            // The whole response was read, so the stream is still in step
+            assertThrows(FatalClientException.class, () -> pool.execute(broker, (in, out) -> {
+                out.writeUTF(Protocol.CMD_STATS);
+                out.flush();
+                throw new FatalClientException("Server error: " + in.readUTF());
+            }));
+            assertEquals(1, pool.getIdleCount(broker));
+            assertEquals(0, pool.getActiveCount(broker));
+
+            assertEquals("ok", stats(pool, broker));
+            assertEquals(1, accepted.get());
+        }
+    }
+
+    @Test
+    void testIdleConnectionsAreEvicted() throws Exception {
+        try (ConnectionPool pool = new ConnectionPool(4, 200, 2000, 0)) {
+            assertEquals("ok", stats(pool, broker));
+            assertEquals(1, pool.getIdleCount(broker));
+
+            long deadline = System.currentTimeMillis() + 3000;
+            while (pool.getIdleCount(broker) > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(0, pool.getIdleCount(broker));
+        }
+    }
+}
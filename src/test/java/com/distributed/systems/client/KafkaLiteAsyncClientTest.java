@@ -0,0 +1,147 @@
+package com.distributed.systems.client;
+
+import com.distributed.systems.config.BrokerConfig;
+import com.distributed.systems.server.BrokerServer;
+import com.distributed.systems.server.TestBrokers;
+import com.distributed.systems.storage.LogRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KafkaLiteAsyncClientTest {
+
+    @TempDir
+    Path tempDir;
+
+    private BrokerServer server;
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    private int startBroker() throws Exception {
+        BrokerConfig config = new BrokerConfig(1024 * 1024, 600000, 4096, 30000);
+        config.setProperty("server.network.mode", "nio");
+        server = TestBrokers.start(tempDir.toString(), config);
+        return server.getPort();
+    }
+
+    @Test
+    void testOneClientSharedAcrossThreads() throws Exception {
+        int port = startBroker();
+        ExecutorService producers = Executors.newFixedThreadPool(8);
+        try (KafkaLiteAsyncClient client = new KafkaLiteAsyncClient("localhost", port, "group")) {
+            List<Future<List<Long>>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                results.add(producers.submit(() -> {
+                    List<CompletableFuture<Long>> offsets = new ArrayList<>();
+                    for (int i = 0; i < 100; i++) {
+                        offsets.add(client.produceAsync("shared", "t" + thread, "v" + i));
+                    }
+                    List<Long> done = new ArrayList<>();
+                    for (CompletableFuture<Long> offset : offsets) {
+                        done.add(offset.get());
+                    }
+                    return done;
+                }));
+            }
+
+            Set<Long> offsets = new HashSet<>();
+            for (Future<List<Long>> result : results) {
+                offsets.addAll(result.get());
+            }
+            assertEquals(800, offsets.size());
+            assertTrue(offsets.contains(0L) && offsets.contains(799L));
+
+            LogRecord last = client.fetchAsync("shared", 799).get();
+            assertNotNull(last);
+            assertNull(client.fetchAsync("shared", 800).get());
+        } finally {
+            producers.shutdownNow();
+        }
+    }
+
+    @Test
+    void testCommitAndFetchOffset() throws Exception {
+        int port = startBroker();
+        try (KafkaLiteAsyncClient client = new KafkaLiteAsyncClient("localhost", port, "async-group")) {
+            client.produceAsync("commits", null, "v").get();
+            assertEquals(-1, client.fetchOffsetAsync("commits").get());
+
+            client.commitAsync("commits", 42).get();
+            assertEquals(42, client.fetchOffsetAsync("commits").get());
+        }
+    }
+
+    @Test
+    void testFailuresAreReportedThroughTheFuture() throws Exception {
+        int port = startBroker();
+        KafkaLiteAsyncClient client = new KafkaLiteAsyncClient("localhost", port, "group");
+        client.close();
+
+        CompletableFuture<Long> offset = client.produceAsync("closed", "k", "v");
+        ExecutionException error = assertThrows(ExecutionException.class, offset::get);
+        assertInstanceOf(IOException.class, error.getCause());
+    }
+
+    @Test
+    void testCallsFailFastInsteadOfBlockingWhenTooManyArePending() throws Exception {
+        // A broker that accepts the v2 handshake and then never answers
+        try (ServerSocket broker = new ServerSocket(0)) {
+            Thread acceptor = new Thread(() -> {
+                try (Socket socket = broker.accept()) {
+                    DataInputStream in = new DataInputStream(socket.getInputStream());
+                    DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                    in.readUTF();
+                    in.readInt();
+                    out.writeBoolean(true);
+                    out.flush();
+                    while (in.read() != -1) {
+                        // swallow requests
+                    }
+                } catch (IOException ignored) {
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            KafkaLiteAsyncClient client = new KafkaLiteAsyncClient("localhost", broker.getLocalPort(), "group", 1, 2);
+            CompletableFuture<Long> first = client.produceAsync("stuck", "k", "v1");
+            CompletableFuture<Long> second = client.produceAsync("stuck", "k", "v2"); // waits for the window on the sender
+            CompletableFuture<Long> third = client.produceAsync("stuck", "k", "v3");
+
+            assertTrue(third.isCompletedExceptionally(), "a call past maxPending must fail without blocking");
+            ExecutionException error = assertThrows(ExecutionException.class, third::get);
+            assertInstanceOf(IOException.class, error.getCause());
+            assertFalse(first.isDone());
+            assertFalse(second.isDone());
+
+            client.close();
+            assertInstanceOf(IOException.class, assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS)).getCause());
+            assertInstanceOf(IOException.class, assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS)).getCause());
+        }
+    }
+}
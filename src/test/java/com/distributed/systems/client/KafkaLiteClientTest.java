@@ -1,5 +1,6 @@
 package com.distributed.systems.client;
 
+import com.distributed.systems.storage.LogRecord;
 import com.distributed.systems.util.Protocol;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
@@ -8,13 +9,19 @@ import org.junit.jupiter.api.Test;
 import java.io.*;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 public class KafkaLiteClientTest {
     private static ServerSocket mockServer;
     private static int port;
     private static Thread serverThread;
+    private static volatile String lastTopic;
+    private static volatile byte[] lastKey;
+    private static volatile byte[] lastValue;
 
     @BeforeAll
     static void startMockServer() throws IOException {
@@ -36,10 +43,13 @@ public class KafkaLiteClientTest {
                         if (Protocol.CMD_PRODUCE.equals(command)) {
 
                             // Protocol: [KeyLen][Key][ValLen][Value]
-                            int kLen = in.readInt();
-                            in.readFully(new byte[kLen]);
-                            int vLen = in.readInt();
-                            in.readFully(new byte[vLen]);
+                            byte[] key = new byte[in.readInt()];
+                            in.readFully(key);
+                            byte[] value = new byte[in.readInt()];
+                            in.readFully(value);
+                            lastTopic = topic;
+                            lastKey = key;
+                            lastValue = value;
 
                             out.writeLong(999);
                         } else if (Protocol.CMD_CONSUME.equals(command)) {
@@ -58,6 +68,21 @@ public class KafkaLiteClientTest {
                             byte[] val = "MockData".getBytes();
                             out.writeInt(val.length);
                             out.write(val);
+                        } else if (Protocol.CMD_LOOKUP_KEY.equals(command)) {
+                            // Protocol: [KeyLen][Key], answered with the latest record for it
+                            byte[] key = new byte[in.readInt()];
+                            in.readFully(key);
+                            lastTopic = topic;
+                            lastKey = key;
+
+                            out.writeBoolean(true);
+                            out.writeLong(7);
+                            out.writeLong(System.currentTimeMillis());
+                            out.writeInt(key.length);
+                            out.write(key);
+                            byte[] val = "latest".getBytes(StandardCharsets.UTF_8);
+                            out.writeInt(val.length);
+                            out.write(val);
                         }
                         out.flush();
                     } catch (EOFException ignored) {
@@ -83,6 +108,44 @@ public class KafkaLiteClientTest {
         }
     }
 
+    @Test
+    void testProduceFromBuffers() throws IOException {
+        ByteBuffer key = ByteBuffer.allocateDirect(16).put("key-é".getBytes(StandardCharsets.UTF_8)).flip();
+        ByteBuffer value = ByteBuffer.allocateDirect(64).put("direct value".getBytes(StandardCharsets.UTF_8)).flip();
+
+        try (KafkaLiteClient client = new KafkaLiteClient("localhost", port, "my-group-id")) {
+            assertEquals(999, client.produce("tópico", key, value));
+
+            ClientMetrics metrics = client.getMetrics();
+            assertEquals(1, metrics.getLatency(Protocol.CMD_PRODUCE).getCount());
+            assertEquals(8, metrics.getBytesReceived()); // the offset
+            assertEquals(metrics.getProduceSizes().getMax(), metrics.getBytesSent());
+            assertEquals(0, metrics.getInFlightRequests());
+        }
+
+        assertEquals("tópico", lastTopic);
+        assertArrayEquals("key-é".getBytes(StandardCharsets.UTF_8), lastKey);
+        assertArrayEquals("direct value".getBytes(StandardCharsets.UTF_8), lastValue);
+        // The caller's buffers are left as they were, ready to be sent again
+        assertEquals(0, value.position());
+        assertEquals(12, value.remaining());
+        assertEquals(0, key.position());
+    }
+
+    @Test
+    void testLookupKeyEncodesTheKeyAsUtf8() throws IOException {
+        LogRecord record;
+        try (KafkaLiteClient client = new KafkaLiteClient("localhost", port, "my-group-id")) {
+            record = client.lookupKey("tópico", "clé-日本");
+        }
+
+        assertEquals("tópico", lastTopic);
+        // The broker matches keys byte for byte, so this must not depend on the platform charset
+        assertArrayEquals("clé-日本".getBytes(StandardCharsets.UTF_8), lastKey);
+        assertEquals(7, record.offset());
+        assertEquals("latest", new String(record.value(), StandardCharsets.UTF_8));
+    }
+
     @Test
     void testConsumeCommand() throws IOException {
         try (KafkaLiteClient client = new KafkaLiteClient("localhost", port, "my-group-id")) {
@@ -0,0 +1,104 @@
+package com.distributed.systems.client;
+
+import com.distributed.systems.config.BrokerConfig;
+import com.distributed.systems.server.BrokerServer;
+import com.distributed.systems.server.TestBrokers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KafkaLiteConsumerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private BrokerServer server;
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    private int startBroker() throws Exception {
+        BrokerConfig config = new BrokerConfig(1024 * 1024, 600000, 4096, 30000);
+        config.setProperty("server.network.mode", "nio");
+        server = TestBrokers.start(tempDir.toString(), config);
+        return server.getPort();
+    }
+
+    private static List<KafkaLiteConsumer.ConsumerRecord> pollUntil(KafkaLiteConsumer consumer, int count)
+            throws InterruptedException {
+        List<KafkaLiteConsumer.ConsumerRecord> received = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (received.size() < count && System.currentTimeMillis() < deadline) {
+            received.addAll(consumer.poll(200));
+        }
+        return received;
+    }
+
+    @Test
+    void testPollReturnsRecordsInOrderAndResumesAfterCommit() throws Exception {
+        int port = startBroker();
+        try (KafkaLiteClient producer = new KafkaLiteClient("localhost", port, "producer")) {
+            for (int i = 0; i < 50; i++) {
+                producer.produce("orders", "k" + i, "v" + i);
+            }
+        }
+
+        try (KafkaLiteConsumer consumer = new KafkaLiteConsumer("localhost", port, "billing")) {
+            consumer.subscribe("orders");
+            List<KafkaLiteConsumer.ConsumerRecord> received = pollUntil(consumer, 50);
+            assertEquals(50, received.size());
+            for (int i = 0; i < 50; i++) {
+                assertEquals("orders", received.get(i).topic());
+                assertEquals(i, received.get(i).record().offset());
+                assertEquals("v" + i, new String(received.get(i).record().value()));
+            }
+            assertEquals(50, consumer.position("orders"));
+            consumer.commitSync();
+        }
+
+        try (KafkaLiteClient producer = new KafkaLiteClient("localhost", port, "producer")) {
+            producer.produce("orders", "k50", "v50");
+        }
+
+        // Same group picks up after its committed offset
+        try (KafkaLiteConsumer consumer = new KafkaLiteConsumer("localhost", port, "billing")) {
+            consumer.subscribe("orders");
+            assertEquals(50, consumer.position("orders"));
+            List<KafkaLiteConsumer.ConsumerRecord> received = pollUntil(consumer, 1);
+            assertEquals(1, received.size());
+            assertEquals("v50", new String(received.get(0).record().value()));
+        }
+    }
+
+    @Test
+    void testPrefetchBufferIsBounded() throws Exception {
+        int port = startBroker();
+        try (KafkaLiteClient producer = new KafkaLiteClient("localhost", port, "producer")) {
+            for (int i = 0; i < 100; i++) {
+                producer.produce("bounded", null, "v" + i);
+            }
+        }
+
+        try (KafkaLiteConsumer consumer = new KafkaLiteConsumer("localhost", port, "group", 10, 4)) {
+            consumer.subscribe("bounded");
+            long deadline = System.currentTimeMillis() + 5000;
+            while (consumer.getBufferedCount() < 10 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            Thread.sleep(200);
+            assertEquals(10, consumer.getBufferedCount());
+
+            assertEquals(100, pollUntil(consumer, 100).size());
+        }
+    }
+}
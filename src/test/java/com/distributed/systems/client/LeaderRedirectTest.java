@@ -0,0 +1,83 @@
+package com.distributed.systems.client;
+
+import com.distributed.systems.config.BrokerConfig;
+import com.distributed.systems.model.BrokerAddress;
+import com.distributed.systems.server.BrokerServer;
+import com.distributed.systems.server.TestBrokers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LeaderRedirectTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final List<BrokerServer> brokers = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        for (BrokerServer broker : brokers) {
+            broker.stop();
+        }
+    }
+
+    /*
+     * Starts a broker on a free port; leaderPort is the leader's port for a follower and ignored
+     * for a leader, which advertises its own.
+     */
+    private BrokerServer startBroker(boolean isLeader, int leaderPort) throws Exception {
+        BrokerConfig config = new BrokerConfig(1024 * 1024, 600000, 4096, 30000);
+        config.setProperty("replication.is.leader", String.valueOf(isLeader));
+        config.setProperty("replication.leader.host", "localhost");
+        config.setProperty("replication.leader.port", String.valueOf(leaderPort));
+        BrokerServer broker = TestBrokers.start(tempDir.resolve("broker-" + brokers.size()).toString(), config);
+        brokers.add(broker);
+        return broker;
+    }
+
+    @Test
+    void testProduceToFollowerIsRedirectedToLeader() throws Exception {
+        int leaderPort = startBroker(true, 0).getPort();
+        int followerPort = startBroker(false, leaderPort).getPort();
+
+        BrokerAddress leader = new BrokerAddress("localhost", leaderPort);
+        BrokerAddress follower = new BrokerAddress("localhost", followerPort);
+        try (KafkaLiteClient client = new KafkaLiteClient(List.of(follower, leader), "group", false)) {
+            assertEquals(follower, client.getCurrentBroker());
+            assertEquals(leader, client.fetchLeader());
+
+            assertEquals(0, client.produce("redirect", "k", "v0"));
+            assertEquals(leader, client.getCurrentBroker());
+            assertEquals(1, client.produce("redirect", "k", "v1"));
+        }
+    }
+
+    @Test
+    void testWritesFollowALeaderChange() throws Exception {
+        BrokerServer oldLeader = startBroker(true, 0);
+        int oldPort = oldLeader.getPort();
+        BrokerServer newLeader = startBroker(false, oldPort);
+        int newPort = newLeader.getPort();
+
+        BrokerAddress oldAddress = new BrokerAddress("localhost", oldPort);
+        BrokerAddress newAddress = new BrokerAddress("localhost", newPort);
+        try (KafkaLiteClient client = new KafkaLiteClient(List.of(oldAddress, newAddress), "group", true)) {
+            assertEquals(0, client.produce("failover", "k", "before"));
+
+            // What the ClusterController does on failover, minus the waiting
+            newLeader.promoteToLeader();
+            oldLeader.demoteToFollower("localhost", newPort);
+
+            long offset = client.produce("failover", "k", "after");
+            assertTrue(offset >= 0, "produce should have been redirected, got " + offset);
+            assertEquals(newAddress, client.getCurrentBroker());
+        }
+    }
+}
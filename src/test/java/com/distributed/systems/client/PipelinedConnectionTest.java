@@ -0,0 +1,158 @@
+package com.distributed.systems.client;
+
+import com.distributed.systems.config.BrokerConfig;
+import com.distributed.systems.server.BrokerServer;
+import com.distributed.systems.server.TestBrokers;
+import com.distributed.systems.storage.LogRecord;
+import com.distributed.systems.util.ApiKey;
+import com.distributed.systems.util.Protocol;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PipelinedConnectionTest {
+
+    @TempDir
+    Path tempDir;
+
+    private BrokerServer server;
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    private int startBroker(String networkMode) throws Exception {
+        BrokerConfig config = new BrokerConfig(1024 * 1024, 600000, 4096, 30000);
+        config.setProperty("server.network.mode", networkMode);
+        server = TestBrokers.start(tempDir.toString(), config);
+        return server.getPort();
+    }
+
+    private void produceAndFetchPipelined(int port, int mode) throws Exception {
+        try (PipelinedConnection connection = new PipelinedConnection("localhost", port, 64, mode)) {
+            List<CompletableFuture<Long>> offsets = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                offsets.add(connection.produce("pipelined", ("k" + i).getBytes(), ("v" + i).getBytes()));
+            }
+            // Responses come back in request order, so offsets follow send order
+            for (int i = 0; i < offsets.size(); i++) {
+                assertEquals(i, offsets.get(i).get());
+            }
+
+            List<CompletableFuture<LogRecord>> records = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                records.add(connection.fetch("pipelined", i));
+            }
+            for (int i = 0; i < records.size(); i++) {
+                assertEquals("v" + i, new String(records.get(i).get().value()));
+            }
+
+            assertNull(connection.fetch("pipelined", 500).get());
+            assertEquals(0, connection.getInFlightCount());
+        }
+    }
+
+    @Test
+    void testPipelinedRequestsOnBlockingServer() throws Exception {
+        produceAndFetchPipelined(startBroker("blocking"), Protocol.MODE_PIPELINED);
+    }
+
+    @Test
+    void testPipelinedRequestsOnNioServer() throws Exception {
+        produceAndFetchPipelined(startBroker("nio"), Protocol.MODE_PIPELINED);
+    }
+
+    @Test
+    void testV2RequestsOnBlockingServer() throws Exception {
+        produceAndFetchPipelined(startBroker("blocking"), Protocol.MODE_V2);
+    }
+
+    @Test
+    void testV2RequestsOnNioServer() throws Exception {
+        produceAndFetchPipelined(startBroker("nio"), Protocol.MODE_V2);
+    }
+
+    @Test
+    void testV2ErrorCodesKeepTheConnectionInSync() throws Exception {
+        int port = startBroker("nio");
+        try (Socket socket = new Socket("localhost", port);
+             DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+             DataInputStream in = new DataInputStream(socket.getInputStream())) {
+
+            out.writeUTF(Protocol.CMD_SWITCH_PROTOCOL);
+            out.writeInt(Protocol.MODE_V2);
+            out.flush();
+            assertTrue(in.readBoolean());
+
+            // Unknown api key
+            out.writeInt(6);
+            out.writeShort(999);
+            out.writeInt(1);
+            // CONSUME with its offset field cut off
+            out.writeInt(6 + 2);
+            out.writeShort(ApiKey.CONSUME.id());
+            out.writeInt(2);
+            out.writeShort(0);
+            // A valid LIST_TOPICS afterwards
+            out.writeInt(6);
+            out.writeShort(ApiKey.LIST_TOPICS.id());
+            out.writeInt(3);
+            out.flush();
+
+            assertEquals(10, in.readInt());
+            assertEquals(1, in.readInt());
+            assertEquals(Protocol.ERROR_UNKNOWN_API_KEY, in.readShort());
+            assertEquals(0, in.readInt()); // throttle time
+
+            assertEquals(10, in.readInt());
+            assertEquals(2, in.readInt());
+            assertEquals(Protocol.ERROR_CORRUPT_REQUEST, in.readShort());
+            assertEquals(0, in.readInt());
+
+            assertEquals(14, in.readInt());
+            assertEquals(3, in.readInt());
+            assertEquals(Protocol.ERROR_NONE, in.readShort());
+            assertEquals(0, in.readInt());
+            assertEquals(0, in.readInt()); // no topics
+        }
+    }
+
+    @Test
+    void testOutstandingRequestsFailWhenConnectionCloses() throws Exception {
+        int port = startBroker("blocking");
+        PipelinedConnection connection = new PipelinedConnection("localhost", port);
+        connection.close();
+
+        assertThrows(IOException.class, () -> connection.produce("pipelined", new byte[0], "v".getBytes()));
+
+        // Plain clients on the same broker are unaffected
+        try (KafkaLiteClient client = new KafkaLiteClient("localhost", port, "group")) {
+            assertEquals(0, client.produce("pipelined", "k", "v"));
+        }
+    }
+
+    @Test
+    void testErrorsSurfaceThroughTheFuture() throws Exception {
+        int port = startBroker("nio");
+        try (PipelinedConnection connection = new PipelinedConnection("localhost", port)) {
+            ExecutionException error = assertThrows(ExecutionException.class,
+                    () -> connection.fetch("missing-topic", 0).get());
+            assertTrue(error.getCause().getMessage().contains("does not exist"));
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.distributed.systems.server;
 
 import com.distributed.systems.client.KafkaLiteClient;
 import com.distributed.systems.config.BrokerConfig;
+import com.distributed.systems.storage.Log;
 import com.distributed.systems.util.Logger;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -170,14 +171,12 @@ public class BrokerServerTest {
     }
 
     @Test
-    public void testGracefulShutdownPersistence(@TempDir Path tempDir) throws IOException {
-        int port = 9097;
+    public void testGracefulShutdownPersistence(@TempDir Path tempDir) throws IOException, InterruptedException {
         String dataPath = tempDir.toString();
 
-        BrokerServer server = new BrokerServer(port, dataPath, createDefaultConfig());
-        new Thread(server::start).start();
+        BrokerServer server = TestBrokers.start(dataPath, createDefaultConfig());
 
-        try (KafkaLiteClient client = new KafkaLiteClient("localhost", port, "my-group-id")) {
+        try (KafkaLiteClient client = new KafkaLiteClient("localhost", server.getPort(), "my-group-id")) {
             client.produce("shutdown-test", "key", "important-data");
         }
 
@@ -199,23 +198,20 @@ public class BrokerServerTest {
     }
 
     @Test
-    public void testServerRecoveryAfterGracefulShutdown(@TempDir Path tempDir) throws IOException {
-        int port = 9098;
+    public void testServerRecoveryAfterGracefulShutdown(@TempDir Path tempDir) throws IOException, InterruptedException {
         String dataPath = tempDir.toString();
 
-        BrokerServer server1 = new BrokerServer(port, dataPath, createDefaultConfig());
-        new Thread(server1::start).start();
+        BrokerServer server1 = TestBrokers.start(dataPath, createDefaultConfig());
 
-        try (KafkaLiteClient client = new KafkaLiteClient("localhost", port, "my-group-id")) {
+        try (KafkaLiteClient client = new KafkaLiteClient("localhost", server1.getPort(), "my-group-id")) {
             client.produce("recovery-topic", "k1", "v1");
         }
         server1.stop();
 
         // restart a fresh server on the same path
-        BrokerServer server2 = new BrokerServer(port, dataPath, createDefaultConfig());
-        new Thread(server2::start).start();
+        BrokerServer server2 = TestBrokers.start(dataPath, createDefaultConfig());
 
-        try (KafkaLiteClient client = new KafkaLiteClient("localhost", port, "my-group-id")) {
+        try (KafkaLiteClient client = new KafkaLiteClient("localhost", server2.getPort(), "my-group-id")) {
 
 
             // If recovery logic works, this topic should be 'discovered' on boot
@@ -257,6 +253,85 @@ public class BrokerServerTest {
         assertEquals(1, resultIn.readLong(), "Should return offset 1 for the existing topic");
     }
 
+    @Test
+    void testHandleFollowerFetchReportsLogEndOffset(@TempDir Path tempDir) throws IOException {
+        BrokerConfig config = new BrokerConfig();
+        config.setProperty("replication.is.leader", "true");
+        BrokerServer server = new BrokerServer(9094, tempDir.toString(), config);
+
+        Log log = server.getTopicManager().getOrCreateLog("fetch-topic");
+        log.append("k0".getBytes(), "v0".getBytes());
+        log.append("k1".getBytes(), "v1".getBytes());
+        log.appendIdempotent(42L, 0, "k2".getBytes(), "v2".getBytes());
+
+        // A fetch from offset 1 returns the rest of the log along with where it ends
+        DataInputStream resultIn = followerFetch(server, "fetch-topic", 1, 10);
+        assertEquals(3, resultIn.readLong(), "Should report the log end offset");
+        assertEquals(1, resultIn.readLong(), "Batch should start at the requested offset");
+        assertEquals(2, resultIn.readInt());
+        // Records come as stored: [Timestamp][KeyLen][Key][ValLen][Value], 8 + 4 + 2 + 4 + 2 bytes each
+        assertEquals(40, resultIn.readInt());
+        resultIn.skipNBytes(40);
+        // Followed by the idempotent producer sequences among them
+        assertEquals(1, resultIn.readInt());
+        assertEquals(42L, resultIn.readLong());
+        assertEquals(0, resultIn.readInt());
+        assertEquals(2, resultIn.readLong());
+
+        // A fetch past the end returns no records, but still the end offset
+        resultIn = followerFetch(server, "fetch-topic", 5, 10);
+        assertEquals(3, resultIn.readLong());
+        assertEquals(5, resultIn.readLong());
+        assertEquals(0, resultIn.readInt());
+
+        // One fetch serves many topics, each part naming its topic; unknown topics have no end offset
+        ByteArrayOutputStream request = new ByteArrayOutputStream();
+        DataOutputStream requestOut = new DataOutputStream(request);
+        requestOut.writeInt(2);
+        requestOut.writeUTF("missing-topic");
+        requestOut.writeLong(0);
+        requestOut.writeInt(10);
+        requestOut.writeUTF("fetch-topic");
+        requestOut.writeLong(0);
+        requestOut.writeInt(10);
+        resultIn = followerFetch(server, request.toByteArray());
+        assertEquals(2, resultIn.readInt());
+        assertEquals("missing-topic", resultIn.readUTF());
+        assertEquals(-1, resultIn.readLong());
+        resultIn.readLong();
+        assertEquals(0, resultIn.readInt());
+        assertEquals(0, resultIn.readInt());
+        assertEquals(0, resultIn.readInt());
+        assertEquals("fetch-topic", resultIn.readUTF());
+        assertEquals(3, resultIn.readLong());
+        assertEquals(0, resultIn.readLong());
+        assertEquals(3, resultIn.readInt());
+    }
+
+    /*
+     * Fetches one topic and reads the response up to its log end offset.
+     */
+    private DataInputStream followerFetch(BrokerServer server, String topic, long offset, int maxRecords) throws IOException {
+        ByteArrayOutputStream request = new ByteArrayOutputStream();
+        DataOutputStream requestOut = new DataOutputStream(request);
+        requestOut.writeInt(1);
+        requestOut.writeUTF(topic);
+        requestOut.writeLong(offset);
+        requestOut.writeInt(maxRecords);
+
+        DataInputStream resultIn = followerFetch(server, request.toByteArray());
+        assertEquals(1, resultIn.readInt());
+        assertEquals(topic, resultIn.readUTF());
+        return resultIn;
+    }
+
+    private DataInputStream followerFetch(BrokerServer server, byte[] request) throws IOException {
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        server.handleFollowerFetch(new DataInputStream(new ByteArrayInputStream(request)),
+                new DataOutputStream(response));
+        return new DataInputStream(new ByteArrayInputStream(response.toByteArray()));
+    }
+
     @Test
     void testHandleDemoteStateTransition() throws IOException {
         // 1. Start as a Leader
@@ -0,0 +1,161 @@
+package com.distributed.systems.server;
+
+import com.distributed.systems.client.KafkaLiteClient;
+import com.distributed.systems.config.BrokerConfig;
+import com.distributed.systems.storage.LogRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NioServerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private BrokerServer server;
+    private int port;
+
+    @BeforeEach
+    void setup() throws Exception {
+        BrokerConfig config = new BrokerConfig(4096, 600000, 4096, 30000);
+        config.setProperty("server.network.mode", "nio");
+        config.setProperty("server.network.io.threads", "2");
+        config.setProperty("server.request.handler.threads", "4");
+
+        server = TestBrokers.start(tempDir.toString(), config);
+        port = server.getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    void testServesMoreConnectionsThanHandlerThreads() throws Exception {
+        // Far more open connections than the 10 the blocking server could serve at once
+        List<KafkaLiteClient> clients = new ArrayList<>();
+        try {
+            for (int i = 0; i < 200; i++) {
+                clients.add(new KafkaLiteClient("localhost", port, "group-" + i));
+            }
+            for (int i = 0; i < clients.size(); i++) {
+                assertTrue(clients.get(i).produce("nio-topic", "k" + i, "v" + i) >= 0);
+            }
+
+            LogRecord last = clients.get(0).fetch("nio-topic", 199);
+            assertNotNull(last);
+        } finally {
+            for (KafkaLiteClient client : clients) {
+                client.close();
+            }
+        }
+        assertEquals(200, server.getTopicManager().getLogIfExits("nio-topic").getNextOffset());
+    }
+
+    @Test
+    void testPipelinedAndFragmentedRequests() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream request = new DataOutputStream(bytes);
+        for (int i = 0; i < 3; i++) {
+            request.writeUTF("PRODUCE");
+            request.writeUTF("pipe-topic");
+            byte[] key = ("key-" + i).getBytes();
+            request.writeInt(key.length);
+            request.write(key);
+            byte[] value = ("value-" + i).getBytes();
+            request.writeInt(value.length);
+            request.write(value);
+        }
+        request.writeUTF("GET_OFFSET");
+        request.writeUTF("pipe-topic");
+        byte[] payload = bytes.toByteArray();
+
+        try (Socket socket = new Socket("localhost", port);
+             DataInputStream in = new DataInputStream(socket.getInputStream())) {
+            OutputStream out = socket.getOutputStream();
+
+            // First request trickles in byte by byte, the rest arrive in one burst
+            int firstRequestLength = payload.length / 3;
+            for (int i = 0; i < firstRequestLength; i++) {
+                out.write(payload[i]);
+                out.flush();
+            }
+            out.write(payload, firstRequestLength, payload.length - firstRequestLength);
+            out.flush();
+
+            assertEquals(0, in.readLong());
+            assertEquals(1, in.readLong());
+            assertEquals(2, in.readLong());
+            assertEquals(3, in.readLong());
+        }
+    }
+
+    @Test
+    void testClientsResettingRightAfterConnectDoNotStopTheListener() throws IOException {
+        for (int i = 0; i < 50; i++) {
+            Socket socket = new Socket("localhost", port);
+            socket.setSoLinger(true, 0); // close sends RST instead of FIN
+            socket.close();
+        }
+
+        try (Socket socket = new Socket("localhost", port);
+             DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+             DataInputStream in = new DataInputStream(socket.getInputStream())) {
+            out.writeUTF("LIST_TOPICS");
+            out.flush();
+            assertEquals(0, in.readInt());
+        }
+    }
+
+    @Test
+    void testUnknownCommandKeepsConnectionUsable() throws IOException {
+        try (Socket socket = new Socket("localhost", port);
+             DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+             DataInputStream in = new DataInputStream(socket.getInputStream())) {
+
+            out.writeUTF("NOT_A_COMMAND");
+            out.flush();
+            assertEquals("ERROR: Unknown Command", in.readUTF());
+
+            out.writeUTF("LIST_TOPICS");
+            out.flush();
+            assertEquals(0, in.readInt());
+        }
+    }
+
+    @Test
+    void testFramerWaitsForCompleteRequest() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF("CONSUME");
+        out.writeUTF("topic");
+        out.writeLong(42);
+        out.writeUTF("STATS");
+        byte[] payload = bytes.toByteArray();
+        int consumeLength = 2 + 7 + 2 + 5 + 8;
+
+        for (int cut = 0; cut < consumeLength; cut++) {
+            assertEquals(-1, RequestFramer.frameLength(ByteBuffer.wrap(payload, 0, cut)));
+        }
+        assertEquals(consumeLength, RequestFramer.frameLength(ByteBuffer.wrap(payload)));
+        assertEquals(7, RequestFramer.frameLength(ByteBuffer.wrap(payload, consumeLength, 7).slice()));
+
+        ByteBuffer negative = ByteBuffer.allocate(32);
+        negative.putShort((short) 10).put("LOOKUP_KEY".getBytes());
+        negative.putShort((short) 1).put((byte) 't').putInt(-5).flip();
+        assertThrows(IOException.class, () -> RequestFramer.frameLength(negative));
+    }
+}
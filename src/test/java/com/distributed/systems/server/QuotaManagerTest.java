@@ -0,0 +1,177 @@
+package com.distributed.systems.server;
+
+import com.distributed.systems.client.PipelinedConnection;
+import com.distributed.systems.config.BrokerConfig;
+import com.distributed.systems.util.ApiKey;
+import com.distributed.systems.util.Protocol;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QuotaManagerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private BrokerServer server;
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    void testUnlimitedByDefault() {
+        QuotaManager quotas = new QuotaManager(0, 0, 0, 0);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(0, quotas.record("client", ApiKey.PRODUCE, "topic", 1024 * 1024));
+        }
+        assertEquals(0, quotas.getThrottledRequests());
+    }
+
+    @Test
+    void testClientOverByteQuotaIsThrottled() {
+        QuotaManager quotas = new QuotaManager(1000, 0, 0, 0);
+        // The first second's worth is the burst allowance
+        assertEquals(0, quotas.record("a", ApiKey.PRODUCE, "topic", 1000));
+
+        // 500 bytes of debt at 1000 bytes/sec is about half a second
+        long throttleMs = quotas.record("a", ApiKey.PRODUCE, "topic", 500);
+        assertTrue(throttleMs > 400 && throttleMs <= 500, "throttle was " + throttleMs);
+        assertEquals(1, quotas.getThrottledRequests());
+
+        // Another client has its own bucket
+        assertEquals(0, quotas.record("b", ApiKey.PRODUCE, "topic", 1000));
+    }
+
+    @Test
+    void testTopicQuotaIsSharedAcrossClients() {
+        QuotaManager quotas = new QuotaManager(0, 0, 0, 2);
+        assertEquals(0, quotas.record("a", ApiKey.CONSUME, "hot", 10));
+        assertEquals(0, quotas.record("b", ApiKey.CONSUME, "hot", 10));
+        assertTrue(quotas.record("c", ApiKey.CONSUME, "hot", 10) > 0);
+        assertEquals(0, quotas.record("c", ApiKey.CONSUME, "cold", 10));
+    }
+
+    @Test
+    void testReplicationIsExempt() {
+        QuotaManager quotas = new QuotaManager(1, 1, 1, 1);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, quotas.record("follower", ApiKey.REPLICA_FETCH, "topic", 1024 * 1024));
+        }
+        assertTrue(quotas.getStatsReport().contains("QUOTA_THROTTLED=0"));
+    }
+
+    @Test
+    void testIdleBucketsAreEvictedButDebtsAreKept() throws InterruptedException {
+        QuotaManager quotas = new QuotaManager(1000, 0, 1000, 0, 200);
+        for (int i = 0; i < 100; i++) {
+            quotas.record("client-" + i, ApiKey.PRODUCE, "topic-" + i, 10);
+        }
+        // 5 seconds of debt, so this bucket is still in use after the idle period
+        assertTrue(quotas.record("heavy", ApiKey.PRODUCE, null, 6000) > 0);
+        assertTrue(quotas.getStatsReport().contains("QUOTA_CLIENTS=101, QUOTA_TOPICS=100"));
+
+        Thread.sleep(300);
+        quotas.record("new", ApiKey.PRODUCE, null, 10); // the next request sweeps
+
+        assertTrue(quotas.getStatsReport().contains("QUOTA_CLIENTS=2, QUOTA_TOPICS=0"), quotas.getStatsReport());
+        assertTrue(quotas.record("heavy", ApiKey.PRODUCE, null, 1) > 4000, "the debt must survive the sweep");
+    }
+
+    private int startBroker(String networkMode, String requestsPerSec) throws Exception {
+        BrokerConfig config = new BrokerConfig(1024 * 1024, 600000, 4096, 30000);
+        config.setProperty("server.network.mode", networkMode);
+        config.setProperty("quota.client.requests.per.sec", requestsPerSec);
+        server = TestBrokers.start(tempDir.toString(), config);
+        return server.getPort();
+    }
+
+    @Test
+    void testV2ResponsesCarryTheThrottleTime() throws Exception {
+        int port = startBroker("nio", "2");
+        try (Socket socket = new Socket("localhost", port);
+             DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+             DataInputStream in = new DataInputStream(socket.getInputStream())) {
+
+            out.writeUTF(Protocol.CMD_CLIENT_ID);
+            out.writeUTF("greedy");
+            out.flush();
+            assertTrue(in.readBoolean());
+            out.writeUTF(Protocol.CMD_SWITCH_PROTOCOL);
+            out.writeInt(Protocol.MODE_V2);
+            out.flush();
+            assertTrue(in.readBoolean());
+
+            long maxThrottleMs = 0;
+            for (int i = 0; i < 4; i++) {
+                out.writeInt(6);
+                out.writeShort(ApiKey.LIST_TOPICS.id());
+                out.writeInt(i);
+                out.flush();
+
+                assertEquals(14, in.readInt());
+                assertEquals(i, in.readInt());
+                assertEquals(Protocol.ERROR_NONE, in.readShort());
+                maxThrottleMs = Math.max(maxThrottleMs, in.readInt());
+                assertEquals(0, in.readInt());
+            }
+            // The connection stays open and is slowed down rather than dropped
+            assertTrue(maxThrottleMs > 0);
+        }
+    }
+
+    @Test
+    void testThrottledClientsStillComplete() throws Exception {
+        int port = startBroker("blocking", "20");
+        long start = System.nanoTime();
+        try (PipelinedConnection connection = new PipelinedConnection("localhost", port, 16, Protocol.MODE_V2, "slow")) {
+            for (int i = 0; i < 30; i++) {
+                assertEquals(i, connection.produce("quota", new byte[0], "v".getBytes()).get());
+            }
+        }
+        // 20 of the 30 requests fit the burst; the rest are paced at 20/sec
+        assertTrue(System.nanoTime() - start > 300_000_000L);
+    }
+
+    @Test
+    void testInterruptedThrottleWaitFreesItsInFlightSlot() throws Exception {
+        int port = startBroker("nio", "2");
+        try (PipelinedConnection connection = new PipelinedConnection("localhost", port, 1, Protocol.MODE_V2, "greedy")) {
+            // Past the burst, so the next send waits out a throttle
+            for (int i = 0; i < 4; i++) {
+                connection.produce("quota", new byte[0], "v".getBytes()).get();
+            }
+
+            AtomicReference<Throwable> error = new AtomicReference<>();
+            Thread sender = new Thread(() -> {
+                try {
+                    connection.produce("quota", new byte[0], "v".getBytes());
+                } catch (Throwable t) {
+                    error.set(t);
+                }
+            });
+            sender.start();
+            Thread.sleep(100);
+            sender.interrupt();
+            sender.join();
+            assertInstanceOf(IOException.class, error.get());
+
+            // With the only slot leaked this would block forever
+            assertTimeoutPreemptively(Duration.ofSeconds(5),
+                    () -> connection.produce("quota", new byte[0], "v".getBytes()).get());
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.distributed.systems.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestQueueTest {
+
+    private RequestQueue queue;
+
+    @AfterEach
+    void tearDown() {
+        if (queue != null) {
+            queue.shutdownNow();
+        }
+    }
+
+    @Test
+    void testFullQueueShedsImmediately() throws Exception {
+        queue = new RequestQueue("test", 1, 2, 0);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger ran = new AtomicInteger();
+        AtomicInteger shed = new AtomicInteger();
+
+        queue.submit(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+        }, shed::incrementAndGet);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // Two fit in the queue behind the busy worker, the third is refused on the spot
+        for (int i = 0; i < 3; i++) {
+            queue.submit(ran::incrementAndGet, shed::incrementAndGet);
+        }
+        assertEquals(1, shed.get());
+        assertEquals(1, queue.getRejectedCount());
+        assertEquals(2, queue.getDepth());
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (ran.get() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, ran.get());
+    }
+
+    @Test
+    void testWorkPastTheQueueTimeBudgetIsShed() throws Exception {
+        queue = new RequestQueue("test", 1, 0, 50);
+        CountDownLatch done = new CountDownLatch(2);
+        AtomicInteger ran = new AtomicInteger();
+        AtomicInteger shed = new AtomicInteger();
+
+        queue.submit(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException ignored) {
+            }
+            ran.incrementAndGet();
+            done.countDown();
+        }, done::countDown);
+        queue.submit(() -> {
+            ran.incrementAndGet();
+            done.countDown();
+        }, () -> {
+            shed.incrementAndGet();
+            done.countDown();
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, ran.get());
+        assertEquals(1, shed.get());
+        assertEquals(1, queue.getExpiredCount());
+        assertTrue(queue.getStatsReport().contains("QUEUE_EXPIRED=1"));
+    }
+}
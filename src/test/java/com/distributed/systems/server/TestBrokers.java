@@ -0,0 +1,29 @@
+package com.distributed.systems.server;
+
+import com.distributed.systems.config.BrokerConfig;
+
+import java.io.IOException;
+
+/**
+ * Starts real brokers for integration tests. They bind port 0, so the OS hands out a free port at
+ * bind time instead of a probe socket guessing one that may be taken by then. A broker is only
+ * returned once it accepts connections; read its port with getPort().
+ */
+public final class TestBrokers {
+    private static final long START_TIMEOUT_MS = 5000;
+
+    private TestBrokers() {
+    }
+
+    public static BrokerServer start(String dataDir, BrokerConfig config) throws IOException, InterruptedException {
+        BrokerServer server = new BrokerServer(0, dataDir, config);
+        new Thread(server::start).start();
+        try {
+            server.awaitListening(START_TIMEOUT_MS);
+        } catch (IOException e) {
+            server.stop();
+            throw e;
+        }
+        return server;
+    }
+}
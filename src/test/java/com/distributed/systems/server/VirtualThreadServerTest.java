@@ -0,0 +1,70 @@
+package com.distributed.systems.server;
+
+import com.distributed.systems.client.KafkaLiteClient;
+import com.distributed.systems.config.BrokerConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VirtualThreadServerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private BrokerServer server;
+    private int port;
+
+    @BeforeEach
+    void setup() throws Exception {
+        BrokerConfig config = new BrokerConfig(4096, 600000, 4096, 30000);
+        config.setProperty("server.network.mode", "virtual");
+
+        server = TestBrokers.start(tempDir.toString(), config);
+        port = server.getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    void testConnectionsBeyondFixedPoolAreServed() throws Exception {
+        // All connections stay open at once; the blocking pool would stall the 11th
+        List<KafkaLiteClient> clients = new ArrayList<>();
+        try {
+            for (int i = 0; i < 100; i++) {
+                clients.add(new KafkaLiteClient("localhost", port, "group-" + i));
+            }
+
+            try (ExecutorService producers = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<Long>> offsets = new ArrayList<>();
+                for (int i = 0; i < clients.size(); i++) {
+                    KafkaLiteClient client = clients.get(i);
+                    String key = "k" + i;
+                    offsets.add(producers.submit(() -> client.produce("vt-topic", key, "value")));
+                }
+                for (Future<Long> offset : offsets) {
+                    assertTrue(offset.get() >= 0);
+                }
+            }
+        } finally {
+            for (KafkaLiteClient client : clients) {
+                client.close();
+            }
+        }
+        assertEquals(100, server.getTopicManager().getLogIfExits("vt-topic").getNextOffset());
+    }
+}
@@ -0,0 +1,63 @@
+package com.distributed.systems.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BloomFilterTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testNoFalseNegatives() {
+        BloomFilter filter = BloomFilter.create(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.add(("key-" + i).getBytes());
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.mightContain(("key-" + i).getBytes()), "Added key must always be reported");
+        }
+    }
+
+    @Test
+    public void testFalsePositiveRateIsBounded() {
+        BloomFilter filter = BloomFilter.create(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.add(("key-" + i).getBytes());
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain(("absent-" + i).getBytes())) falsePositives++;
+        }
+        // 1% target; allow generous slack so the test isn't flaky
+        assertTrue(falsePositives < 300, "Too many false positives: " + falsePositives);
+    }
+
+    @Test
+    public void testPersistenceRoundTrip() throws IOException {
+        Path path = tempDir.resolve("0000000000.bloom");
+        BloomFilter filter = BloomFilter.create(10, 0.01);
+        filter.add("present".getBytes());
+        filter.writeTo(path);
+
+        BloomFilter loaded = BloomFilter.readFrom(path);
+        assertNotNull(loaded);
+        assertEquals(filter.getSizeInBytes(), loaded.getSizeInBytes());
+        assertTrue(loaded.mightContain("present".getBytes()));
+        assertFalse(Files.exists(tempDir.resolve("0000000000.bloom.tmp")));
+    }
+
+    @Test
+    public void testMalformedFileIsIgnored() throws IOException {
+        Path path = tempDir.resolve("0000000000.bloom");
+        Files.write(path, new byte[3]);
+        assertNull(BloomFilter.readFrom(path));
+        assertNull(BloomFilter.readFrom(tempDir.resolve("missing.bloom")));
+    }
+}
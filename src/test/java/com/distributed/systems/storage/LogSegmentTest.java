@@ -1,11 +1,13 @@
 package com.distributed.systems.storage;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
+import com.distributed.systems.config.BrokerConfig;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
@@ -258,4 +260,202 @@ public class LogSegmentTest {
 
         segment.close();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testMaxTimestampSurvivesReopen() throws IOException {
+        Path logPath = tempDir.resolve("0000000000.data");
+        LogSegment segment = new LogSegment(logPath, 0, MAX_SEGMENT_SIZE);
+
+        assertEquals(-1, segment.getMaxTimestamp(), "Empty segment should have no max timestamp");
+
+        long before = System.currentTimeMillis();
+        segment.append(defaultKey, "first".getBytes());
+        segment.append(defaultKey, "second".getBytes());
+        long maxTimestamp = segment.getMaxTimestamp();
+        assertTrue(maxTimestamp >= before);
+        segment.close();
+
+        assertTrue(Files.exists(tempDir.resolve("0000000000.timeindex")), "Time index should be persisted");
+
+        LogSegment reopened = new LogSegment(logPath, 0, MAX_SEGMENT_SIZE);
+        assertEquals(maxTimestamp, reopened.getMaxTimestamp());
+        reopened.close();
+    }
+
+    @Test
+    public void testMaxTimestampRecoveredWithoutTimeIndex() throws IOException {
+        Path logPath = tempDir.resolve("0000000000.data");
+        LogSegment segment = new LogSegment(logPath, 0, MAX_SEGMENT_SIZE);
+        segment.append(defaultKey, "first".getBytes());
+        long maxTimestamp = segment.getMaxTimestamp();
+        segment.close();
+
+        // Simulates a segment written before time indexes existed
+        Files.delete(tempDir.resolve("0000000000.timeindex"));
+
+        LogSegment recovered = new LogSegment(logPath, 0, MAX_SEGMENT_SIZE);
+        assertEquals(maxTimestamp, recovered.getMaxTimestamp(), "Max timestamp should be rebuilt from the records");
+        recovered.close();
+    }
+
+    @Test
+    public void testDeleteRemovesCompanionFiles() throws IOException {
+        Path logPath = tempDir.resolve("0000000000.data");
+        LogSegment segment = new LogSegment(logPath, 0, 10);
+        for (int i = 0; i < 5; i++) {
+            segment.append(defaultKey, ("Msg-" + i).getBytes());
+        }
+
+        segment.delete();
+
+        assertFalse(Files.exists(logPath));
+        assertFalse(Files.exists(tempDir.resolve("0000000000.index")));
+        assertFalse(Files.exists(tempDir.resolve("0000000000.timeindex")));
+    }
+
+    private BrokerConfig directIoConfig(int tailBytes) {
+        BrokerConfig config = new BrokerConfig(1024 * 1024, 60000, 1024 * 1024, 60000);
+        config.setProperty("storage.direct.io.enabled", "true");
+        config.setProperty("storage.direct.io.tail.bytes", String.valueOf(tailBytes));
+        return config;
+    }
+
+    @Test
+    public void testDirectIoAppendAndRead() throws IOException {
+        Path logPath = tempDir.resolve("0000000000.data");
+        // Tiny tail buffer so early records are read back from disk, late ones from memory
+        LogSegment segment = new LogSegment(logPath, 0, directIoConfig(256));
+        assumeTrue(segment.isDirectIo(), "O_DIRECT is not supported under " + tempDir);
+
+        long expectedSize = 0;
+        for (int i = 0; i < 100; i++) {
+            // Mix of small and larger-than-a-block records to exercise partial block carry-over
+            byte[] value = (i % 10 == 0) ? new byte[5000] : ("Direct-" + i).getBytes();
+            value[0] = (byte) 'D';
+            segment.append(defaultKey, value);
+            expectedSize += 8 + 4 + defaultKey.length + 4 + value.length;
+        }
+
+        assertEquals(expectedSize, segment.getFileSize());
+        assertTrue(Files.size(logPath) >= expectedSize, "Padding stays on disk until the segment is sealed");
+        assertEquals("Direct-1", new String(segment.read(1).value()));
+        assertEquals(5000, segment.read(50).value().length);
+        assertEquals("Direct-99", new String(segment.read(99).value()));
+
+        segment.markSealed();
+        assertEquals(expectedSize, Files.size(logPath), "Sealing trims the padding");
+        assertEquals("Direct-99", new String(segment.read(99).value()));
+
+        segment.close();
+    }
+
+    @Test
+    public void testDirectIoRecoveryAndTruncate() throws IOException {
+        Path logPath = tempDir.resolve("0000000000.data");
+        LogSegment segment = new LogSegment(logPath, 0, directIoConfig(4096));
+        assumeTrue(segment.isDirectIo(), "O_DIRECT is not supported under " + tempDir);
+        for (int i = 0; i < 20; i++) {
+            segment.append(defaultKey, ("Msg-" + i).getBytes());
+        }
+        segment.close();
+
+        // Simulate a crash after a padded direct write but before the trim
+        long logicalSize = Files.size(logPath);
+        Files.write(logPath, new byte[4096 - (int) (logicalSize % 4096)], java.nio.file.StandardOpenOption.APPEND);
+
+        LogSegment recovered = new LogSegment(logPath, 0, directIoConfig(4096));
+        assertTrue(recovered.isDirectIo());
+        assertEquals(logicalSize, Files.size(logPath), "Zero padding should be trimmed on open");
+        assertEquals(19, recovered.getLastOffset());
+
+        recovered.truncate(10);
+        assertEquals(10, recovered.append(defaultKey, "After-truncate".getBytes()));
+        assertEquals("After-truncate", new String(recovered.read(10).value()));
+        assertEquals("Msg-9", new String(recovered.read(9).value()));
+
+        recovered.close();
+    }
+
+    private BrokerConfig keyIndexConfig() {
+        BrokerConfig config = new BrokerConfig(1024 * 1024, 60000, 1024 * 1024, 60000);
+        config.setProperty("storage.key.index.enabled", "true");
+        return config;
+    }
+
+    @Test
+    public void testKeyIndexReturnsLatestValue() throws IOException {
+        Path logPath = tempDir.resolve("0000000000.data");
+        LogSegment segment = new LogSegment(logPath, 0, keyIndexConfig());
+        for (int i = 0; i < 30; i++) {
+            segment.append(("user-" + (i % 5)).getBytes(), ("v" + i).getBytes());
+        }
+
+        assertEquals("v27", new String(segment.lookupKey("user-2".getBytes()).value()));
+        assertNull(segment.lookupKey("user-9".getBytes()));
+        segment.close();
+
+        // Sealed on close; reopening loads the persisted index instead of scanning
+        assertTrue(Files.exists(tempDir.resolve("0000000000.keyindex")));
+        LogSegment reopened = new LogSegment(logPath, 0, keyIndexConfig());
+        assertEquals(29, reopened.lookupKey("user-4".getBytes()).offset());
+
+        // Truncating drops the newest occurrences; older ones must become visible again
+        reopened.truncate(26);
+        assertEquals("v22", new String(reopened.lookupKey("user-2".getBytes()).value()));
+        reopened.close();
+    }
+
+    @Test
+    public void testKeyIndexRebuiltWhenMissing() throws IOException {
+        Path logPath = tempDir.resolve("0000000000.data");
+        LogSegment segment = new LogSegment(logPath, 0, keyIndexConfig());
+        for (int i = 0; i < 10; i++) {
+            segment.append(("k" + i).getBytes(), ("v" + i).getBytes());
+        }
+        segment.close();
+        Files.delete(tempDir.resolve("0000000000.keyindex"));
+
+        LogSegment recovered = new LogSegment(logPath, 0, keyIndexConfig());
+        assertEquals("v7", new String(recovered.lookupKey("k7".getBytes()).value()));
+        recovered.close();
+    }
+
+    @Test
+    public void testLookupKeyWithoutIndexScans() throws IOException {
+        Path logPath = tempDir.resolve("0000000000.data");
+        LogSegment segment = new LogSegment(logPath, 0, MAX_SEGMENT_SIZE);
+        segment.append("a".getBytes(), "first".getBytes());
+        segment.append("b".getBytes(), "other".getBytes());
+        segment.append("a".getBytes(), "second".getBytes());
+
+        assertEquals("second", new String(segment.lookupKey("a".getBytes()).value()));
+        assertNull(segment.lookupKey("c".getBytes()));
+        segment.close();
+    }
+
+    @Test
+    public void testActivatePreopenedSegment() throws IOException {
+        LogSegment segment = new LogSegment(tempDir.resolve("pending.data"), 0, MAX_SEGMENT_SIZE);
+        Path target = tempDir.resolve("0000000042.data");
+
+        segment.activate(42, target);
+        assertEquals(42, segment.getBaseOffset());
+        assertEquals(target, segment.getDataPath());
+        assertEquals(42, segment.append(defaultKey, "first".getBytes()));
+        assertFalse(Files.exists(tempDir.resolve("pending.data")));
+        assertTrue(Files.exists(tempDir.resolve("0000000042.index")));
+        segment.close();
+
+        LogSegment reopened = new LogSegment(target, 42, MAX_SEGMENT_SIZE);
+        assertEquals("first", new String(reopened.read(42).value()));
+        reopened.close();
+    }
+
+    @Test
+    public void testActivateRejectsNonEmptySegment() throws IOException {
+        LogSegment segment = new LogSegment(tempDir.resolve("pending.data"), 0, MAX_SEGMENT_SIZE);
+        segment.append(defaultKey, "data".getBytes());
+        assertThrows(IOException.class, () -> segment.activate(5, tempDir.resolve("0000000005.data")));
+        segment.close();
+    }
+}
@@ -8,6 +8,16 @@ import org.junit.jupiter.api.io.TempDir;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -279,4 +289,312 @@ public class LogTest {
 
         log.close();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testRetentionIgnoresFileModificationTime() throws IOException, InterruptedException {
+        BrokerConfig retentionConfig = new BrokerConfig(100, 60000, 4096, 60000);
+        MaintenanceScheduler scheduler = new MaintenanceScheduler(1, 0);
+        Log log = new Log(tempDir, retentionConfig, scheduler);
+
+        for (int i = 0; i < 6; i++) {
+            log.append("key".getBytes(), ("message-number-" + i).getBytes());
+        }
+        long segmentsBefore = log.getSegmentCount();
+        assertTrue(segmentsBefore > 1);
+
+        // Let the background seals finish, so their temp files are gone before we list the directory
+        awaitSubmittedTasks(scheduler);
+
+        // Simulate an rsync/restore that stamps the files with an ancient mtime
+        try (Stream<Path> files = Files.list(tempDir)) {
+            for (Path path : files.toList()) {
+                Files.setLastModifiedTime(path, FileTime.fromMillis(0));
+            }
+        }
+
+        log.cleanup();
+
+        assertEquals(segmentsBefore, log.getSegmentCount(), "Fresh records must not expire because of an old mtime");
+        log.close();
+        scheduler.shutdown();
+    }
+
+    /*
+     * A single-threaded scheduler runs one-shot tasks in order, so once a marker submitted now has
+     * run, so has every seal or pre-open submitted before it.
+     */
+    private static void awaitSubmittedTasks(MaintenanceScheduler scheduler) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        scheduler.submit("test-marker", done::countDown);
+        assertTrue(done.await(5, TimeUnit.SECONDS), "Background tasks did not finish");
+    }
+
+    @Test
+    public void testRetentionKeepsEmptySegmentWithFreshNeighbour() throws IOException {
+        BrokerConfig retentionConfig = new BrokerConfig(100, 60000, 4096, 60000);
+        Log log = new Log(tempDir, retentionConfig);
+        for (int i = 0; i < 6; i++) {
+            log.append("key".getBytes(), ("message-number-" + i).getBytes());
+        }
+        log.close();
+
+        // Leave a sealed segment in the middle with no records, so it has no max timestamp (-1)
+        List<Path> dataFiles;
+        try (Stream<Path> files = Files.list(tempDir)) {
+            dataFiles = files.filter(path -> path.toString().endsWith(".data")).sorted().toList();
+        }
+        assertTrue(dataFiles.size() > 2);
+        Path emptied = dataFiles.get(1);
+        for (String suffix : LogSegment.FILE_SUFFIXES) {
+            Files.deleteIfExists(LogSegment.companionPath(emptied, suffix));
+        }
+        Files.createFile(emptied);
+
+        Log recovered = new Log(tempDir, retentionConfig);
+        long segmentsBefore = recovered.getSegmentCount();
+        recovered.cleanup();
+
+        assertEquals(segmentsBefore, recovered.getSegmentCount(), "An empty segment must not expire ahead of its fresh neighbours");
+        recovered.close();
+    }
+
+    @Test
+    public void testLookupKeyAcrossSegments() throws IOException {
+        BrokerConfig keyConfig = new BrokerConfig(100, 60000, 4096, 60000);
+        keyConfig.setProperty("storage.key.index.enabled", "true");
+        Log log = new Log(tempDir, keyConfig);
+
+        log.append("user-1".getBytes(), "old".getBytes());
+        log.append("user-2".getBytes(), "only".getBytes());
+        for (int i = 0; i < 5; i++) {
+            log.append("filler".getBytes(), ("message-number-" + i).getBytes());
+        }
+        long latest = log.append("user-1".getBytes(), "new".getBytes());
+        assertTrue(log.getSegmentCount() > 2);
+
+        LogRecord record = log.lookupKey("user-1".getBytes());
+        assertEquals(latest, record.offset());
+        assertEquals("new", new String(record.value()));
+        assertEquals("only", new String(log.lookupKey("user-2".getBytes()).value()));
+        assertNull(log.lookupKey("missing".getBytes()));
+
+        log.close();
+    }
+
+    @Test
+    public void testRotationWritesBloomFilter() throws IOException, InterruptedException {
+        BrokerConfig bloomConfig = new BrokerConfig(100, 60000, 4096, 60000);
+        Log log = new Log(tempDir, bloomConfig);
+
+        log.append("alpha".getBytes(), "message-number-0".getBytes());
+        for (int i = 1; i < 4; i++) {
+            log.append("beta".getBytes(), ("message-number-" + i).getBytes());
+        }
+        // Sealing happens in the background after rotation
+        Path bloomPath = tempDir.resolve("0000000000.bloom");
+        for (int i = 0; i < 100 && !Files.exists(bloomPath); i++) {
+            Thread.sleep(20);
+        }
+        assertTrue(Files.exists(bloomPath), "Rotated segment should get a filter");
+        assertEquals(0, log.lookupKey("alpha".getBytes()).offset());
+
+        // Truncating back into the sealed segment reopens it for appends, so its filter must go
+        log.truncate(1);
+        assertFalse(Files.exists(tempDir.resolve("0000000000.bloom")));
+        log.append("gamma".getBytes(), "after-truncate".getBytes());
+        assertEquals("after-truncate", new String(log.lookupKey("gamma".getBytes()).value()));
+
+        log.close();
+    }
+
+    @Test
+    public void testIdempotentAppendDeduplicatesRetries() throws IOException {
+        BrokerConfig idempotentConfig = new BrokerConfig(100, 60000, 4096, 60000);
+        Log log = new Log(tempDir, idempotentConfig);
+
+        long first = log.appendIdempotent(99L, 0, "k".getBytes(), "message-number-0".getBytes());
+        long retry = log.appendIdempotent(99L, 0, "k".getBytes(), "message-number-0".getBytes());
+        long second = log.appendIdempotent(99L, 1, "k".getBytes(), "message-number-1".getBytes());
+
+        assertEquals(first, retry, "A retried sequence must get the original offset");
+        assertEquals(first + 1, second);
+        assertEquals(2, log.getNextOffset());
+
+        // Rotate a few times so the state is snapshotted, then restart
+        for (int seq = 2; seq < 6; seq++) {
+            log.appendIdempotent(99L, seq, "k".getBytes(), ("message-number-" + seq).getBytes());
+        }
+        log.close();
+
+        Log reopened = new Log(tempDir, idempotentConfig);
+        assertEquals(5, reopened.appendIdempotent(99L, 5, "k".getBytes(), "message-number-5".getBytes()));
+        assertEquals(6, reopened.getNextOffset());
+        reopened.close();
+    }
+
+    @Test
+    public void testRotationUsesPreopenedSegment() throws IOException, InterruptedException {
+        BrokerConfig preopenConfig = new BrokerConfig(200, 60000, 4096, 60000);
+        Log log = new Log(tempDir, preopenConfig);
+
+        // 35 bytes per record: past the 75% threshold (150 bytes) after five appends
+        for (int i = 0; i < 5; i++) {
+            log.append("key".getBytes(), ("message-number-" + i).getBytes());
+        }
+        Path pending = tempDir.resolve("pending.data");
+        for (int i = 0; i < 100 && !log.hasPendingSegment(); i++) {
+            Thread.sleep(20);
+        }
+        assertTrue(log.hasPendingSegment(), "Next segment should be opened ahead of rotation");
+        assertTrue(Files.exists(pending));
+
+        long offset = 5;
+        while (log.getSegmentCount() == 1) {
+            offset = log.append("key".getBytes(), ("message-number-" + offset).getBytes());
+        }
+
+        assertFalse(Files.exists(pending), "The pending segment should have been renamed on rotation");
+        assertTrue(Files.exists(tempDir.resolve(String.format("%010d.data", offset))));
+        assertTrue(Files.exists(tempDir.resolve(String.format("%010d.index", offset))));
+        assertEquals("message-number-" + offset, new String(log.read(offset).value()));
+        log.close();
+
+        Log reopened = new Log(tempDir, preopenConfig);
+        assertEquals(offset + 1, reopened.getNextOffset());
+        reopened.close();
+    }
+
+    @Test
+    public void testStalePendingSegmentIsRemovedOnStartup() throws IOException {
+        Files.write(tempDir.resolve("pending.data"), new byte[0]);
+        Files.write(tempDir.resolve("pending.index"), new byte[0]);
+
+        Log log = new Log(tempDir, createDefaultConfig());
+        assertEquals(1, log.getSegmentCount());
+        assertEquals(0, log.getNextOffset());
+        assertFalse(Files.exists(tempDir.resolve("pending.index")));
+        log.close();
+    }
+
+    @Test
+    public void testConcurrentAppendsFromVirtualThreads() throws Exception {
+        // Small segments so appends race with rotation and background sealing
+        Log log = new Log(tempDir.resolve("virtual-log"), new BrokerConfig(1024, 600000, 4096, 30000));
+        Set<Long> offsets = ConcurrentHashMap.newKeySet();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                byte[] key = ("k" + i).getBytes();
+                byte[] value = ("v" + i).getBytes();
+                futures.add(executor.submit(() -> {
+                    offsets.add(log.append(key, value));
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        assertEquals(1000, offsets.size());
+        assertEquals(1000, log.getNextOffset());
+        assertTrue(log.getSegmentCount() > 1);
+        assertNotNull(log.read(999));
+        log.close();
+    }
+
+    @Test
+    public void testFollowerAppendIsByteIdenticalToLeader() throws IOException, InterruptedException {
+        // Small segments so the copy has to roll over at the same records as the leader did
+        BrokerConfig config = new BrokerConfig(200, 600000, 4096, 30000);
+        Log leader = new Log(tempDir.resolve("leader"), config);
+        Log follower = new Log(tempDir.resolve("follower"), config);
+
+        for (int i = 0; i < 10; i++) {
+            leader.append(("key-" + i).getBytes(), ("value-" + i + "-padding-padding").getBytes());
+        }
+        Thread.sleep(5); // the follower must not stamp its own clock on anything
+
+        RecordBatch batch = leader.readRaw(0, 4, Integer.MAX_VALUE);
+        assertEquals(4, batch.recordCount());
+        follower.appendAsFollower(batch);
+        follower.appendAsFollower(leader.readRaw(4, 100, Integer.MAX_VALUE));
+
+        assertEquals(leader.getNextOffset(), follower.getNextOffset());
+        assertEquals(leader.getSegmentCount(), follower.getSegmentCount());
+        for (long offset = 0; offset < 10; offset++) {
+            LogRecord expected = leader.read(offset);
+            LogRecord actual = follower.read(offset);
+            assertEquals(expected.timestamp(), actual.timestamp(), "Timestamp of " + offset);
+            assertArrayEquals(expected.key(), actual.key());
+            assertArrayEquals(expected.value(), actual.value());
+        }
+        assertArrayEquals(Files.readAllBytes(tempDir.resolve("leader").resolve("0000000000.data")),
+                Files.readAllBytes(tempDir.resolve("follower").resolve("0000000000.data")));
+
+        leader.close();
+        follower.close();
+    }
+
+    @Test
+    public void testReadRawRespectsByteLimit() throws IOException {
+        Log log = new Log(tempDir, createDefaultConfig());
+        for (int i = 0; i < 5; i++) {
+            log.append("k".getBytes(), new byte[100]); // 117 bytes each
+        }
+
+        assertEquals(2, log.readRaw(0, 10, 250).recordCount());
+        // A record larger than the limit is still returned, alone, so a fetch always progresses
+        assertEquals(1, log.readRaw(0, 10, 50).recordCount());
+        assertEquals(0, log.readRaw(5, 10, 250).recordCount(), "Nothing past the end of the log");
+
+        log.close();
+    }
+
+    @Test
+    public void testFollowerAppendRejectsGapsAndTornBatches() throws IOException {
+        Log leader = new Log(tempDir.resolve("leader"), createDefaultConfig());
+        Log follower = new Log(tempDir.resolve("follower"), createDefaultConfig());
+        for (int i = 0; i < 3; i++) {
+            leader.append("k".getBytes(), "v".getBytes());
+        }
+
+        // Skipping offset 0 would leave a hole in the follower
+        assertThrows(IOException.class, () -> follower.appendAsFollower(leader.readRaw(1, 2, Integer.MAX_VALUE)));
+
+        RecordBatch whole = leader.readRaw(0, 3, Integer.MAX_VALUE);
+        RecordBatch torn = new RecordBatch(0, 3, whole.payload().slice(0, whole.sizeInBytes() - 1));
+        assertThrows(IOException.class, () -> follower.appendAsFollower(torn));
+        assertEquals(0, follower.getNextOffset(), "A refused batch must not be partially written");
+
+        follower.appendAsFollower(whole);
+        assertEquals(3, follower.getNextOffset());
+
+        leader.close();
+        follower.close();
+    }
+
+    @Test
+    public void testFollowerDeduplicatesRetriesAfterTakingOver() throws IOException {
+        Log leader = new Log(tempDir.resolve("leader"), createDefaultConfig());
+        Log follower = new Log(tempDir.resolve("follower"), createDefaultConfig());
+        leader.append("plain".getBytes(), "v".getBytes());
+        for (int seq = 0; seq < 3; seq++) {
+            leader.appendIdempotent(7L, seq, "k".getBytes(), ("v" + seq).getBytes());
+        }
+
+        RecordBatch batch = leader.readRaw(0, 10, Integer.MAX_VALUE);
+        List<ProducerStateManager.Sequence> sequences = leader.producerSequences(batch.baseOffset(), batch.nextOffset());
+        assertEquals(3, sequences.size());
+        follower.appendAsFollower(batch, sequences);
+
+        // The leader is gone and the producer retries its last send against the new one
+        assertEquals(3, follower.appendIdempotent(7L, 2, "k".getBytes(), "v2".getBytes()));
+        assertEquals(4, follower.getNextOffset(), "A replicated sequence must not be appended twice");
+        assertEquals(4, follower.appendIdempotent(7L, 3, "k".getBytes(), "v3".getBytes()));
+
+        leader.close();
+        follower.close();
+    }
+}
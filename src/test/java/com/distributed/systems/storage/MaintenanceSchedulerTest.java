@@ -0,0 +1,134 @@
+package com.distributed.systems.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MaintenanceSchedulerTest {
+
+    @Test
+    void testManyTasksShareFewThreads() throws InterruptedException {
+        MaintenanceScheduler scheduler = new MaintenanceScheduler(2, 0);
+        Set<String> threadNames = ConcurrentHashMap.newKeySet();
+        AtomicInteger runs = new AtomicInteger();
+
+        for (int i = 0; i < 200; i++) {
+            scheduler.schedule("task-" + i, () -> {
+                threadNames.add(Thread.currentThread().getName());
+                runs.incrementAndGet();
+            }, 50);
+        }
+
+        Thread.sleep(500);
+        scheduler.shutdown();
+
+        assertEquals(200, scheduler.getRegisteredTaskCount());
+        assertTrue(runs.get() >= 200, "Every task should have run at least once");
+        assertTrue(threadNames.size() <= 2, "All tasks should run on the shared pool. Saw: " + threadNames);
+    }
+
+    @Test
+    void testFirstRunIsJitteredWithinOneInterval() throws InterruptedException {
+        MaintenanceScheduler scheduler = new MaintenanceScheduler(2, 0);
+        Set<String> ran = ConcurrentHashMap.newKeySet();
+
+        for (int i = 0; i < 20; i++) {
+            String name = "task-" + i;
+            scheduler.schedule(name, () -> ran.add(name), 1000);
+        }
+
+        Thread.sleep(1200);
+        scheduler.shutdown();
+
+        assertEquals(20, ran.size(), "Every task should first run within one interval");
+    }
+
+    @Test
+    void testThrottleSpacesOutTaskStarts() throws InterruptedException {
+        // 10 starts per second across the whole scheduler
+        MaintenanceScheduler scheduler = new MaintenanceScheduler(4, 10);
+        AtomicInteger runs = new AtomicInteger();
+
+        for (int i = 0; i < 50; i++) {
+            scheduler.schedule("task-" + i, runs::incrementAndGet, 10);
+        }
+
+        Thread.sleep(1000);
+        int runsInFirstSecond = runs.get();
+        scheduler.shutdown();
+
+        assertTrue(runsInFirstSecond <= 12, "Throttle should cap runs at ~10/sec, saw " + runsInFirstSecond);
+        assertTrue(scheduler.getStatsReport().contains("MAINT_TASKS=50"));
+    }
+
+    @Test
+    void testSubmittedTasksDoNotWaitBehindThrottledTasks() throws InterruptedException {
+        // 2 starts per second, so the recurring tasks keep both workers waiting out the throttle
+        MaintenanceScheduler scheduler = new MaintenanceScheduler(2, 2);
+        for (int i = 0; i < 50; i++) {
+            scheduler.schedule("task-" + i, () -> {
+            }, 10);
+        }
+        Thread.sleep(200);
+
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(3);
+        for (int i = 0; i < 3; i++) {
+            int task = i;
+            scheduler.submit("seal-" + i, () -> {
+                order.add(task);
+                done.countDown();
+            });
+        }
+
+        try {
+            assertTrue(done.await(300, TimeUnit.MILLISECONDS), "One-shot tasks should not queue behind the throttle");
+            assertEquals(List.of(0, 1, 2), order, "One-shot tasks run in submission order");
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    void testFailuresAreCountedAndTaskKeepsRunning() throws InterruptedException {
+        MaintenanceScheduler scheduler = new MaintenanceScheduler(1, 0);
+        AtomicInteger attempts = new AtomicInteger();
+
+        scheduler.schedule("flaky", () -> {
+            attempts.incrementAndGet();
+            throw new IOException("disk on fire");
+        }, 20);
+
+        Thread.sleep(300);
+        scheduler.shutdown();
+
+        assertTrue(attempts.get() > 1, "A failing task must be rescheduled");
+        assertEquals(attempts.get(), scheduler.getFailedRuns());
+    }
+
+    @Test
+    void testCancelUnregistersTask() throws InterruptedException {
+        MaintenanceScheduler scheduler = new MaintenanceScheduler(1, 0);
+        AtomicInteger runs = new AtomicInteger();
+
+        MaintenanceScheduler.Registration registration = scheduler.schedule("cancelled", runs::incrementAndGet, 20);
+        registration.cancel();
+        registration.cancel(); // idempotent
+
+        Thread.sleep(200);
+        scheduler.shutdown();
+
+        assertEquals(0, runs.get());
+        assertEquals(0, scheduler.getRegisteredTaskCount());
+    }
+}
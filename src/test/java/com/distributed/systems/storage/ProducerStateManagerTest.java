@@ -0,0 +1,75 @@
+package com.distributed.systems.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProducerStateManagerTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testDuplicateWithinWindowReturnsOriginalOffset() throws IOException {
+        ProducerStateManager state = new ProducerStateManager(tempDir, 3, 10);
+        assertEquals(-1, state.lookup(7L, 0));
+        state.record(7L, 0, 100);
+        state.record(7L, 1, 101);
+
+        assertEquals(100, state.lookup(7L, 0));
+        assertEquals(-1, state.lookup(7L, 2), "A new sequence is not a duplicate");
+        assertEquals(-1, state.lookup(8L, 0), "Producers are tracked independently");
+    }
+
+    @Test
+    public void testSequenceOlderThanWindowIsRejected() throws IOException {
+        ProducerStateManager state = new ProducerStateManager(tempDir, 2, 10);
+        for (int seq = 0; seq < 5; seq++) {
+            state.record(1L, seq, seq);
+        }
+
+        assertEquals(4, state.lookup(1L, 4));
+        assertThrows(OutOfOrderSequenceException.class, () -> state.lookup(1L, 1));
+    }
+
+    @Test
+    public void testTruncateForgetsRemovedSequences() throws IOException {
+        ProducerStateManager state = new ProducerStateManager(tempDir, 10, 10);
+        state.record(1L, 0, 10);
+        state.record(1L, 1, 11);
+        state.record(2L, 0, 12);
+
+        state.truncateTo(11);
+
+        assertEquals(10, state.lookup(1L, 0));
+        assertEquals(-1, state.lookup(1L, 1), "A truncated record must be appended again on retry");
+        assertEquals(1, state.getProducerCount());
+    }
+
+    @Test
+    public void testSnapshotSurvivesRestart() throws IOException {
+        ProducerStateManager state = new ProducerStateManager(tempDir, 10, 10);
+        state.record(42L, 0, 5);
+        state.record(42L, 1, 6);
+        state.snapshot();
+
+        ProducerStateManager reloaded = new ProducerStateManager(tempDir, 10, 10);
+        assertEquals(6, reloaded.lookup(42L, 1));
+    }
+
+    @Test
+    public void testLeastRecentlyActiveProducerIsEvicted() throws IOException {
+        ProducerStateManager state = new ProducerStateManager(tempDir, 10, 2);
+        state.record(1L, 0, 0);
+        state.record(2L, 0, 1);
+        state.lookup(1L, 0); // touch producer 1
+        state.record(3L, 0, 2);
+
+        assertEquals(2, state.getProducerCount());
+        assertEquals(-1, state.lookup(2L, 0));
+        assertEquals(0, state.lookup(1L, 0));
+    }
+}
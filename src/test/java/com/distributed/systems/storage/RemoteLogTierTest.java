@@ -0,0 +1,251 @@
+package com.distributed.systems.storage;
+
+import com.distributed.systems.config.BrokerConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RemoteLogTierTest {
+
+    @TempDir
+    Path tempDir;
+
+    private BrokerConfig tieredConfig() {
+        // ~2 records per segment, keep one sealed segment locally, cache at most one remote segment
+        BrokerConfig config = new BrokerConfig(100, 600000, 4096, 600000);
+        config.setProperty("storage.remote.local.segments", "1");
+        config.setProperty("storage.remote.cache.segments", "1");
+        return config;
+    }
+
+    private long countLocalDataFiles(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.toString().endsWith(".data")).count();
+        }
+    }
+
+    /*
+     * A single-threaded scheduler runs one-shot tasks in order, so once a marker submitted now has
+     * run, so has every background seal submitted before it.
+     */
+    private static void awaitSubmittedTasks(MaintenanceScheduler scheduler) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        scheduler.submit("test-marker", done::countDown);
+        assertTrue(done.await(5, TimeUnit.SECONDS), "Background tasks did not finish");
+    }
+
+    @Test
+    void testOffloadSkipsSegmentsWhoseSealIsStillRunning() throws Exception {
+        Path logDir = tempDir.resolve("fresh");
+        RemoteStorage remote = new FileSystemRemoteStorage(tempDir.resolve("bucket"));
+        BrokerConfig config = tieredConfig();
+        config.setProperty("storage.remote.local.segments", "0");
+        MaintenanceScheduler scheduler = new MaintenanceScheduler(1, 0);
+        Log log = new Log(logDir, config, scheduler, remote);
+
+        // Hold the only worker, so the seal of the rotated segment cannot run yet
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.submit("blocker", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        for (int i = 0; i < 3; i++) {
+            log.append("key".getBytes(), ("message-number-" + i).getBytes());
+        }
+        assertEquals(2, log.getSegmentCount());
+
+        log.offloadSealedSegments();
+        assertEquals(0, log.getRemoteSegmentCount(), "A segment must not be offloaded before its seal completes");
+        assertFalse(remote.exists("fresh/0000000000.data"));
+
+        release.countDown();
+        awaitSubmittedTasks(scheduler);
+        log.offloadSealedSegments();
+        assertEquals(1, log.getRemoteSegmentCount());
+        assertEquals(1, log.getSegmentCount());
+        assertTrue(remote.exists("fresh/0000000000.bloom"), "Offloaded along with its Bloom filter");
+        assertEquals("message-number-0", new String(log.read(0).value()));
+
+        log.close();
+        scheduler.shutdown();
+    }
+
+    @Test
+    void testOffloadedSegmentsAreReadThroughCache() throws IOException, InterruptedException {
+        Path logDir = tempDir.resolve("orders");
+        RemoteStorage remote = new FileSystemRemoteStorage(tempDir.resolve("bucket"));
+        MaintenanceScheduler scheduler = new MaintenanceScheduler(1, 0);
+        Log log = new Log(logDir, tieredConfig(), scheduler, remote);
+
+        for (int i = 0; i < 12; i++) {
+            log.append("key".getBytes(), ("message-number-" + i).getBytes());
+        }
+        long segmentsBefore = log.getSegmentCount();
+
+        awaitSubmittedTasks(scheduler);
+        log.offloadSealedSegments();
+
+        // active + 1 sealed segment stay local
+        assertEquals(2, log.getSegmentCount());
+        assertEquals(2, countLocalDataFiles(logDir));
+        assertEquals(segmentsBefore - 2, log.getRemoteSegmentCount());
+        assertTrue(remote.exists("orders/0000000000.data"), "Oldest segment should be in the bucket");
+
+        // Every offset is still readable, cold ones through the cache
+        for (int i = 0; i < 12; i++) {
+            assertEquals("message-number-" + i, new String(log.read(i).value()));
+        }
+
+        // The bounded cache never holds more than one downloaded segment
+        try (Stream<Path> cached = Files.list(logDir.resolve("remote-cache"))) {
+            assertEquals(1, cached.filter(p -> p.toString().endsWith(".data")).count());
+        }
+
+        log.close();
+        scheduler.shutdown();
+    }
+
+    @Test
+    void testRemoteManifestSurvivesRestart() throws IOException, InterruptedException {
+        Path logDir = tempDir.resolve("payments");
+        RemoteStorage remote = new FileSystemRemoteStorage(tempDir.resolve("bucket"));
+        MaintenanceScheduler scheduler = new MaintenanceScheduler(1, 0);
+
+        Log log = new Log(logDir, tieredConfig(), scheduler, remote);
+        for (int i = 0; i < 12; i++) {
+            log.append("key".getBytes(), ("message-number-" + i).getBytes());
+        }
+        awaitSubmittedTasks(scheduler);
+        log.offloadSealedSegments();
+        long remoteSegments = log.getRemoteSegmentCount();
+        log.close();
+
+        Log reopened = new Log(logDir, tieredConfig(), scheduler, remote);
+        assertEquals(remoteSegments, reopened.getRemoteSegmentCount());
+        assertEquals(12, reopened.getNextOffset());
+        assertEquals("message-number-0", new String(reopened.read(0).value()));
+
+        reopened.close();
+        scheduler.shutdown();
+    }
+
+    @Test
+    void testTruncateInsideRemoteSegmentRestoresItLocally() throws IOException, InterruptedException {
+        Path logDir = tempDir.resolve("events");
+        RemoteStorage remote = new FileSystemRemoteStorage(tempDir.resolve("bucket"));
+        MaintenanceScheduler scheduler = new MaintenanceScheduler(1, 0);
+        Log log = new Log(logDir, tieredConfig(), scheduler, remote);
+
+        for (int i = 0; i < 12; i++) {
+            log.append("key".getBytes(), ("message-number-" + i).getBytes());
+        }
+        awaitSubmittedTasks(scheduler);
+        log.offloadSealedSegments();
+        assertTrue(remote.exists("events/0000000002.data"));
+
+        // Offset 3 lives inside remote segment 2: what a diverged follower does with offloaded segments
+        log.truncate(3);
+
+        assertEquals(3, log.getNextOffset());
+        assertEquals(1, log.getRemoteSegmentCount(), "Only the segment before the cut stays remote");
+        assertFalse(remote.exists("events/0000000002.data"));
+        assertTrue(Files.exists(logDir.resolve("0000000002.data")), "The cut segment should be local again");
+        assertEquals("message-number-0", new String(log.read(0).value()));
+        assertEquals("message-number-2", new String(log.read(2).value()));
+
+        assertEquals(3, log.append("key".getBytes(), "rewritten".getBytes()));
+        assertEquals("rewritten", new String(log.read(3).value()));
+
+        log.close();
+        scheduler.shutdown();
+    }
+
+    @Test
+    void testColdReadDoesNotBlockCachedReads() throws Exception {
+        Path logDir = tempDir.resolve("views");
+        CountDownLatch downloadStarted = new CountDownLatch(1);
+        CountDownLatch releaseDownload = new CountDownLatch(1);
+        RemoteStorage remote = new FileSystemRemoteStorage(tempDir.resolve("bucket")) {
+            @Override
+            public void download(String key, Path target) throws IOException {
+                if (key.equals("views/0000000000.data")) {
+                    downloadStarted.countDown();
+                    try {
+                        releaseDownload.await();
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                }
+                super.download(key, target);
+            }
+        };
+        MaintenanceScheduler scheduler = new MaintenanceScheduler(1, 0);
+        BrokerConfig config = tieredConfig();
+        config.setProperty("storage.remote.cache.segments", "2");
+        Log log = new Log(logDir, config, scheduler, remote);
+
+        for (int i = 0; i < 12; i++) {
+            log.append("key".getBytes(), ("message-number-" + i).getBytes());
+        }
+        awaitSubmittedTasks(scheduler);
+        log.offloadSealedSegments();
+        assertEquals("message-number-2", new String(log.read(2).value()));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<LogRecord> coldRead = executor.submit(() -> log.read(0));
+        assertTrue(downloadStarted.await(5, TimeUnit.SECONDS));
+
+        // Segment 2 is cached, so its read must not wait behind the download of segment 0
+        assertEquals("message-number-3", new String(log.read(3).value()));
+        assertFalse(coldRead.isDone());
+
+        releaseDownload.countDown();
+        assertEquals("message-number-0", new String(coldRead.get(5, TimeUnit.SECONDS).value()));
+
+        executor.shutdown();
+        log.close();
+        scheduler.shutdown();
+    }
+
+    @Test
+    void testRetentionDeletesRemoteSegments() throws IOException, InterruptedException {
+        Path logDir = tempDir.resolve("clicks");
+        Path bucket = tempDir.resolve("bucket");
+        BrokerConfig config = tieredConfig();
+        config.setProperty("storage.retention.ms", "200");
+        MaintenanceScheduler scheduler = new MaintenanceScheduler(1, 0);
+
+        Log log = new Log(logDir, config, scheduler, new FileSystemRemoteStorage(bucket));
+        for (int i = 0; i < 12; i++) {
+            log.append("key".getBytes(), ("message-number-" + i).getBytes());
+        }
+        awaitSubmittedTasks(scheduler);
+        log.offloadSealedSegments();
+        assertTrue(log.getRemoteSegmentCount() > 0);
+
+        Thread.sleep(400);
+        log.cleanup();
+
+        assertEquals(0, log.getRemoteSegmentCount());
+        try (Stream<Path> remoteFiles = Files.list(bucket.resolve("clicks"))) {
+            assertEquals(0, remoteFiles.count(), "Expired objects should be deleted from the bucket");
+        }
+        assertThrows(IOException.class, () -> log.read(0));
+
+        log.close();
+        scheduler.shutdown();
+    }
+}
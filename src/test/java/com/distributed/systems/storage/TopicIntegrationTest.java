@@ -3,6 +3,7 @@ package com.distributed.systems.storage;
 import com.distributed.systems.client.KafkaLiteClient;
 import com.distributed.systems.config.BrokerConfig;
 import com.distributed.systems.server.BrokerServer;
+import com.distributed.systems.server.TestBrokers;
 import com.distributed.systems.util.FatalClientException;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.io.TempDir;
@@ -18,17 +19,12 @@ public class TopicIntegrationTest {
     Path tempDir;
 
     private BrokerServer server;
-    private int port = 9095;
+    private int port;
 
     @BeforeEach
-    void setup() throws IOException {
-        server = new BrokerServer(port, tempDir.toString(), new BrokerConfig());
-        new Thread(server::start).start();
-        // Small sleep to ensure server is bound to port
-        try {
-            Thread.sleep(100);
-        } catch (InterruptedException ignored) {
-        }
+    void setup() throws IOException, InterruptedException {
+        server = TestBrokers.start(tempDir.toString(), new BrokerConfig());
+        port = server.getPort();
     }
 
     @AfterEach
@@ -73,14 +69,12 @@ public class TopicIntegrationTest {
     }
 
     @Test
-    public void testPersistenceAcrossRestarts(@TempDir Path tempDir) throws IOException {
-        int port = 9099;
+    public void testPersistenceAcrossRestarts(@TempDir Path tempDir) throws IOException, InterruptedException {
         String dataPath = tempDir.toString();
 
-        BrokerServer server1 = new BrokerServer(port, dataPath, new BrokerConfig());
-        new Thread(server1::start).start();
+        BrokerServer server1 = TestBrokers.start(dataPath, new BrokerConfig());
 
-        try (KafkaLiteClient client = new KafkaLiteClient("localhost", port, "my-group-id")) {
+        try (KafkaLiteClient client = new KafkaLiteClient("localhost", server1.getPort(), "my-group-id")) {
             client.produce("persistence-test", "key1", "Permanent Data");
             client.produce("another-persistence-test", "key1", "Hello Again");
         }
@@ -94,10 +88,9 @@ public class TopicIntegrationTest {
 
         // --- The Resurrection ---
         // We point a completely fresh server at the same directory
-        BrokerServer server2 = new BrokerServer(port, dataPath, new BrokerConfig());
-        new Thread(server2::start).start();
+        BrokerServer server2 = TestBrokers.start(dataPath, new BrokerConfig());
 
-        try (KafkaLiteClient client = new KafkaLiteClient("localhost", port, "my-group-id")) {
+        try (KafkaLiteClient client = new KafkaLiteClient("localhost", server2.getPort(), "my-group-id")) {
             // This will only work if TopicManager discovered the folder
             // and Log discovered the .data files!
             assertDoesNotThrow(() -> client.consume("persistence-test", 0));
@@ -105,4 +98,4 @@ public class TopicIntegrationTest {
         }
         server2.stop();
     }
-}
\ No newline at end of file
+}
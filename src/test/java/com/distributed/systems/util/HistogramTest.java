@@ -0,0 +1,22 @@
+package com.distributed.systems.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HistogramTest {
+
+    @Test
+    public void testSizesAreReportedInTheirOwnUnit() {
+        Histogram histogram = new Histogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(100);
+        }
+        histogram.record(64 * 1024);
+
+        assertEquals(100, histogram.getPercentile(50), 100 * 0.04);
+        assertEquals(64 * 1024, histogram.getMax());
+        assertEquals((99 * 100 + 64 * 1024) / 100.0, histogram.getMean());
+        assertTrue(histogram.summary().endsWith("max=65536"), histogram.summary());
+    }
+}
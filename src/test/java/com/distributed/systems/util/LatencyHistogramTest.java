@@ -0,0 +1,55 @@
+package com.distributed.systems.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testEmptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(99));
+        assertEquals(0.0, histogram.getMeanNanos());
+    }
+
+    @Test
+    public void testPercentilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros * 1000);
+        }
+
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(5_000_000, histogram.getPercentile(50), 5_000_000 * 0.04);
+        assertEquals(9_900_000, histogram.getPercentile(99), 9_900_000 * 0.04);
+        assertEquals(9_990_000, histogram.getPercentile(99.9), 9_990_000 * 0.04);
+        assertEquals(10_000_000, histogram.getMaxNanos());
+        assertTrue(histogram.getPercentile(100) <= histogram.getMaxNanos());
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3);
+        histogram.record(7);
+        histogram.record(-5); // clamped to zero
+
+        assertEquals(0, histogram.getPercentile(1));
+        assertEquals(7, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void testOutlierShowsUpInTail() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 999; i++) {
+            histogram.record(1_000_000);
+        }
+        histogram.record(500_000_000);
+
+        assertTrue(histogram.getPercentile(99) < 1_100_000);
+        assertTrue(histogram.getPercentile(99.99) >= 480_000_000);
+        assertTrue(histogram.summary().startsWith("count=1000"));
+    }
+}
@@ -21,4 +21,15 @@ class ProtocolTest {
         assertEquals("CONSUME", Protocol.CMD_CONSUME);
         assertEquals("DATA: ", Protocol.RESP_DATA_PREFIX);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testApiKeysResolveByIdAndCommand() {
+        for (ApiKey key : ApiKey.values()) {
+            assertSame(key, ApiKey.forId(key.id()));
+            assertSame(key, ApiKey.forCommand(key.command().toLowerCase()));
+        }
+        assertNull(ApiKey.forId(-1));
+        assertNull(ApiKey.forId(Short.MAX_VALUE));
+        assertNull(ApiKey.forCommand(Protocol.CMD_QUIT));
+    }
+}